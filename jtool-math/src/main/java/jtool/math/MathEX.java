@@ -52,6 +52,10 @@ public class MathEX {
                 , aC.x(), aC.y(), aC.z()
                 , aD.x(), aD.y(), aD.z());
         }
+        /** 直接输入坐标值的版本，用于坐标按照数组存储的情况，避免创建临时的 {@link IXYZ} */
+        public static double leftOfPlane(double aAX, double aAY, double aAZ, double aBX, double aBY, double aBZ, double aCX, double aCY, double aCZ, double aDX, double aDY, double aDZ) {
+            return Geometry.leftOfPlane(aAX, aAY, aAZ, aBX, aBY, aBZ, aCX, aCY, aCZ, aDX, aDY, aDZ);
+        }
         /**
          * 确定点 E 是否位于由点 A、B、C 和 D 定义的球体的内部。假定 {@code leftOfPlane(A, B, C, D) > 0}。
          * @return 如果在内部则为正，外部则为负，刚好在球面上则为 0
@@ -64,6 +68,10 @@ public class MathEX {
                 , aD.x(), aD.y(), aD.z()
                 , aE.x(), aE.y(), aE.z());
         }
+        /** 直接输入坐标值的版本，用于坐标按照数组存储的情况，避免创建临时的 {@link IXYZ} */
+        public static double inSphere(double aAX, double aAY, double aAZ, double aBX, double aBY, double aBZ, double aCX, double aCY, double aCZ, double aDX, double aDY, double aDZ, double aEX, double aEY, double aEZ) {
+            return Geometry.inSphere(aAX, aAY, aAZ, aBX, aBY, aBZ, aCX, aCY, aCZ, aDX, aDY, aDZ, aEX, aEY, aEZ);
+        }
         /**
          * 计算由点 A，B，C 和 D 定义的球的中心。假定 {@code leftOfPlane(A, B, C, D) > 0}。
          * @return 球心 XYZ 坐标
@@ -78,5 +86,15 @@ public class MathEX {
                 , rCenter);
             return rCenter;
         }
+        /** 直接输入坐标值的版本，用于坐标按照数组存储的情况，避免创建临时的 {@link IXYZ} */
+        public static XYZ centerSphere(double aAX, double aAY, double aAZ, double aBX, double aBY, double aBZ, double aCX, double aCY, double aCZ, double aDX, double aDY, double aDZ) {
+            XYZ rCenter = new XYZ(0.0, 0.0, 0.0);
+            Geometry.centerSphere(aAX, aAY, aAZ, aBX, aBY, aBZ, aCX, aCY, aCZ, aDX, aDY, aDZ, rCenter);
+            return rCenter;
+        }
+        /** 直接写入数组的版本，按照 x, y, z, r^2 的顺序写入 rCenter 中 aIdx 开始的位置，用于批量计算时避免创建任何对象 */
+        public static void centerSphere(double aAX, double aAY, double aAZ, double aBX, double aBY, double aBZ, double aCX, double aCY, double aCZ, double aDX, double aDY, double aDZ, double[] rCenter, int aIdx) {
+            Geometry.centerSphere(aAX, aAY, aAZ, aBX, aBY, aBZ, aCX, aCY, aCZ, aDX, aDY, aDZ, rCenter, aIdx);
+        }
     }
 }
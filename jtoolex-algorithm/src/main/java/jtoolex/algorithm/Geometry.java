@@ -67,6 +67,39 @@ public class Geometry {
             + scale * (ads * (bdx * cdy - cdx * bdy) + bds * (cdx * ady - adx * cdy) + cds * (adx * bdy - bdx * ady));
     }
     
+    /**
+     * Computes the center and the squared radius of the sphere defined by the
+     * points a, b, c, and d, without creating any object. The latter are assumed
+     * to be in CCW order, such that the method {@link #leftOfPlane} would return
+     * a positive number.
+     *
+     * @param po array receiving (x,y,z,r^2) of the sphere.
+     * @param offset position of x in po.
+     */
+    public static void centerSphere(double xa, double ya, double za, double xb, double yb, double zb, double xc,
+                                    double yc, double zc, double xd, double yd, double zd, double[] po, int offset) {
+        double adx = xa - xd;
+        double bdx = xb - xd;
+        double cdx = xc - xd;
+        double ady = ya - yd;
+        double bdy = yb - yd;
+        double cdy = yc - yd;
+        double adz = za - zd;
+        double bdz = zb - zd;
+        double cdz = zc - zd;
+        double ads = adx * adx + ady * ady + adz * adz;
+        double bds = bdx * bdx + bdy * bdy + bdz * bdz;
+        double cds = cdx * cdx + cdy * cdy + cdz * cdz;
+        double scale = 0.5 / leftOfPlane(xa, ya, za, xb, yb, zb, xc, yc, zc, xd, yd, zd);
+        double ox = scale * (ads * (bdy * cdz - cdy * bdz) + bds * (cdy * adz - ady * cdz) + cds * (ady * bdz - bdy * adz));
+        double oy = scale * (ads * (bdz * cdx - cdz * bdx) + bds * (cdz * adx - adz * cdx) + cds * (adz * bdx - bdz * adx));
+        double oz = scale * (ads * (bdx * cdy - cdx * bdy) + bds * (cdx * ady - adx * cdy) + cds * (adx * bdy - bdx * ady));
+        po[offset] = xd + ox;
+        po[offset + 1] = yd + oy;
+        po[offset + 2] = zd + oz;
+        po[offset + 3] = ox * ox + oy * oy + oz * oz;
+    }
+    
     /**
      * Determines if a point e is inside the sphere defined by the points a, b, c,
      * and d. The latter are assumed to be in CCW order, such that the method
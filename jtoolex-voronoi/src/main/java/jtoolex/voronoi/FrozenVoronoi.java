@@ -0,0 +1,76 @@
+/**
+ * Copyright (C) 2023 CHanzy/CHanzyLazer. All rights reserved.
+ *
+ * This file is part of jtool
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package jtoolex.voronoi;
+
+import jtool.code.collection.AbstractRandomAccessList;
+import org.jetbrains.annotations.Unmodifiable;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.function.BinaryOperator;
+import java.util.function.Supplier;
+
+
+/**
+ * {@link VoronoiBuilder#freeze} 得到的只读视图，所有节点的统计信息都已经计算完毕，
+ * 内部的 builder 只和原本的 builder 共享拓扑数组（copy-on-write），不会再进行任何修改
+ * <p>
+ * 所有的读取都不会写入任何数据，因此安全发布之后（例如通过 final 成员或者线程池提交）可以被任意多个线程同时无锁读取；
+ * 获取的 {@link VoronoiBuilder.IVertex} 以及 {@link VoronoiBuilder.ITetrahedron} 永远不会失效，
+ * 截断阈值以及 voronoi index 长度固定为冻结时的设置，需要扫描阈值时可以使用 {@link VoronoiBuilder.IVertex#index(double[], double[])}
+ * <p>
+ * 此类线程安全
+ * @author CHanzy
+ */
+public final class FrozenVoronoi {
+    /** 已经计算完统计信息的只读 builder，只会调用其不会修改数据的方法 */
+    private final VoronoiBuilder mView;
+    FrozenVoronoi(VoronoiBuilder aView) {mView = aView;}
+
+    /**
+     * 获取位置节点，支持随机访问，节点按照添加顺序排列
+     * @author CHanzy
+     * @param aIdx 需要获取的节点索引
+     * @return 包含 voronoi 多面体参数的节点
+     */
+    public VoronoiBuilder.IVertex getVertex(int aIdx) {return mView.getVertex(aIdx);}
+    public int sizeVertex() {return mView.sizeVertex();}
+    public @Unmodifiable List<VoronoiBuilder.IVertex> allVertex() {
+        return new AbstractRandomAccessList<VoronoiBuilder.IVertex>() {
+            @Override public VoronoiBuilder.IVertex get(int index) {return getVertex(index);}
+            @Override public int size() {return sizeVertex();}
+        };
+    }
+    /** 直接获取近邻的索引，见 {@link VoronoiBuilder#neighbors} */
+    public int neighbors(int aIdx, int[] rOut) {return mView.neighbors(aIdx, rOut);}
+    public int neighborCount(int aIdx) {return mView.neighborCount(aIdx);}
+    public int neighborTets(int aIdx, int[] rOut) {return mView.neighborTets(aIdx, rOut);}
+    public int neighborTetCount(int aIdx) {return mView.neighborTetCount(aIdx);}
+    /** 依次访问节点的每个 voronoi 面，见 {@link VoronoiBuilder#forEachFace}，只会读取冻结时的缓存 */
+    public FrozenVoronoi forEachFace(int aIdx, VoronoiBuilder.IFaceVisitor aVisitor) {mView.forEachFace(aIdx, aVisitor); return this;}
+    /** 并行的 map-reduce，见 {@link VoronoiBuilder#reduce}，每次调用只会写入局部的缓存 */
+    public <A> A reduce(int aThreadNum, Supplier<? extends A> aInit, VoronoiBuilder.ICellKernel<? super A> aKernel, BinaryOperator<A> aCombiner) {return mView.reduce(aThreadNum, aInit, aKernel, aCombiner);}
+    public <A> A reduce(Supplier<? extends A> aInit, VoronoiBuilder.ICellKernel<? super A> aKernel, BinaryOperator<A> aCombiner) {return mView.reduce(aInit, aKernel, aCombiner);}
+    /** 导出 CSR 格式的近邻图，见 {@link VoronoiBuilder#toGraph} */
+    public VoronoiGraph toGraph(int aThreadNum, boolean aFaceArea) {return mView.toGraph(aThreadNum, aFaceArea);}
+    public VoronoiGraph toGraph(boolean aFaceArea) {return mView.toGraph(aFaceArea);}
+    public VoronoiBuilder.ITetrahedron getTetrahedron() {return mView.getTetrahedron();}
+    public @Unmodifiable Collection<VoronoiBuilder.ITetrahedron> allTetrahedron() {return mView.allTetrahedron();}
+    public boolean isPeriodic() {return mView.isPeriodic();}
+}
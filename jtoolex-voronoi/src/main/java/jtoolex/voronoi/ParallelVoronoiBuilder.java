@@ -0,0 +1,553 @@
+/**
+ * Copyright (C) 2023 CHanzy/CHanzyLazer. All rights reserved.
+ *
+ * This file is part of jtool
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package jtoolex.voronoi;
+
+import jtool.atom.IXYZ;
+import jtool.code.collection.AbstractRandomAccessList;
+import org.jetbrains.annotations.Unmodifiable;
+
+import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+import static jtool.code.CS.RANDOM;
+
+
+/**
+ * 基于区域分解的并行 voronoi 构造器，将包围盒划分为多个子区域，
+ * 每个子区域加上一层 ghost 节点后使用独立的 {@link VoronoiBuilder} 并行构建；
+ * <p>
+ * 只有近邻四面体的外接球中不包含任何子区域外节点的节点才会被接受（见 {@link VoronoiBuilder#starInBox_}），
+ * 这些节点的 voronoi 多面体和整体串行构建的结果一致（除了求和顺序带来的舍入误差）；
+ * 如果有节点不满足，则将落在外接球中的节点作为额外的 ghost 节点插入此子区域后重新检测，
+ * 找不到这样的节点时则将 ghost 层的宽度加倍，直到 ghost 层覆盖整个包围盒；只有一个线程时则直接整体构建
+ * <p>
+ * 凸包上的节点只有在其凸包面外侧的半空间中没有任何子区域外节点时才会被接受，此时这些面也是整体的凸包面，
+ * 否则同样将这些节点作为额外的 ghost 节点加入，因此 {@link #isBounded} 也和整体串行构建一致
+ * <p>
+ * 在退化的情况下（例如完美晶格中多点共球），三角剖分本身不唯一，此时无论串行还是并行，
+ * 统计的 voronoi index 都会依赖于具体的三角剖分，需要通过 {@link #setLengthThreshold} 等截断来处理
+ * <p>
+ * 此类线程不安全，但不同实例间线程安全
+ * @author CHanzy
+ */
+public final class ParallelVoronoiBuilder {
+    /** 每个线程对应的子区域数目，多一些子区域可以更好的负载均衡，但是每个子区域都需要额外插入 ghost 层，子区域越小占比越大 */
+    private final static int DOMAIN_PER_THREAD = 2;
+    /** 子区域的最小尺寸，以及初始的 ghost 层宽度（不够时会再插入需要的节点，因此不需要太宽），都以平均的节点间距为单位 */
+    private final static double MIN_DOMAIN_SIZE = 8.0;
+    private final static double INIT_GHOST_WIDTH = 2.0;
+    /** 用于精确检测的细格子的尺寸，同样以平均的节点间距为单位 */
+    private final static double BIN_SIZE = 2.0;
+    
+    private final int mThreadNum;
+    private final Random mRNG;
+    
+    /** 传递给每个子区域的 {@link VoronoiBuilder} 的参数 */
+    private boolean mNoWarning = false;
+    private double mAreaThreshold = 0.0;
+    private double mLengthThreshold = 0.0;
+    private double mAreaThresholdAbs = Double.NaN;
+    private double mLengthThresholdAbs = Double.NaN;
+    private int mIndexLength = 9;
+    public ParallelVoronoiBuilder setNoWarning(boolean aNoWarning) {mNoWarning = aNoWarning; return this;}
+    public ParallelVoronoiBuilder setNoWarning() {return setNoWarning(true);}
+    /** 阈值同时会应用到已经构建的子区域，从而不需要重新构建就可以扫描不同的阈值 */
+    public ParallelVoronoiBuilder setAreaThreshold(double aAreaThreshold) {mAreaThreshold = Math.max(0.0, aAreaThreshold); mAreaThresholdAbs = Double.NaN; for (VoronoiBuilder tBuilder : mDomainBuilder) tBuilder.setAreaThreshold(aAreaThreshold); return this;}
+    public ParallelVoronoiBuilder setLengthThreshold(double aLengthThreshold) {mLengthThreshold = Math.max(0.0, aLengthThreshold); mLengthThresholdAbs = Double.NaN; for (VoronoiBuilder tBuilder : mDomainBuilder) tBuilder.setLengthThreshold(aLengthThreshold); return this;}
+    public ParallelVoronoiBuilder setAreaThresholdAbs(double aAreaThresholdAbs) {mAreaThresholdAbs = Math.max(0.0, aAreaThresholdAbs); mAreaThreshold = Double.NaN; for (VoronoiBuilder tBuilder : mDomainBuilder) tBuilder.setAreaThresholdAbs(aAreaThresholdAbs); return this;}
+    public ParallelVoronoiBuilder setLengthThresholdAbs(double aLengthThresholdAbs) {mLengthThresholdAbs = Math.max(0.0, aLengthThresholdAbs); mLengthThreshold = Double.NaN; for (VoronoiBuilder tBuilder : mDomainBuilder) tBuilder.setLengthThresholdAbs(aLengthThresholdAbs); return this;}
+    public ParallelVoronoiBuilder setIndexLength(int aIndexLength) {mIndexLength = Math.max(1, aIndexLength); for (VoronoiBuilder tBuilder : mDomainBuilder) tBuilder.setIndexLength(aIndexLength); return this;}
+    
+    /** 构建结果，每个子区域的 builder 以及其拥有的节点数目，每个节点所在的子区域以及在其中的索引 */
+    private VoronoiBuilder[] mDomainBuilder = new VoronoiBuilder[0];
+    private int[] mOwnedNum = new int[0];
+    private int[] mOwnerDomain = new int[0];
+    private int[] mOwnerLocal = new int[0];
+    private boolean[] mBounded = new boolean[0];
+    
+    /** 构造函数 */
+    public ParallelVoronoiBuilder() {this(Runtime.getRuntime().availableProcessors());}
+    public ParallelVoronoiBuilder(int aThreadNum) {this(aThreadNum, RANDOM);}
+    public ParallelVoronoiBuilder(int aThreadNum, long aSeed) {this(aThreadNum, new Random(aSeed));}
+    ParallelVoronoiBuilder(int aThreadNum, Random aRNG) {
+        if (aThreadNum < 1) throw new IllegalArgumentException("Thread number must be positive: "+aThreadNum);
+        mThreadNum = aThreadNum;
+        mRNG = aRNG;
+    }
+    
+    
+    /**
+     * 并行构建输入节点的 voronoi 图，会覆盖之前构建的结果；
+     * 节点的索引按照输入的顺序排列
+     * @author CHanzy
+     * @param aXYZ 按照 {@code x0, y0, z0, x1, y1, z1, ...} 排列的坐标
+     * @return 自身方便链式调用
+     */
+    public ParallelVoronoiBuilder build(double[] aXYZ) {
+        if (aXYZ.length%3 != 0) throw new IllegalArgumentException("Length of XYZ must be a multiple of 3: "+aXYZ.length);
+        final int tNum = aXYZ.length/3;
+        mOwnerDomain = new int[tNum];
+        mOwnerLocal = new int[tNum];
+        mBounded = new boolean[tNum];
+        if (tNum == 0) {mDomainBuilder = new VoronoiBuilder[0]; mOwnedNum = new int[0]; return this;}
+        if (mThreadNum == 1) {
+            // 只有一个线程时区域分解没有任何收益，直接整体构建
+            final VoronoiBuilder tBuilder = newDomainBuilder_(mRNG.nextLong()).insertAll(aXYZ);
+            for (int i = 0; i < tNum; ++i) {
+                mOwnerLocal[i] = i;
+                mBounded[i] = tBuilder.starBounded_(i+VoronoiBuilder.INIT_VERTEX_NUM);
+            }
+            mDomainBuilder = new VoronoiBuilder[] {tBuilder.setNoWarning(mNoWarning)};
+            mOwnedNum = new int[] {tNum};
+            warnUnbounded_();
+            return this;
+        }
+        final Domains tDomains = new Domains(aXYZ, tNum, mThreadNum*DOMAIN_PER_THREAD);
+        final int tDomainNum = tDomains.size();
+        mDomainBuilder = new VoronoiBuilder[tDomainNum];
+        mOwnedNum = new int[tDomainNum];
+        // 种子预先生成，保证结果不依赖于线程调度
+        final long[] tSeeds = new long[tDomainNum];
+        for (int i = 0; i < tDomainNum; ++i) tSeeds[i] = mRNG.nextLong();
+        List<Callable<Void>> tTasks = new ArrayList<>(tDomainNum);
+        for (int i = 0; i < tDomainNum; ++i) {
+            final int tDomain = i;
+            tTasks.add(() -> {buildDomain_(tDomains, tDomain, tSeeds[tDomain]); return null;});
+        }
+        ForkJoinPool tPool = new ForkJoinPool(mThreadNum);
+        try {
+            for (Future<Void> tFuture : tPool.invokeAll(tTasks)) tFuture.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        } catch (ExecutionException e) {
+            Throwable tCause = e.getCause();
+            if (tCause instanceof RuntimeException) throw (RuntimeException)tCause;
+            if (tCause instanceof Error) throw (Error)tCause;
+            throw new RuntimeException(tCause);
+        } finally {
+            tPool.shutdown();
+        }
+        warnUnbounded_();
+        return this;
+    }
+    private void warnUnbounded_() {
+        if (mNoWarning) return;
+        int tUnboundedNum = 0;
+        for (boolean tBounded : mBounded) if (!tBounded) ++tUnboundedNum;
+        if (tUnboundedNum > 0) System.err.println("WARNING: Voronoi of "+tUnboundedNum+" nodes on the convex hull are Incomplete, voronoi parameters may be wrong.");
+    }
+    public ParallelVoronoiBuilder build(List<? extends IXYZ> aXYZList) {
+        final int tNum = aXYZList.size();
+        double[] tXYZ = new double[tNum*3];
+        int j = 0;
+        for (IXYZ tXYZi : aXYZList) {
+            tXYZ[j  ] = tXYZi.x();
+            tXYZ[j+1] = tXYZi.y();
+            tXYZ[j+2] = tXYZi.z();
+            j += 3;
+        }
+        return build(tXYZ);
+    }
+    
+    /**
+     * 并行计算所有节点的 voronoi 参数并缓存（见 {@link VoronoiBuilder#computeAll}），
+     * 这里直接按照子区域并行，每个子区域内部串行计算，并且只计算其拥有的节点
+     * @author CHanzy
+     * @return 自身方便链式调用
+     */
+    public ParallelVoronoiBuilder computeAll() {
+        ForkJoinPool tPool = new ForkJoinPool(mThreadNum);
+        try {
+            VoronoiBuilder.invokeChunk_(tPool, mThreadNum, mDomainBuilder.length, (aStart, aEnd) -> {
+                for (int i = aStart; i < aEnd; ++i) mDomainBuilder[i].computeAll_(null, 1, mOwnedNum[i]);
+            });
+        } finally {
+            tPool.shutdown();
+        }
+        return this;
+    }
+    
+    /**
+     * 统计所有节点的 voronoi 参数并按列存储到 {@link VoronoiResult} 中（见 {@link VoronoiBuilder#toResult}），
+     * 同样按照子区域并行，每个子区域只统计其拥有的节点，并直接写入结果中对应的全局索引；
+     * 结果不持有此 builder 的引用，之后可以直接丢弃此 builder 从而释放所有子区域的三角剖分
+     * @author CHanzy
+     * @return 所有节点的统计结果，顺序和输入的顺序一致
+     */
+    public VoronoiResult toResult() {
+        final VoronoiResult rResult = new VoronoiResult(sizeVertex(), mIndexLength);
+        // 每个子区域的局部索引对应的全局索引
+        final int[][] tGlobal = new int[mDomainBuilder.length][];
+        for (int i = 0; i < mDomainBuilder.length; ++i) tGlobal[i] = new int[mOwnedNum[i]];
+        for (int tIdx = 0; tIdx < mOwnerDomain.length; ++tIdx) tGlobal[mOwnerDomain[tIdx]][mOwnerLocal[tIdx]] = tIdx;
+        ForkJoinPool tPool = new ForkJoinPool(mThreadNum);
+        try {
+            VoronoiBuilder.invokeChunk_(tPool, mThreadNum, mDomainBuilder.length, (aStart, aEnd) -> {
+                for (int i = aStart; i < aEnd; ++i) mDomainBuilder[i].toResult_(null, 1, mOwnedNum[i], tGlobal[i], rResult);
+            });
+        } finally {
+            tPool.shutdown();
+        }
+        return rResult;
+    }
+    
+    /**
+     * 构建一个子区域，不满足条件时将外接球内的 ghost 盒子外的节点加入后重新检测，
+     * 这主要是表面附近很扁的四面体，其外接球会沿着表面延伸很远，以及凸包面外侧还有节点的情况；
+     * 如果没有找到这样的节点（只有退化的凸包面）则加倍 ghost 层宽度，并加入新覆盖的节点后重新检测；
+     * 之后的节点都是直接插入到已有的 builder 中，自身拥有的节点依旧在最前面，
+     * 并且只有近邻四面体改变过（或者之前没有通过）的节点才需要重新检测；
+     * 不同子区域只会写入自身拥有的节点对应的位置
+     */
+    private void buildDomain_(Domains aDomains, int aDomain, long aSeed) {
+        final int[] tOwned = aDomains.owned(aDomain);
+        double tGhostWidth = aDomains.mSpacing * INIT_GHOST_WIDTH;
+        final double[] tBox = new double[6], tOldBox = new double[6];
+        final double[] tBound = {aDomains.mMinX, aDomains.mMinY, aDomains.mMinZ, aDomains.mMaxX, aDomains.mMaxY, aDomains.mMaxZ};
+        // 额外加入的 ghost 盒子外的节点，以及本次检测到的需要加入的节点
+        final Set<Integer> tExtra = new LinkedHashSet<>();
+        final Set<Integer> tConflict = new LinkedHashSet<>();
+        final VoronoiBuilder.IOutside tOutside = new VoronoiBuilder.IOutside() {
+            @Override public boolean inSphere(VoronoiBuilder aBuilder, int aTet, double aX, double aY, double aZ, double aR) {return aDomains.collectInSphere(aBuilder, aTet, aX, aY, aZ, aR, tBox, tExtra, tConflict);}
+            @Override public boolean inHalfSpace(double aNX, double aNY, double aNZ, double aD) {return aDomains.collectInHalfSpace(aNX, aNY, aNZ, aD, tBox, tExtra, tConflict);}
+        };
+        boolean tAll = aDomains.ghostBox(aDomain, tGhostWidth, tBox);
+        // 自身拥有的节点放在最前面，从而局部索引和 tOwned 中的位置一致
+        final VoronoiBuilder tBuilder = newDomainBuilder_(aSeed).insertAll(aDomains.gather(aDomain, tOwned, tBox, tExtra));
+        // 每个节点是否通过了检测，以及检测时的星形版本；第一轮直接遍历所有的四面体，之后只需要检测星形改变的节点
+        final boolean[] tPassed = new boolean[tOwned.length];
+        final int[] tPassedStar = new int[tOwned.length];
+        boolean tFirst = true;
+        // ghost 层已经覆盖了所有节点时结果一定和整体构建一致
+        while (!tAll) {
+            boolean tSecure = true;
+            tConflict.clear();
+            if (tFirst) {
+                tBuilder.allInBox_(tBox, tBound, tOutside, tPassed);
+                tFirst = false;
+                for (int i = 0; i < tOwned.length; ++i) {
+                    tPassedStar[i] = tBuilder.starVersion_(i+VoronoiBuilder.INIT_VERTEX_NUM);
+                    if (!tPassed[i]) tSecure = false;
+                }
+            } else {
+                // 这里不会提前终止，从而一次收集所有需要加入的节点
+                for (int i = 0; i < tOwned.length; ++i) {
+                    final int tVertex = i+VoronoiBuilder.INIT_VERTEX_NUM;
+                    final int tStar = tBuilder.starVersion_(tVertex);
+                    if (tPassed[i] && tPassedStar[i]==tStar) continue;
+                    tPassed[i] = tBuilder.starInBox_(tVertex, tBox, tBound, tOutside);
+                    tPassedStar[i] = tStar;
+                    if (!tPassed[i]) tSecure = false;
+                }
+            }
+            if (tSecure) break;
+            if (!tConflict.isEmpty()) {
+                tBuilder.insertAll(aDomains.gather(tConflict));
+                tExtra.addAll(tConflict);
+            } else {
+                System.arraycopy(tBox, 0, tOldBox, 0, 6);
+                tGhostWidth *= 2.0;
+                tAll = aDomains.ghostBox(aDomain, tGhostWidth, tBox);
+                tBuilder.insertAll(aDomains.gatherGrow(aDomain, tBox, tOldBox, tExtra));
+            }
+        }
+        for (int i = 0; i < tOwned.length; ++i) {
+            final int tIdx = tOwned[i];
+            mOwnerDomain[tIdx] = aDomain;
+            mOwnerLocal[tIdx] = i;
+            mBounded[tIdx] = tBuilder.starBounded_(i+VoronoiBuilder.INIT_VERTEX_NUM);
+        }
+        mDomainBuilder[aDomain] = tBuilder.setNoWarning(mNoWarning);
+        mOwnedNum[aDomain] = tOwned.length;
+    }
+    private VoronoiBuilder newDomainBuilder_(long aSeed) {
+        final VoronoiBuilder rBuilder = new VoronoiBuilder(aSeed).setNoWarning().setIndexLength(mIndexLength);
+        if (!Double.isNaN(mAreaThreshold)) rBuilder.setAreaThreshold(mAreaThreshold); else rBuilder.setAreaThresholdAbs(mAreaThresholdAbs);
+        if (!Double.isNaN(mLengthThreshold)) rBuilder.setLengthThreshold(mLengthThreshold); else rBuilder.setLengthThresholdAbs(mLengthThresholdAbs);
+        return rBuilder;
+    }
+    
+    
+    /** 均匀划分的子区域，节点按照子区域使用计数排序存储；同时按照更细的格子再存储一次，用于精确检测外接球内部的节点 */
+    private static class Domains {
+        final double[] mXYZ;
+        final double mMinX, mMinY, mMinZ, mMaxX, mMaxY, mMaxZ;
+        final int mNX, mNY, mNZ;
+        final double mSizeX, mSizeY, mSizeZ;
+        /** 平均的节点间距 */
+        final double mSpacing;
+        /** 每个子区域的节点在 mSorted 中的起始位置 */
+        final int[] mStart;
+        final int[] mSorted;
+        /** 细格子，存储方式和子区域相同 */
+        final int mBX, mBY, mBZ;
+        final double mBinX, mBinY, mBinZ;
+        final int[] mBinStart;
+        final int[] mBinSorted;
+        
+        Domains(double[] aXYZ, int aNum, int aTargetNum) {
+            mXYZ = aXYZ;
+            double tMinX = Double.POSITIVE_INFINITY, tMinY = Double.POSITIVE_INFINITY, tMinZ = Double.POSITIVE_INFINITY;
+            double tMaxX = Double.NEGATIVE_INFINITY, tMaxY = Double.NEGATIVE_INFINITY, tMaxZ = Double.NEGATIVE_INFINITY;
+            for (int i = 0, j = 0; i < aNum; ++i, j+=3) {
+                tMinX = Math.min(tMinX, aXYZ[j  ]); tMaxX = Math.max(tMaxX, aXYZ[j  ]);
+                tMinY = Math.min(tMinY, aXYZ[j+1]); tMaxY = Math.max(tMaxY, aXYZ[j+1]);
+                tMinZ = Math.min(tMinZ, aXYZ[j+2]); tMaxZ = Math.max(tMaxZ, aXYZ[j+2]);
+            }
+            mMinX = tMinX; mMinY = tMinY; mMinZ = tMinZ;
+            mMaxX = tMaxX; mMaxY = tMaxY; mMaxZ = tMaxZ;
+            final double tLX = tMaxX-tMinX, tLY = tMaxY-tMinY, tLZ = tMaxZ-tMinZ;
+            final double tLMax = Math.max(tLX, Math.max(tLY, tLZ));
+            // 对于 2D 的情况限制最薄的方向，避免体积为 0
+            final double tLMin = tLMax*1.0e-3;
+            final double tVolume = Math.max(tLX, tLMin) * Math.max(tLY, tLMin) * Math.max(tLZ, tLMin);
+            mSpacing = tLMax>0.0 ? Math.cbrt(tVolume/aNum) : 1.0;
+            final double tSize = Math.max(Math.cbrt(tVolume/aTargetNum), mSpacing*MIN_DOMAIN_SIZE);
+            mNX = Math.max(1, (int)Math.round(tLX/tSize));
+            mNY = Math.max(1, (int)Math.round(tLY/tSize));
+            mNZ = Math.max(1, (int)Math.round(tLZ/tSize));
+            mSizeX = tLX/mNX; mSizeY = tLY/mNY; mSizeZ = tLZ/mNZ;
+            mStart = new int[mNX*mNY*mNZ+1];
+            mSorted = new int[aNum];
+            sort_(aNum, mNX, mNY, mNZ, mSizeX, mSizeY, mSizeZ, mStart, mSorted);
+            final double tBinSize = mSpacing*BIN_SIZE;
+            mBX = Math.max(1, Math.min(MAX_BIN_PER_DIM, (int)Math.ceil(tLX/tBinSize)));
+            mBY = Math.max(1, Math.min(MAX_BIN_PER_DIM, (int)Math.ceil(tLY/tBinSize)));
+            mBZ = Math.max(1, Math.min(MAX_BIN_PER_DIM, (int)Math.ceil(tLZ/tBinSize)));
+            mBinX = tLX/mBX; mBinY = tLY/mBY; mBinZ = tLZ/mBZ;
+            mBinStart = new int[mBX*mBY*mBZ+1];
+            mBinSorted = new int[aNum];
+            sort_(aNum, mBX, mBY, mBZ, mBinX, mBinY, mBinZ, mBinStart, mBinSorted);
+        }
+        int size() {return mNX*mNY*mNZ;}
+        private final static int MAX_BIN_PER_DIM = 1<<10;
+        
+        /** 计数排序，rStart 存储每个格子的起始位置，rSorted 存储排序后的节点索引 */
+        private void sort_(int aNum, int aNX, int aNY, int aNZ, double aSizeX, double aSizeY, double aSizeZ, int[] rStart, int[] rSorted) {
+            final int tCellNum = aNX*aNY*aNZ;
+            final int[] tCellOf = new int[aNum];
+            for (int i = 0, j = 0; i < aNum; ++i, j+=3) {
+                int tCell = (cellOf_(mXYZ[j+2], mMinZ, aSizeZ, aNZ)*aNY + cellOf_(mXYZ[j+1], mMinY, aSizeY, aNY))*aNX + cellOf_(mXYZ[j], mMinX, aSizeX, aNX);
+                tCellOf[i] = tCell;
+                ++rStart[tCell+1];
+            }
+            for (int i = 0; i < tCellNum; ++i) rStart[i+1] += rStart[i];
+            final int[] tFill = Arrays.copyOf(rStart, tCellNum);
+            for (int i = 0; i < aNum; ++i) rSorted[tFill[tCellOf[i]]++] = i;
+        }
+        
+        private static int cellOf_(double aX, double aMin, double aSize, int aN) {
+            if (aSize <= 0.0) return 0;
+            return Math.max(0, Math.min(aN-1, (int)Math.floor((aX-aMin)/aSize)));
+        }
+        int[] owned(int aDomain) {return Arrays.copyOfRange(mSorted, mStart[aDomain], mStart[aDomain+1]);}
+        
+        /**
+         * 计算子区域加上 ghost 层后的盒子
+         * @return 是否所有方向都已经超出整体包围盒，即 ghost 层覆盖了所有节点
+         */
+        boolean ghostBox(int aDomain, double aWidth, double[] rBox) {
+            final int tX = aDomain % mNX, tY = (aDomain/mNX) % mNY, tZ = aDomain/(mNX*mNY);
+            rBox[0] = mMinX + tX*mSizeX - aWidth; rBox[3] = mMinX + (tX+1)*mSizeX + aWidth;
+            rBox[1] = mMinY + tY*mSizeY - aWidth; rBox[4] = mMinY + (tY+1)*mSizeY + aWidth;
+            rBox[2] = mMinZ + tZ*mSizeZ - aWidth; rBox[5] = mMinZ + (tZ+1)*mSizeZ + aWidth;
+            return rBox[0]<=mMinX && rBox[1]<=mMinY && rBox[2]<=mMinZ && rBox[3]>=mMaxX && rBox[4]>=mMaxY && rBox[5]>=mMaxZ;
+        }
+        /** 收集盒子内的所有节点坐标，自身拥有的节点在最前面，额外的节点在最后面（已经在盒子内的会跳过） */
+        double[] gather(int aDomain, int[] aOwned, double[] aBox, Set<Integer> aExtra) {
+            final int tX0 = cellOf_(aBox[0], mMinX, mSizeX, mNX), tX1 = cellOf_(aBox[3], mMinX, mSizeX, mNX);
+            final int tY0 = cellOf_(aBox[1], mMinY, mSizeY, mNY), tY1 = cellOf_(aBox[4], mMinY, mSizeY, mNY);
+            final int tZ0 = cellOf_(aBox[2], mMinZ, mSizeZ, mNZ), tZ1 = cellOf_(aBox[5], mMinZ, mSizeZ, mNZ);
+            int tNum = aOwned.length + aExtra.size();
+            for (int tZ = tZ0; tZ <= tZ1; ++tZ) for (int tY = tY0; tY <= tY1; ++tY) for (int tX = tX0; tX <= tX1; ++tX) {
+                int tDomain = (tZ*mNY + tY)*mNX + tX;
+                if (tDomain != aDomain) tNum += mStart[tDomain+1] - mStart[tDomain];
+            }
+            double[] rXYZ = new double[tNum*3];
+            int j = 0;
+            for (int tIdx : aOwned) {
+                rXYZ[j] = mXYZ[tIdx*3]; rXYZ[j+1] = mXYZ[tIdx*3+1]; rXYZ[j+2] = mXYZ[tIdx*3+2];
+                j += 3;
+            }
+            for (int tZ = tZ0; tZ <= tZ1; ++tZ) for (int tY = tY0; tY <= tY1; ++tY) for (int tX = tX0; tX <= tX1; ++tX) {
+                int tDomain = (tZ*mNY + tY)*mNX + tX;
+                if (tDomain == aDomain) continue;
+                for (int k = mStart[tDomain]; k < mStart[tDomain+1]; ++k) {
+                    final int tIdx = mSorted[k]*3;
+                    final double tPX = mXYZ[tIdx], tPY = mXYZ[tIdx+1], tPZ = mXYZ[tIdx+2];
+                    if (tPX<aBox[0] || tPY<aBox[1] || tPZ<aBox[2] || tPX>aBox[3] || tPY>aBox[4] || tPZ>aBox[5]) continue;
+                    rXYZ[j] = tPX; rXYZ[j+1] = tPY; rXYZ[j+2] = tPZ;
+                    j += 3;
+                }
+            }
+            for (int tExtra : aExtra) {
+                final int tIdx = tExtra*3;
+                final double tPX = mXYZ[tIdx], tPY = mXYZ[tIdx+1], tPZ = mXYZ[tIdx+2];
+                if (tPX>=aBox[0] && tPY>=aBox[1] && tPZ>=aBox[2] && tPX<=aBox[3] && tPY<=aBox[4] && tPZ<=aBox[5]) continue;
+                rXYZ[j] = tPX; rXYZ[j+1] = tPY; rXYZ[j+2] = tPZ;
+                j += 3;
+            }
+            return j==rXYZ.length ? rXYZ : Arrays.copyOf(rXYZ, j);
+        }
+        /** 收集 ghost 盒子从 aOldBox 扩大到 aBox 后新覆盖的节点坐标，已经在 aExtra 中的会跳过 */
+        double[] gatherGrow(int aDomain, double[] aBox, double[] aOldBox, Set<Integer> aExtra) {
+            final int tX0 = cellOf_(aBox[0], mMinX, mSizeX, mNX), tX1 = cellOf_(aBox[3], mMinX, mSizeX, mNX);
+            final int tY0 = cellOf_(aBox[1], mMinY, mSizeY, mNY), tY1 = cellOf_(aBox[4], mMinY, mSizeY, mNY);
+            final int tZ0 = cellOf_(aBox[2], mMinZ, mSizeZ, mNZ), tZ1 = cellOf_(aBox[5], mMinZ, mSizeZ, mNZ);
+            double[] rXYZ = new double[INIT_GATHER*3];
+            int j = 0;
+            for (int tZ = tZ0; tZ <= tZ1; ++tZ) for (int tY = tY0; tY <= tY1; ++tY) for (int tX = tX0; tX <= tX1; ++tX) {
+                int tDomain = (tZ*mNY + tY)*mNX + tX;
+                if (tDomain == aDomain) continue;
+                for (int k = mStart[tDomain]; k < mStart[tDomain+1]; ++k) {
+                    final int tIdx = mSorted[k]*3;
+                    final double tPX = mXYZ[tIdx], tPY = mXYZ[tIdx+1], tPZ = mXYZ[tIdx+2];
+                    if (tPX<aBox[0] || tPY<aBox[1] || tPZ<aBox[2] || tPX>aBox[3] || tPY>aBox[4] || tPZ>aBox[5]) continue;
+                    if (tPX>=aOldBox[0] && tPY>=aOldBox[1] && tPZ>=aOldBox[2] && tPX<=aOldBox[3] && tPY<=aOldBox[4] && tPZ<=aOldBox[5]) continue;
+                    if (aExtra.contains(mSorted[k])) continue;
+                    if (j == rXYZ.length) rXYZ = Arrays.copyOf(rXYZ, j*2);
+                    rXYZ[j] = tPX; rXYZ[j+1] = tPY; rXYZ[j+2] = tPZ;
+                    j += 3;
+                }
+            }
+            return Arrays.copyOf(rXYZ, j);
+        }
+        /** 收集 aIdx 中节点的坐标 */
+        double[] gather(Collection<Integer> aIdx) {
+            final double[] rXYZ = new double[aIdx.size()*3];
+            int j = 0;
+            for (int tIdx : aIdx) {
+                rXYZ[j] = mXYZ[tIdx*3]; rXYZ[j+1] = mXYZ[tIdx*3+1]; rXYZ[j+2] = mXYZ[tIdx*3+2];
+                j += 3;
+            }
+            return rXYZ;
+        }
+        private final static int INIT_GATHER = 64;
+        
+        /**
+         * 精确检测是否有没有参与构建的节点（aBox 外并且不在 aExtra 中）在四面体的外接球内部或者球面上，
+         * 只遍历和外接球相交的细格子，找到的节点会添加到 rConflict 中
+         */
+        boolean collectInSphere(VoronoiBuilder aBuilder, int aTet, double aCX, double aCY, double aCZ, double aR, double[] aBox, Set<Integer> aExtra, Set<Integer> rConflict) {
+            final double tR2 = aR*aR;
+            // 球和包围盒的交集的范围，球心在某个方向超出包围盒时其余方向的范围会缩小，对于表面附近很扁的球冠可以大大减少需要遍历的格子
+            final double tDX = Math.max(0.0, Math.max(mMinX-aCX, aCX-mMaxX));
+            final double tDY = Math.max(0.0, Math.max(mMinY-aCY, aCY-mMaxY));
+            final double tDZ = Math.max(0.0, Math.max(mMinZ-aCZ, aCZ-mMaxZ));
+            final double tHX2 = tR2 - tDY*tDY - tDZ*tDZ, tHY2 = tR2 - tDX*tDX - tDZ*tDZ, tHZ2 = tR2 - tDX*tDX - tDY*tDY;
+            if (tHX2<0.0 || tHY2<0.0 || tHZ2<0.0) return false;
+            boolean rFound = false;
+            final double tHX = Math.sqrt(tHX2), tHY = Math.sqrt(tHY2), tHZ = Math.sqrt(tHZ2);
+            final int tX0 = cellOf_(aCX-tHX, mMinX, mBinX, mBX), tX1 = cellOf_(aCX+tHX, mMinX, mBinX, mBX);
+            final int tY0 = cellOf_(aCY-tHY, mMinY, mBinY, mBY), tY1 = cellOf_(aCY+tHY, mMinY, mBinY, mBY);
+            final int tZ0 = cellOf_(aCZ-tHZ, mMinZ, mBinZ, mBZ), tZ1 = cellOf_(aCZ+tHZ, mMinZ, mBinZ, mBZ);
+            for (int tZ = tZ0; tZ <= tZ1; ++tZ) for (int tY = tY0; tY <= tY1; ++tY) for (int tX = tX0; tX <= tX1; ++tX) {
+                final double tBX0 = mMinX + tX*mBinX, tBY0 = mMinY + tY*mBinY, tBZ0 = mMinZ + tZ*mBinZ;
+                final double tBX1 = tBX0 + mBinX, tBY1 = tBY0 + mBinY, tBZ1 = tBZ0 + mBinZ;
+                // 完全在 aBox 内部的格子中的节点都已经参与了构建
+                if (tBX0>=aBox[0] && tBY0>=aBox[1] && tBZ0>=aBox[2] && tBX1<=aBox[3] && tBY1<=aBox[4] && tBZ1<=aBox[5]) continue;
+                final double tEX = Math.max(0.0, Math.max(tBX0-aCX, aCX-tBX1));
+                final double tEY = Math.max(0.0, Math.max(tBY0-aCY, aCY-tBY1));
+                final double tEZ = Math.max(0.0, Math.max(tBZ0-aCZ, aCZ-tBZ1));
+                if (tEX*tEX + tEY*tEY + tEZ*tEZ > tR2) continue;
+                final int tBin = (tZ*mBY + tY)*mBX + tX;
+                for (int k = mBinStart[tBin]; k < mBinStart[tBin+1]; ++k) {
+                    final int tIdx = mBinSorted[k]*3;
+                    final double tPX = mXYZ[tIdx], tPY = mXYZ[tIdx+1], tPZ = mXYZ[tIdx+2];
+                    if (tPX>=aBox[0] && tPY>=aBox[1] && tPZ>=aBox[2] && tPX<=aBox[3] && tPY<=aBox[4] && tPZ<=aBox[5]) continue;
+                    final double tQX = tPX-aCX, tQY = tPY-aCY, tQZ = tPZ-aCZ;
+                    if (tQX*tQX + tQY*tQY + tQZ*tQZ > tR2) continue;
+                    if (aExtra.contains(mBinSorted[k])) continue;
+                    if (aBuilder.tetInSphere(aTet, tPX, tPY, tPZ) >= 0) {rConflict.add(mBinSorted[k]); rFound = true;}
+                }
+            }
+            return rFound;
+        }
+        /**
+         * 检测是否有没有参与构建的节点在半空间 {@code aNX*x + aNY*y + aNZ*z >= aD} 中，用于判断子区域的凸包面是否也是整体的凸包面；
+         * 对于每一行细格子直接计算和半空间相交的 x 范围，找到的节点会添加到 rConflict 中
+         */
+        boolean collectInHalfSpace(double aNX, double aNY, double aNZ, double aD, double[] aBox, Set<Integer> aExtra, Set<Integer> rConflict) {
+            boolean rFound = false;
+            for (int tZ = 0; tZ < mBZ; ++tZ) for (int tY = 0; tY < mBY; ++tY) {
+                final double tBY0 = mMinY + tY*mBinY, tBZ0 = mMinZ + tZ*mBinZ;
+                final double tBY1 = tBY0 + mBinY, tBZ1 = tBZ0 + mBinZ;
+                // 除去此行格子在 y, z 方向能够达到的最大值，剩下的需要由 x 方向补足
+                final double tRest = aD - Math.max(aNY*tBY0, aNY*tBY1) - Math.max(aNZ*tBZ0, aNZ*tBZ1);
+                int tX0 = 0, tX1 = mBX-1;
+                if (aNX > 0.0) {
+                    if (mMaxX*aNX < tRest) continue;
+                    tX0 = cellOf_(tRest/aNX, mMinX, mBinX, mBX);
+                } else
+                if (aNX < 0.0) {
+                    if (mMinX*aNX < tRest) continue;
+                    tX1 = cellOf_(tRest/aNX, mMinX, mBinX, mBX);
+                } else
+                if (tRest > 0.0) continue;
+                for (int tX = tX0; tX <= tX1; ++tX) {
+                    final double tBX0 = mMinX + tX*mBinX, tBX1 = tBX0 + mBinX;
+                    // 完全在 aBox 内部的格子中的节点都已经参与了构建
+                    if (tBX0>=aBox[0] && tBY0>=aBox[1] && tBZ0>=aBox[2] && tBX1<=aBox[3] && tBY1<=aBox[4] && tBZ1<=aBox[5]) continue;
+                    final int tBin = (tZ*mBY + tY)*mBX + tX;
+                    for (int k = mBinStart[tBin]; k < mBinStart[tBin+1]; ++k) {
+                        final int tIdx = mBinSorted[k]*3;
+                        final double tPX = mXYZ[tIdx], tPY = mXYZ[tIdx+1], tPZ = mXYZ[tIdx+2];
+                        if (tPX>=aBox[0] && tPY>=aBox[1] && tPZ>=aBox[2] && tPX<=aBox[3] && tPY<=aBox[4] && tPZ<=aBox[5]) continue;
+                        if (aNX*tPX + aNY*tPY + aNZ*tPZ < aD) continue;
+                        if (aExtra.contains(mBinSorted[k])) continue;
+                        rConflict.add(mBinSorted[k]);
+                        rFound = true;
+                    }
+                }
+            }
+            return rFound;
+        }
+    }
+    
+    
+    /**
+     * 获取位置节点，支持随机访问，节点按照输入顺序排列；
+     * 节点来自于对应子区域的 {@link VoronoiBuilder}，因此其近邻节点中可能包含 ghost 节点
+     * @author CHanzy
+     * @param aIdx 需要获取的节点索引
+     * @return 包含 voronoi 多面体参数的节点
+     */
+    public VoronoiBuilder.IVertex getVertex(int aIdx) {
+        if (aIdx<0 || aIdx>=sizeVertex()) throw new IndexOutOfBoundsException("Index: "+aIdx+", Size: "+sizeVertex());
+        return mDomainBuilder[mOwnerDomain[aIdx]].getVertex(mOwnerLocal[aIdx]);
+    }
+    public int sizeVertex() {return mOwnerDomain.length;}
+    public @Unmodifiable List<VoronoiBuilder.IVertex> allVertex() {
+        return new AbstractRandomAccessList<VoronoiBuilder.IVertex>() {
+            @Override public VoronoiBuilder.IVertex get(int index) {return getVertex(index);}
+            @Override public int size() {return sizeVertex();}
+        };
+    }
+    /** @return 此节点的 voronoi 多面体是否有界，凸包上的节点的多面体无界，其参数没有意义 */
+    public boolean isBounded(int aIdx) {
+        if (aIdx<0 || aIdx>=sizeVertex()) throw new IndexOutOfBoundsException("Index: "+aIdx+", Size: "+sizeVertex());
+        return mBounded[aIdx];
+    }
+    /** @return 划分的子区域数目 */
+    public int domainNum() {return mDomainBuilder.length;}
+}
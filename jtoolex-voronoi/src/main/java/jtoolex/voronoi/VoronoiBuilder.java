@@ -15,17 +15,16 @@
  *
  * You should have received a copy of the GNU Affero General Public License
  * along with this program.  If not, see <http://www.gnu.org/licenses/>.
- * 
+ *
  * Modifications:
  * - Copyright (C) 2023 CHanzy/CHanzyLazer. All rights reserved.
  * - Simplify for project usage and add voronoi parameter calculation
  */
 package jtoolex.voronoi;
 
-import jtool.atom.AbstractXYZ;
 import jtool.atom.XYZ;
 import jtool.atom.IXYZ;
-import jtool.code.collection.AbstractCollections;
+import jtool.code.collection.AbstractRandomAccessList;
 import jtool.math.MathEX;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
@@ -33,6 +32,11 @@ import org.jetbrains.annotations.Unmodifiable;
 import org.jetbrains.annotations.VisibleForTesting;
 
 import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.function.BinaryOperator;
+import java.util.function.Supplier;
 
 import static jtool.code.CS.RANDOM;
 
@@ -46,78 +50,77 @@ import static jtool.code.CS.RANDOM;
  * <a href="https://github.com/Hellblazer/Voronoi-3D">
  * Hellblazer/Voronoi-3D </a>
  * <p>
+ * 节点和四面体都使用 struct-of-arrays 的方式存储在基本类型的数组中，通过 id 来索引，
+ * 对外的 {@link IVertex} 和 {@link ITetrahedron} 只是轻量的视图，从而减少大体系下的内存占用
+ * <p>
  * 此类线程不安全，但不同实例间线程安全
  * @author CHanzy
  */
 public final class VoronoiBuilder {
-    /** 内部的节点类，存储自身位置和一个近邻的四面体即可 */
-    abstract class AbstractVertex implements IVertex {
-        final @NotNull XYZ mXYZ;
-        /*@NotNull*/ Tetrahedron mAdj;
-        AbstractVertex(@NotNull XYZ aXYZ, /*@NotNull*/ Tetrahedron aAdj) {mXYZ = aXYZ; mAdj = aAdj;}
-        
-        final int orient(Vertex aA, Vertex aB, Vertex aC) {return VoronoiBuilder.orient(mXYZ, aA.mXYZ, aB.mXYZ, aC.mXYZ);}
-        final void freshenAdjacent(Tetrahedron aTet) {if (!mAdj.valid()) mAdj = aTet;}
-    }
-    
-    /** 内部的定向面类 */
+    /**
+     * 内部的定向面类，现在每个 builder 只有一个实例，处理每个界面时通过 {@link #set} 重新指定，
+     * 需要处理的界面则打包成 int 存储在 mEarBuffer 中，从而在翻转过程中不会创建任何对象
+     */
     class OrientedFace {
         /** 这里多存储一些成员变量，可能性能会有所下降，但是可以减少一些重复代码，并且保证代码的一致性 */
-        final @NotNull Tetrahedron mIncident;
-        final byte mFace;
-        final byte mAdjFace;
-        OrientedFace(@NotNull Tetrahedron aIncident, byte aFace) {
+        int mIncident;
+        byte mFace;
+        byte mAdjFace;
+        /** 在取出界面时才计算 mAdjFace，保证使用的是此时的近邻关系 */
+        OrientedFace set(int aIncident, byte aFace) {
             mIncident = aIncident; mFace = aFace;
-            Tetrahedron tAdj = adjacent();
-            mAdjFace = tAdj==null ? PosTet.NULL : tAdj.ordinalOf(mIncident);
+            int tAdj = adjacent();
+            mAdjFace = tAdj==NULL_ID ? PosTet.NULL : tetOrdinalOfNeighbor(tAdj, mIncident);
+            return this;
         }
         
         boolean hasAdjacent() {return mAdjFace!=PosTet.NULL;}
-        @NotNull Tetrahedron incident() {return mIncident;}
-        @Nullable Tetrahedron adjacent() {return mIncident.getNeighbor(mFace);}
-        @NotNull Vertex incidentVertex() {return mIncident.getVertex(mFace);}
-        @Nullable Vertex adjacentVertex() {return mAdjFace==PosTet.NULL ? null : Objects.requireNonNull(adjacent()).getVertex(mAdjFace);}
+        int incident() {return mIncident;}
+        int adjacent() {return tetNeighbor(mIncident, mFace);}
+        int incidentVertex() {return tetVertex(mIncident, mFace);}
+        int adjacentVertex() {return mAdjFace==PosTet.NULL ? NULL_ID : tetVertex(adjacent(), mAdjFace);}
         
         boolean valid() {
-            if (!incident().valid()) return false;
-            @Nullable Tetrahedron tAdjacent = adjacent();
-            return tAdjacent!=null && tAdjacent.valid();
+            if (!tetValid(incident())) return false;
+            int tAdjacent = adjacent();
+            return tAdjacent!=NULL_ID && tetValid(tAdjacent);
         }
         
         /** 如果相邻四面体中的顶点包含在入射四面体的外球面中，则返回 true */
-        boolean notRegular() {return hasAdjacent() && mIncident.inSphere(Objects.requireNonNull(adjacentVertex()).mXYZ) > 0;}
+        boolean notRegular() {return hasAdjacent() && tetInSphere(mIncident, adjacentVertex()) > 0;}
         
-        Vertex getVertex(int aIdx) {
+        int getVertex(int aIdx) {
+            final int tBase = mIncident<<2;
             switch(mFace) {
             case PosTet.A: {
                 switch (aIdx) {
-                case 0: {return mIncident.mC;}
-                case 1: {return mIncident.mB;}
-                case 2: {return mIncident.mD;}
+                case 0: {return mTetVertex[tBase+PosTet.C];}
+                case 1: {return mTetVertex[tBase+PosTet.B];}
+                case 2: {return mTetVertex[tBase+PosTet.D];}
                 default: throw new RuntimeException();
                 }
             }
             case PosTet.B: {
                 switch (aIdx) {
-                case 0: {return mIncident.mD;}
-                case 1: {return mIncident.mA;}
-                case 2: {return mIncident.mC;}
+                case 0: {return mTetVertex[tBase+PosTet.D];}
+                case 1: {return mTetVertex[tBase+PosTet.A];}
+                case 2: {return mTetVertex[tBase+PosTet.C];}
                 default: throw new RuntimeException();
                 }
             }
             case PosTet.C: {
                 switch (aIdx) {
-                case 0: {return mIncident.mA;}
-                case 1: {return mIncident.mD;}
-                case 2: {return mIncident.mB;}
+                case 0: {return mTetVertex[tBase+PosTet.A];}
+                case 1: {return mTetVertex[tBase+PosTet.D];}
+                case 2: {return mTetVertex[tBase+PosTet.B];}
                 default: throw new RuntimeException();
                 }
             }
             case PosTet.D: {
                 switch (aIdx) {
-                case 0: {return mIncident.mB;}
-                case 1: {return mIncident.mC;}
-                case 2: {return mIncident.mA;}
+                case 0: {return mTetVertex[tBase+PosTet.B];}
+                case 1: {return mTetVertex[tBase+PosTet.C];}
+                case 2: {return mTetVertex[tBase+PosTet.A];}
                 default: throw new RuntimeException();
                 }
             }
@@ -129,13 +132,12 @@ public final class VoronoiBuilder {
         /**
          * 尝试翻转此面保证 delaunay condition
          * <p>
-         * 很乱的写法，为了避免出现问题，这里保持原本写法
-         * @param rEars 缓存此操作需要优化的面
-         * @return null 如果尝试翻转失败，如果成功则返回新的四面体中的一个
+         * 很乱的写法，为了避免出现问题，这里保持原本写法；此操作需要优化的面会直接添加到 mEarBuffer
+         * @return {@link #NULL_ID} 如果尝试翻转失败，如果成功则返回新的四面体中的一个
          */
-        Tetrahedron tryFlip(Deque<OrientedFace> rEars) {
-            if (!valid()) return null;
-            Vertex tIncidentVertex = incidentVertex();
+        int tryFlip() {
+            if (!valid()) return NULL_ID;
+            int tIncidentVertex = incidentVertex();
             
             int tReflexEdge = 0;
             int tReflexEdgeNum = 0;
@@ -148,23 +150,25 @@ public final class VoronoiBuilder {
                 }
             }
             
-            Tetrahedron tOut = null;
+            int tOut = NULL_ID;
             if (tReflexEdgeNum == 0 && notRegular()) {
                 // Only one face of the opposing tetrahedron is visible
-                for (Tetrahedron tTet : flip2to3()) {
-                    OrientedFace tFace = tTet.getFace(tIncidentVertex);
-                    if (tFace.hasAdjacent()) rEars.add(tFace);
+                final int tNum = flip2to3();
+                for (int i = 0; i < tNum; ++i) {
+                    int tTet = mFlipBuffer[i];
+                    pushEar_(tTet, tetOrdinalOfVertex(tTet, tIncidentVertex));
                     tOut = tTet;
                 }
             } else if (tReflexEdgeNum == 1 && notRegular()) {
                 // Two faces of the opposing tetrahedron are visible
-                Vertex opposingVertex = getVertex(tReflexEdge);
-                Tetrahedron tTet1 = incident().getNeighbor(opposingVertex);
-                Tetrahedron tTet2 = Objects.requireNonNull(adjacent()).getNeighbor(opposingVertex);
-                if (tTet1 != null && tTet1 == tTet2) {
-                    for (Tetrahedron tTet : flip3to2(tReflexEdge)) {
-                        OrientedFace tFace = tTet.getFace(tIncidentVertex);
-                        if (tFace.hasAdjacent()) rEars.add(tFace);
+                int opposingVertex = getVertex(tReflexEdge);
+                int tTet1 = tetNeighborOfVertex(incident(), opposingVertex);
+                int tTet2 = tetNeighborOfVertex(adjacent(), opposingVertex);
+                if (tTet1 != NULL_ID && tTet1 == tTet2) {
+                    final int tNum = flip3to2(tReflexEdge);
+                    for (int i = 0; i < tNum; ++i) {
+                        int tTet = mFlipBuffer[i];
+                        pushEar_(tTet, tetOrdinalOfVertex(tTet, tIncidentVertex));
                         tOut = tTet;
                     }
                 }
@@ -172,41 +176,76 @@ public final class VoronoiBuilder {
             // all three faces are visible, no action taken
             return tOut;
         }
+        /**
+         * 修复任意位置的非 delaunay 面，用于 {@link #updatePositions}：假定此面已经不满足 delaunay 条件，
+         * 进行和 {@link #tryFlip()} 相同的翻转，但是新四面体的所有面都需要重新检测，而不只是插入节点对面的面
+         * @return 是否进行了翻转，此面暂时无法翻转时返回 false
+         */
+        boolean repairFlip() {
+            int tReflexEdge = 0;
+            int tReflexEdgeNum = 0;
+            for (int i = 0; tReflexEdgeNum < 2 && i < 3; i++) {
+                if (isReflex(i)) {
+                    tReflexEdge = i;
+                    ++tReflexEdgeNum;
+                }
+            }
+            final int tNum;
+            if (tReflexEdgeNum == 0) {
+                tNum = flip2to3();
+            } else if (tReflexEdgeNum == 1) {
+                // 只有反射边的度为 3 时才能进行 3-2 翻转
+                int opposingVertex = getVertex(tReflexEdge);
+                int tTet1 = tetNeighborOfVertex(incident(), opposingVertex);
+                int tTet2 = tetNeighborOfVertex(adjacent(), opposingVertex);
+                if (tTet1==NULL_ID || tTet1!=tTet2) return false;
+                tNum = flip3to2(tReflexEdge);
+            } else {
+                return false;
+            }
+            for (int i = 0; i < tNum; ++i) {
+                int tTet = mFlipBuffer[i];
+                for (byte tFace : PosTet.FACES) pushEar_(tTet, tFace);
+            }
+            return true;
+        }
         
         boolean isReflex(int aIdx) {
-            Vertex tAdjVertex = adjacentVertex();
-            if (tAdjVertex == null) return false;
+            int tAdjVertex = adjacentVertex();
+            if (tAdjVertex == NULL_ID) return false;
             
+            final int tBase = mIncident<<2;
+            final int tA = mTetVertex[tBase+PosTet.A], tB = mTetVertex[tBase+PosTet.B], tC = mTetVertex[tBase+PosTet.C], tD = mTetVertex[tBase+PosTet.D];
             switch(mFace) {
             case PosTet.A: {
                 switch (aIdx) {
-                case 0: {return tAdjVertex.orient(mIncident.mA, mIncident.mB, mIncident.mD) == 1;}
-                case 1: {return tAdjVertex.orient(mIncident.mC, mIncident.mA, mIncident.mD) == 1;}
-                case 2: {return tAdjVertex.orient(mIncident.mC, mIncident.mB, mIncident.mA) == 1;}
+                case 0: {return orient(tAdjVertex, tA, tB, tD) == 1;}
+                case 1: {return orient(tAdjVertex, tC, tA, tD) == 1;}
+                case 2: {return orient(tAdjVertex, tC, tB, tA) == 1;}
                 default: throw new RuntimeException();
                 }
             }
             case PosTet.B: {
                 switch (aIdx) {
-                case 0: {return tAdjVertex.orient(mIncident.mB, mIncident.mA, mIncident.mC) == 1;}
-                case 1: {return tAdjVertex.orient(mIncident.mD, mIncident.mB, mIncident.mC) == 1;}
-                case 2: {return tAdjVertex.orient(mIncident.mD, mIncident.mA, mIncident.mB) == 1;}
+                case 0: {return orient(tAdjVertex, tB, tA, tC) == 1;}
+                case 1: {return orient(tAdjVertex, tD, tB, tC) == 1;}
+                case 2: {return orient(tAdjVertex, tD, tA, tB) == 1;}
                 default: throw new RuntimeException();
                 }
             }
             case PosTet.C: {
                 switch (aIdx) {
-                case 0: {return tAdjVertex.orient(mIncident.mC, mIncident.mD, mIncident.mB) == 1;}
-                case 1: {return tAdjVertex.orient(mIncident.mA, mIncident.mC, mIncident.mB) == 1;}
-                case 2: {return tAdjVertex.orient(mIncident.mA, mIncident.mD, mIncident.mC) == 1;}
+                case 0: {return orient(tAdjVertex, tC, tD, tB) == 1;}
+                case 1: {return orient(tAdjVertex, tA, tC, tB) == 1;}
+                case 2: {return orient(tAdjVertex, tA, tD, tC) == 1;}
                 default: throw new RuntimeException();
                 }
             }
             case PosTet.D: {
                 switch (aIdx) {
-                case 0: {return tAdjVertex.orient(mIncident.mD, mIncident.mC, mIncident.mA) == 1;}
-                case 1: {return tAdjVertex.orient(mIncident.mB, mIncident.mD, mIncident.mA) == 1;}
-                case 2: {return tAdjVertex.orient(mIncident.mB, mIncident.mC, mIncident.mD) == 1;}
+                case 0: {return orient(tAdjVertex, tD, tC, tA) == 1;}
+                case 1: {return orient(tAdjVertex, tB, tD, tA) == 1;}
+                case 2: {return orient(tAdjVertex, tB, tC, tD) == 1;}
                 default: throw new RuntimeException();
                 }
             }
@@ -214,62 +253,52 @@ public final class VoronoiBuilder {
             }
         }
         
-        Tetrahedron[] flip2to3() {
-            Vertex tOpposingVertex = adjacentVertex(); assert tOpposingVertex != null;
-            Vertex tIncidentVertex = incidentVertex();
-            Tetrahedron rTet0 = new Tetrahedron(getVertex(0), tIncidentVertex, getVertex(1), tOpposingVertex);
-            Tetrahedron rTet1 = new Tetrahedron(getVertex(1), tIncidentVertex, getVertex(2), tOpposingVertex);
-            Tetrahedron rTet2 = new Tetrahedron(getVertex(0), getVertex(2), tIncidentVertex, tOpposingVertex);
+        /** 翻转得到的合法四面体会存储在 mFlipBuffer 中，返回合法四面体的数目，从而避免每次翻转都创建数组 */
+        int flip2to3() {
+            int tOpposingVertex = adjacentVertex(); assert tOpposingVertex != NULL_ID;
+            int tIncidentVertex = incidentVertex();
+            int rTet0 = newTet_(getVertex(0), tIncidentVertex, getVertex(1), tOpposingVertex);
+            int rTet1 = newTet_(getVertex(1), tIncidentVertex, getVertex(2), tOpposingVertex);
+            int rTet2 = newTet_(getVertex(0), getVertex(2), tIncidentVertex, tOpposingVertex);
             
-            rTet0.mTetA = rTet1;
-            rTet0.mTetC = rTet2;
+            setTetNeighbor(rTet0, PosTet.A, rTet1);
+            setTetNeighbor(rTet0, PosTet.C, rTet2);
             
-            rTet1.mTetA = rTet2;
-            rTet1.mTetC = rTet0;
+            setTetNeighbor(rTet1, PosTet.A, rTet2);
+            setTetNeighbor(rTet1, PosTet.C, rTet0);
             
-            rTet2.mTetA = rTet1;
-            rTet2.mTetB = rTet0;
+            setTetNeighbor(rTet2, PosTet.A, rTet1);
+            setTetNeighbor(rTet2, PosTet.B, rTet0);
             
-            mIncident.patch(getVertex(2), rTet0, PosTet.D);
-            mIncident.patch(getVertex(0), rTet1, PosTet.D);
-            mIncident.patch(getVertex(1), rTet2, PosTet.D);
+            patchVertex_(mIncident, getVertex(2), rTet0, PosTet.D);
+            patchVertex_(mIncident, getVertex(0), rTet1, PosTet.D);
+            patchVertex_(mIncident, getVertex(1), rTet2, PosTet.D);
             
-            Tetrahedron tAdjacent = adjacent(); assert tAdjacent != null;
+            int tAdjacent = adjacent(); assert tAdjacent != NULL_ID;
             
-            tAdjacent.patch(getVertex(0), rTet1, PosTet.B);
-            tAdjacent.patch(getVertex(1), rTet2, PosTet.C);
-            tAdjacent.patch(getVertex(2), rTet0, PosTet.B);
+            patchVertex_(tAdjacent, getVertex(0), rTet1, PosTet.B);
+            patchVertex_(tAdjacent, getVertex(1), rTet2, PosTet.C);
+            patchVertex_(tAdjacent, getVertex(2), rTet0, PosTet.B);
             
-            mIncident.delete();
-            tAdjacent.delete();
+            deleteTet_(mIncident);
+            deleteTet_(tAdjacent);
             
-            rTet0.removeAnyDegenerateTetrahedronPair();
-            rTet1.removeAnyDegenerateTetrahedronPair();
-            rTet2.removeAnyDegenerateTetrahedronPair();
+            removeAnyDegenerateTetrahedronPair_(rTet0);
+            removeAnyDegenerateTetrahedronPair_(rTet1);
+            removeAnyDegenerateTetrahedronPair_(rTet2);
             
-            if (rTet0.valid()) {
-                if (rTet1.valid()) {
-                    if (rTet2.valid()) return new Tetrahedron[]{rTet0, rTet1, rTet2};
-                    else return new Tetrahedron[]{rTet0, rTet1};
-                } else {
-                    if (rTet2.valid()) return new Tetrahedron[]{rTet0, rTet2};
-                    else return new Tetrahedron[]{rTet0};
-                }
-            } else {
-                if (rTet1.valid()) {
-                    if (rTet2.valid()) return new Tetrahedron[]{rTet1, rTet2};
-                    else return new Tetrahedron[]{rTet1};
-                } else {
-                    if (rTet2.valid()) return new Tetrahedron[]{rTet2};
-                    else return ZL_TET;
-                }
-            }
+            int rNum = 0;
+            if (tetValid(rTet0)) mFlipBuffer[rNum++] = rTet0;
+            if (tetValid(rTet1)) mFlipBuffer[rNum++] = rTet1;
+            if (tetValid(rTet2)) mFlipBuffer[rNum++] = rTet2;
+            return rNum;
         }
         
-        Tetrahedron[] flip3to2(int reflexEdge) {
-            Tetrahedron oTet2 = mIncident.getNeighbor(getVertex(reflexEdge));
+        /** 同样将翻转得到的两个四面体存储在 mFlipBuffer 中，返回 2 */
+        int flip3to2(int reflexEdge) {
+            int oTet2 = tetNeighborOfVertex(mIncident, getVertex(reflexEdge));
             
-            Vertex tTop0, tTop1;
+            int tTop0, tTop1;
             
             switch(reflexEdge) {
             case 0: {tTop0 = getVertex(1); tTop1 = getVertex(2); break;}
@@ -278,337 +307,1901 @@ public final class VoronoiBuilder {
             default: throw new RuntimeException();
             }
             
-            Vertex tX = getVertex(reflexEdge);
-            Vertex tY = incidentVertex();
-            Vertex tZ = adjacentVertex(); assert tZ != null;
+            int tX = getVertex(reflexEdge);
+            int tY = incidentVertex();
+            int tZ = adjacentVertex(); assert tZ != NULL_ID;
             
-            Tetrahedron rTet0, rTet1;
-            if (tTop0.orient(tX, tY, tZ) > 0) {
-                rTet0 = new Tetrahedron(tX, tY, tZ, tTop0);
-                rTet1 = new Tetrahedron(tY, tX, tZ, tTop1);
+            int rTet0, rTet1;
+            if (orient(tTop0, tX, tY, tZ) > 0) {
+                rTet0 = newTet_(tX, tY, tZ, tTop0);
+                rTet1 = newTet_(tY, tX, tZ, tTop1);
             } else {
-                rTet0 = new Tetrahedron(tX, tY, tZ, tTop1);
-                rTet1 = new Tetrahedron(tY, tX, tZ, tTop0);
+                rTet0 = newTet_(tX, tY, tZ, tTop1);
+                rTet1 = newTet_(tY, tX, tZ, tTop0);
             }
             
-            rTet0.mTetD = rTet1;
-            rTet1.mTetD = rTet0;
+            setTetNeighbor(rTet0, PosTet.D, rTet1);
+            setTetNeighbor(rTet1, PosTet.D, rTet0);
             
-            mIncident.patch(rTet0.mD, rTet1, rTet1.ordinalOf(adjacentVertex()));
-            mIncident.patch(rTet1.mD, rTet0, rTet0.ordinalOf(adjacentVertex()));
+            final int tD0 = tetVertex(rTet0, PosTet.D), tD1 = tetVertex(rTet1, PosTet.D);
             
-            Tetrahedron tAdjacent = adjacent(); assert tAdjacent != null;
+            patchVertex_(mIncident, tD0, rTet1, tetOrdinalOfVertex(rTet1, adjacentVertex()));
+            patchVertex_(mIncident, tD1, rTet0, tetOrdinalOfVertex(rTet0, adjacentVertex()));
             
-            tAdjacent.patch(rTet0.mD, rTet1, rTet1.ordinalOf(incidentVertex()));
-            tAdjacent.patch(rTet1.mD, rTet0, rTet0.ordinalOf(incidentVertex()));
+            int tAdjacent = adjacent(); assert tAdjacent != NULL_ID;
             
-            oTet2.patch(rTet0.mD, rTet1, rTet1.ordinalOf(getVertex(reflexEdge)));
-            oTet2.patch(rTet1.mD, rTet0, rTet0.ordinalOf(getVertex(reflexEdge)));
+            patchVertex_(tAdjacent, tD0, rTet1, tetOrdinalOfVertex(rTet1, incidentVertex()));
+            patchVertex_(tAdjacent, tD1, rTet0, tetOrdinalOfVertex(rTet0, incidentVertex()));
             
-            mIncident.delete();
-            tAdjacent.delete();
-            oTet2.delete();
+            patchVertex_(oTet2, tD0, rTet1, tetOrdinalOfVertex(rTet1, getVertex(reflexEdge)));
+            patchVertex_(oTet2, tD1, rTet0, tetOrdinalOfVertex(rTet0, getVertex(reflexEdge)));
             
-            return new Tetrahedron[]{rTet0, rTet1};
+            deleteTet_(mIncident);
+            deleteTet_(tAdjacent);
+            deleteTet_(oTet2);
+            
+            mFlipBuffer[0] = rTet0;
+            mFlipBuffer[1] = rTet1;
+            return 2;
         }
     }
     
-    /** 内部的四面体类，存储周围四个面对应的近邻 */
-    final static Tetrahedron[] ZL_TET = new Tetrahedron[0];
-    abstract class AbstractTetrahedron implements ITetrahedron {
-        /** 此四面体的四个顶点 */
-        final @NotNull Vertex mA, mB, mC, mD;
-        /** 此四面体的四个面对应的四面体，如果没有则为 null */
-        @Nullable Tetrahedron mTetA = null, mTetB = null, mTetC = null, mTetD = null;
-        /** 通过四个点来构造这个四面体 */
-        AbstractTetrahedron(@NotNull Vertex aA, @NotNull Vertex aB, @NotNull Vertex aC, @NotNull Vertex aD) {
-            mA = aA; mB = aB; mC = aC; mD = aD;
+    
+    /** 此项目的风格，对于几何中使用的枚举常量，并且为私有情况下，使用 byte 而不是 enum */
+    static class PosTet {
+        final static byte A = 0, B = 1, C = 2, D = 3, NULL = -1;
+        final static byte[] VERTICES = {A, B, C, D}, FACES = VERTICES;
+        /** 每个面上三个顶点的顺序，和 {@link OrientedFace#getVertex} 一致 */
+        static final byte[][] FACE_VERTEX = {{C, B, D}, {D, A, C}, {A, D, B}, {B, C, A}};
+        /** 随机方向的预选值 */
+        static final byte[][][] ORDER = {
+              {{B, C, D}, {C, B, D}, {C, D, B}, {B, D, C}, {D, B, C}, {D, C, B}}
+            , {{A, C, D}, {C, A, D}, {C, D, A}, {A, D, C}, {D, A, C}, {D, C, A}}
+            , {{B, A, D}, {A, B, D}, {A, D, B}, {B, D, A}, {D, B, A}, {D, A, B}}
+            , {{B, C, A}, {C, B, A}, {C, A, B}, {B, A, C}, {A, B, C}, {A, C, B}}
+        };
+    }
+    /**
+     * 批量插入时使用的空间排序，按照 BRIO 分轮后每轮内部按照 Hilbert 曲线排序，参考：
+     * <a href="https://doi.org/10.1145/777792.777824">
+     * Incremental constructions con BRIO </a>
+     * <p>
+     * 为了直接使用 {@link Arrays#parallelSort(long[])}，这里将轮次，Hilbert 值和索引打包到一个 long 中，
+     * 从高到低分别为 4 位的轮次，27 位的 Hilbert 值（每个方向 9 位）以及 32 位的索引
+     */
+    static class SpatialSort {
+        final static int ROUND_MAX = 16;
+        /** 第一轮的最少节点数目，过小的轮次对于局部性没有帮助 */
+        final static int ROUND_MIN_SIZE = 64;
+        final static int HILBERT_BITS = 9;
+        final static int HILBERT_MASK = (1<<(HILBERT_BITS*3)) - 1;
+        
+        /** 获取 BRIO 的插入顺序，返回输入节点的索引 */
+        static int[] brioOrder(double[] aXYZ, int aNum, Random aRNG) {
+            // 计算包围盒用于离散化
+            double tMinX = Double.POSITIVE_INFINITY, tMinY = Double.POSITIVE_INFINITY, tMinZ = Double.POSITIVE_INFINITY;
+            double tMaxX = Double.NEGATIVE_INFINITY, tMaxY = Double.NEGATIVE_INFINITY, tMaxZ = Double.NEGATIVE_INFINITY;
+            for (int i = 0, j = 0; i < aNum; ++i, j+=3) {
+                tMinX = Math.min(tMinX, aXYZ[j  ]); tMaxX = Math.max(tMaxX, aXYZ[j  ]);
+                tMinY = Math.min(tMinY, aXYZ[j+1]); tMaxY = Math.max(tMaxY, aXYZ[j+1]);
+                tMinZ = Math.min(tMinZ, aXYZ[j+2]); tMaxZ = Math.max(tMaxZ, aXYZ[j+2]);
+            }
+            final int tCellNum = 1<<HILBERT_BITS;
+            final double tScaleX = tMaxX>tMinX ? tCellNum/(tMaxX-tMinX) : 0.0;
+            final double tScaleY = tMaxY>tMinY ? tCellNum/(tMaxY-tMinY) : 0.0;
+            final double tScaleZ = tMaxZ>tMinZ ? tCellNum/(tMaxZ-tMinZ) : 0.0;
+            // 轮次数目，最后一轮包含一半的节点，往前每轮减半
+            int tRoundNum = 1;
+            while (tRoundNum<ROUND_MAX && (aNum>>tRoundNum)>=ROUND_MIN_SIZE) ++tRoundNum;
+            final long tRoundMask = (1L<<(tRoundNum-1)) - 1;
+            long[] tKeys = new long[aNum];
+            for (int i = 0, j = 0; i < aNum; ++i, j+=3) {
+                // 每个节点以 1/2 的概率在最后一轮，1/4 的概率在倒数第二轮，以此类推
+                int tRound = tRoundNum-1 - Long.numberOfTrailingZeros(aRNG.nextLong() | ~tRoundMask);
+                int tX = Math.min(tCellNum-1, (int)((aXYZ[j  ]-tMinX)*tScaleX));
+                int tY = Math.min(tCellNum-1, (int)((aXYZ[j+1]-tMinY)*tScaleY));
+                int tZ = Math.min(tCellNum-1, (int)((aXYZ[j+2]-tMinZ)*tScaleZ));
+                long tHilbert = hilbert(tX, tY, tZ, HILBERT_BITS);
+                // 相邻轮次反向遍历曲线，使得上一轮的结尾和下一轮的开头更加接近
+                if ((tRound&1) == 1) tHilbert = HILBERT_MASK - tHilbert;
+                tKeys[i] = ((long)tRound<<59) | (tHilbert<<32) | i;
+            }
+            Arrays.parallelSort(tKeys);
+            int[] rOrder = new int[aNum];
+            for (int i = 0; i < aNum; ++i) rOrder[i] = (int)tKeys[i];
+            return rOrder;
+        }
+        
+        /**
+         * 计算三维 Hilbert 曲线上的索引，参考：
+         * <a href="https://doi.org/10.1063/1.1751381">
+         * Programming the Hilbert curve </a>
+         */
+        static long hilbert(int aX, int aY, int aZ, int aBits) {
+            int tX = aX, tY = aY, tZ = aZ;
+            // Inverse undo
+            for (int tQ = 1<<(aBits-1); tQ > 1; tQ >>= 1) {
+                int tP = tQ - 1, t;
+                if ((tX & tQ) != 0) tX ^= tP;
+                if ((tY & tQ) != 0) tX ^= tP; else {t = (tX^tY) & tP; tX ^= t; tY ^= t;}
+                if ((tZ & tQ) != 0) tX ^= tP; else {t = (tX^tZ) & tP; tX ^= t; tZ ^= t;}
+            }
+            // Gray encode
+            tY ^= tX;
+            tZ ^= tY;
+            int t = 0;
+            for (int tQ = 1<<(aBits-1); tQ > 1; tQ >>= 1) if ((tZ & tQ) != 0) t ^= tQ - 1;
+            tX ^= t; tY ^= t; tZ ^= t;
+            // 交错得到最终的索引
+            long rKey = 0;
+            for (int tBit = aBits-1; tBit >= 0; --tBit) {
+                rKey = (rKey<<3) | (((tX>>tBit)&1)<<2) | (((tY>>tBit)&1)<<1) | ((tZ>>tBit)&1);
+            }
+            return rKey;
         }
+    }
+    
+    /**
+     * 用于加速定位的均匀网格，每个格子记录最近插入到此格子中的节点，定位时从此节点的近邻四面体开始寻路；
+     * 包围盒以及格子数目会在插入的节点数目翻倍时重新构建，保持每个格子平均只有几个节点，
+     * 从而对于乱序的输入寻路长度也可以保持为常数，并且重新构建的开销均摊后为 O(1)
+     */
+    class LocateGrid {
+        /** 插入的节点达到此数目后才开始构建网格 */
+        final static int MIN_VERTEX_NUM = 64;
+        /** 构建时每个格子平均的节点数目，以及每个方向的最大格子数目 */
+        final static double VERTEX_PER_CELL = 2.0;
+        final static int MAX_CELL_PER_DIM = 1<<10;
+        
+        int[] mCell = new int[0];
+        int mNX = 0, mNY = 0, mNZ = 0;
+        double mMinX, mMinY, mMinZ, mInvSize;
+        /** 已经插入的节点数目以及上次构建时的节点数目 */
+        int mInsertNum = 0, mBuildNum = 0;
         
-        /** 直接从 mAllTet 来检测此四面体是否已经被删除 */
-        @Override public boolean valid() {return mAllTet.contains((Tetrahedron)this);}
-        /**  是否含有输入的节点 */
-        boolean containsVertex(Vertex aVertex) {return mA==aVertex || mB==aVertex || mC==aVertex || mD==aVertex;}
+        void reset() {mInsertNum = 0; mBuildNum = 0; mNX = mNY = mNZ = 0;}
         
+        /** 记录新插入的节点，节点数目翻倍时重新构建 */
+        void add(int aVertex) {
+            ++mInsertNum;
+            if (mInsertNum>=MIN_VERTEX_NUM && mInsertNum>=2*mBuildNum) {rebuild_(); return;}
+            if (mNX == 0) return;
+            final int tIdx = aVertex*3;
+            mCell[cell_(mVertexXYZ[tIdx], mVertexXYZ[tIdx+1], mVertexXYZ[tIdx+2])] = aVertex;
+        }
         /**
-         * 获取给定两个节点组成的棱两侧的近邻四面体，并返回和指定四面体不同的那一个，
-         * 用于沿着棱绕圈
-         * @author CHanzy
-         * @param aVertex1 棱上第一个节点
-         * @param aVertex2 棱上第二个节点
-         * @param aTetFrom 绕行方向来的四面体，输入 null 表明可以返回任意方向的四面体
-         * @return 下一个方向的四面体，null 表明没有这个四面体
+         * 删除节点，只更新其所在的格子；其余填充的格子中的旧节点会在 {@link #start} 中因为 adj 失效而被忽略，
+         * 或者在 id 被重复使用后只是作为较远的起点
          */
-        @Nullable Tetrahedron getNeighbor(Vertex aVertex1, Vertex aVertex2, @Nullable Tetrahedron aTetFrom) {
-            switch (ordinalOf(aVertex1)) {
-            case PosTet.A: {
-                switch(ordinalOf(aVertex2)) {
-                case PosTet.B: {return mTetC==aTetFrom ? mTetD : mTetC;}
-                case PosTet.C: {return mTetB==aTetFrom ? mTetD : mTetB;}
-                case PosTet.D: {return mTetB==aTetFrom ? mTetC : mTetB;}
-                default: throw new RuntimeException();
+        void remove(int aVertex) {
+            --mInsertNum;
+            if (mNX == 0) return;
+            final int tIdx = aVertex*3;
+            final int tCell = cell_(mVertexXYZ[tIdx], mVertexXYZ[tIdx+1], mVertexXYZ[tIdx+2]);
+            if (mCell[tCell] == aVertex) mCell[tCell] = NULL_ID;
+        }
+        /** 节点的 id 从 aFrom 变为 aTo，同样只更新其所在的格子 */
+        void move(int aFrom, int aTo) {
+            if (mNX == 0) return;
+            final int tIdx = aTo*3;
+            final int tCell = cell_(mVertexXYZ[tIdx], mVertexXYZ[tIdx+1], mVertexXYZ[tIdx+2]);
+            if (mCell[tCell] == aFrom) mCell[tCell] = aTo;
+        }
+        /** 记录并发插入的多个节点，这里直接重新构建 */
+        void addAll(int aNum) {
+            mInsertNum += aNum;
+            if (mInsertNum >= MIN_VERTEX_NUM) rebuild_();
+        }
+        /** 获取寻路的起点，对应格子没有节点时使用 aLast */
+        int start(double aX, double aY, double aZ, int aLast) {
+            if (mNX == 0) return aLast;
+            int tVertex = mCell[cell_(aX, aY, aZ)];
+            if (tVertex == NULL_ID) return aLast;
+            int tTet = mVertexAdj[tVertex];
+            return tetValid(tTet) ? tTet : aLast;
+        }
+        
+        /** 包围盒外的位置直接截断到边界的格子 */
+        private int cell_(double aX, double aY, double aZ) {
+            int tX = Math.max(0, Math.min(mNX-1, (int)((aX-mMinX)*mInvSize)));
+            int tY = Math.max(0, Math.min(mNY-1, (int)((aY-mMinY)*mInvSize)));
+            int tZ = Math.max(0, Math.min(mNZ-1, (int)((aZ-mMinZ)*mInvSize)));
+            return (tZ*mNY + tY)*mNX + tX;
+        }
+        /** 只考虑已经插入的节点，批量插入时还未插入的节点 adj 为 {@link #NULL_ID} */
+        private void rebuild_() {
+            mBuildNum = mInsertNum;
+            double tMinX = Double.POSITIVE_INFINITY, tMinY = Double.POSITIVE_INFINITY, tMinZ = Double.POSITIVE_INFINITY;
+            double tMaxX = Double.NEGATIVE_INFINITY, tMaxY = Double.NEGATIVE_INFINITY, tMaxZ = Double.NEGATIVE_INFINITY;
+            for (int tVertex = INIT_VERTEX_NUM; tVertex < mVertexNum; ++tVertex) if (mVertexAdj[tVertex] != NULL_ID) {
+                final int tIdx = tVertex*3;
+                tMinX = Math.min(tMinX, mVertexXYZ[tIdx  ]); tMaxX = Math.max(tMaxX, mVertexXYZ[tIdx  ]);
+                tMinY = Math.min(tMinY, mVertexXYZ[tIdx+1]); tMaxY = Math.max(tMaxY, mVertexXYZ[tIdx+1]);
+                tMinZ = Math.min(tMinZ, mVertexXYZ[tIdx+2]); tMaxZ = Math.max(tMaxZ, mVertexXYZ[tIdx+2]);
+            }
+            final double tLX = tMaxX-tMinX, tLY = tMaxY-tMinY, tLZ = tMaxZ-tMinZ;
+            final double tLMax = Math.max(tLX, Math.max(tLY, tLZ));
+            // 格子尺寸按照体积来确定，对于 2D 的情况限制最薄的方向，避免格子尺寸过小
+            double tSize = 1.0;
+            if (tLMax > 0.0) {
+                final double tLMin = tLMax*1.0e-3;
+                double tVolume = Math.max(tLX, tLMin) * Math.max(tLY, tLMin) * Math.max(tLZ, tLMin);
+                tSize = Math.cbrt(tVolume * VERTEX_PER_CELL / mBuildNum);
+                tSize = Math.max(tSize, tLMax/MAX_CELL_PER_DIM);
+            }
+            mMinX = tMinX; mMinY = tMinY; mMinZ = tMinZ;
+            mInvSize = 1.0/tSize;
+            mNX = Math.max(1, Math.min(MAX_CELL_PER_DIM, (int)Math.ceil(tLX*mInvSize)));
+            mNY = Math.max(1, Math.min(MAX_CELL_PER_DIM, (int)Math.ceil(tLY*mInvSize)));
+            mNZ = Math.max(1, Math.min(MAX_CELL_PER_DIM, (int)Math.ceil(tLZ*mInvSize)));
+            final int tCellNum = mNX*mNY*mNZ;
+            if (mCell.length < tCellNum) mCell = new int[tCellNum];
+            Arrays.fill(mCell, 0, tCellNum, NULL_ID);
+            for (int tVertex = INIT_VERTEX_NUM; tVertex < mVertexNum; ++tVertex) if (mVertexAdj[tVertex] != NULL_ID) {
+                final int tIdx = tVertex*3;
+                mCell[cell_(mVertexXYZ[tIdx], mVertexXYZ[tIdx+1], mVertexXYZ[tIdx+2])] = tVertex;
+            }
+            // 空的格子使用相邻格子的节点填充，避免回退到可能很远的 mLast
+            fillEmpty_(1, mNX, mNY*mNZ);
+            fillEmpty_(mNX, mNY, mNZ);
+            fillEmpty_(mNX*mNY, mNZ, 1);
+        }
+        /** 沿着步长为 aStride，长度为 aLen 的每一行正反各扫描一次，用前一个非空的值填充空的格子 */
+        private void fillEmpty_(int aStride, int aLen, int aOuterNum) {
+            final int tRowSpan = aStride*aLen;
+            for (int tOuter = 0; tOuter < aOuterNum; ++tOuter) for (int tInner = 0; tInner < aStride; ++tInner) {
+                final int tStart = tOuter*tRowSpan + tInner;
+                int tPrev = NULL_ID;
+                for (int i = 0, j = tStart; i < aLen; ++i, j+=aStride) {
+                    if (mCell[j] == NULL_ID) mCell[j] = tPrev; else tPrev = mCell[j];
+                }
+                tPrev = NULL_ID;
+                for (int i = aLen-1, j = tStart+i*aStride; i >= 0; --i, j-=aStride) {
+                    if (mCell[j] == NULL_ID) mCell[j] = tPrev; else tPrev = mCell[j];
                 }
             }
-            case PosTet.B: {
-                switch(ordinalOf(aVertex2)) {
-                case PosTet.A: {return mTetC==aTetFrom ? mTetD : mTetC;}
-                case PosTet.C: {return mTetA==aTetFrom ? mTetD : mTetA;}
-                case PosTet.D: {return mTetA==aTetFrom ? mTetC : mTetA;}
-                default: throw new RuntimeException();
+        }
+    }
+    
+    /**
+     * 多个线程共享同一个三角剖分的并发插入，参考 lock-based parallel Delaunay，对四面体加锁：
+     * 每次插入时对寻路经过的四面体，外接球包含此节点的四面体（空腔）以及空腔外侧相邻的四面体加锁，
+     * 任意一个锁获取失败则释放所有锁后重试；由于所有锁都获取成功后才会删除空腔并重新连接（Bowyer-Watson），
+     * 重试时不需要回滚任何修改；只使用 try-lock，因此不会死锁
+     * <p>
+     * 并发阶段四面体存储不会扩容，并且不维护 mLiveTet，只通过 mLivePos 是否为负来标记四面体是否合法，
+     * 结束后再统一重建；四面体位置不够时剩下的节点会交给串行插入
+     */
+    class ConcurrentInsert {
+        /** 串行插入的最少节点数目，避免开始时所有线程都在同几个四面体上冲突 */
+        final static int MIN_SERIAL_NUM = 1024;
+        /** 每次分配给线程的节点数目，以及每次从全局获取的四面体位置数目 */
+        final static int VERTEX_CHUNK = 256;
+        final static int TET_CHUNK = 256;
+        /** 尝试插入的结果 */
+        final static byte INSERTED = 0, CONFLICT = 1, FULL = 2;
+        /** 每个四面体的锁，为 0 表示没有被锁住，否则为 {@code (线程编号+1)<<1}，最低位用来标记是否在当前线程的空腔中 */
+        final AtomicIntegerArray mLock;
+        final int mCapacity;
+        final AtomicInteger mNextSlot;
+        final int[] mOrder;
+        final int mSerialNum, mEnd;
+        final AtomicInteger mNextVertex;
+        volatile boolean mFull = false;
+        
+        ConcurrentInsert(int[] aOrder, int aStart, int aEnd) {
+            mCapacity = mTetGen.length;
+            mLock = new AtomicIntegerArray(mCapacity);
+            mNextSlot = new AtomicInteger(mTetSlotNum);
+            // 未使用过的位置同样标记为不合法
+            Arrays.fill(mLivePos, mTetSlotNum, mCapacity, -1);
+            mOrder = aOrder; mSerialNum = aStart; mEnd = aEnd;
+            mNextVertex = new AtomicInteger(aStart);
+        }
+        
+        /** 并发插入，返回由于四面体位置不够而没有插入的节点 */
+        int[] run(int aThreadNum) {
+            List<Worker> tWorkers = new ArrayList<>(aThreadNum);
+            for (int i = 0; i < aThreadNum; ++i) tWorkers.add(new Worker(i, mRNG.nextLong()));
+            ForkJoinPool tPool = new ForkJoinPool(aThreadNum);
+            try {
+                for (Future<Void> tFuture : tPool.invokeAll(tWorkers)) tFuture.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException(e);
+            } catch (ExecutionException e) {
+                Throwable tCause = e.getCause();
+                if (tCause instanceof RuntimeException) throw (RuntimeException)tCause;
+                if (tCause instanceof Error) throw (Error)tCause;
+                throw new RuntimeException(tCause);
+            } finally {
+                tPool.shutdown();
+            }
+            // 合并统计信息以及剩余的节点
+            mTetSlotNum = Math.min(mNextSlot.get(), mCapacity);
+            int tLeftNum = Math.max(0, mEnd-mNextVertex.get());
+            for (Worker tWorker : tWorkers) {
+                mLocateNum += tWorker.mLocateNum; mWalkNum += tWorker.mWalkNum;
+                tLeftNum += tWorker.mLeftNum;
+            }
+            int[] rLeft = new int[tLeftNum];
+            int j = 0;
+            for (Worker tWorker : tWorkers) {System.arraycopy(tWorker.mLeft, 0, rLeft, j, tWorker.mLeftNum); j += tWorker.mLeftNum;}
+            for (int i = mNextVertex.get(); i < mEnd; ++i) rLeft[j++] = mOrder[i];
+            return rLeft;
+        }
+        
+        /** 每个线程独立的插入器，拥有自己的随机数生成器，空闲的四面体位置以及各种缓存 */
+        final class Worker implements Callable<Void> {
+            private final int mLockValue;
+            private final Random mRNG;
+            private int mLast = NULL_ID, mLastVertex = NULL_ID;
+            /** 当前持有的锁，空腔中的四面体，以及打包成 {@code tet*4+face} 的空腔边界 */
+            private int[] mLocked = new int[64];
+            private int mLockedNum = 0;
+            private int[] mCavity = new int[64];
+            private int mCavityNum = 0;
+            private int[] mBoundary = new int[64];
+            private int mBoundaryNum = 0;
+            private int[] mNew = new int[64];
+            /** 此线程删除的四面体位置，以及当前从全局获取的位置区间 */
+            private int[] mFree = new int[64];
+            private int mFreeNum = 0;
+            private int mChunkNext = 0, mChunkEnd = 0;
+            /** 连接新的四面体时按照棱来配对的哈希表，键为打包的两个节点 */
+            private long[] mEdgeKey = new long[256];
+            private int[] mEdgeFace = new int[256];
+            /** 由于四面体位置不够没有插入的节点 */
+            private int[] mLeft = new int[0];
+            private int mLeftNum = 0;
+            private long mLocateNum = 0, mWalkNum = 0;
+            
+            Worker(int aID, long aSeed) {
+                mLockValue = (aID+1)<<1;
+                mRNG = new Random(aSeed);
+                Arrays.fill(mEdgeKey, -1L);
+            }
+            
+            @Override public Void call() {
+                while (!mFull) {
+                    final int tStart = mNextVertex.getAndAdd(VERTEX_CHUNK);
+                    if (tStart >= mEnd) break;
+                    final int tEnd = Math.min(tStart+VERTEX_CHUNK, mEnd);
+                    for (int i = tStart; i < tEnd; ++i) {
+                        final int tVertex = mOrder[i];
+                        byte tState;
+                        while ((tState = tryInsert_(tVertex)) == CONFLICT) Thread.yield();
+                        if (tState == FULL) {
+                            mLeft = Arrays.copyOfRange(mOrder, i, tEnd);
+                            mLeftNum = mLeft.length;
+                            return null;
+                        }
+                        mLastVertex = tVertex;
+                    }
                 }
+                return null;
             }
-            case PosTet.C: {
-                switch(ordinalOf(aVertex2)) {
-                case PosTet.B: {return mTetA==aTetFrom ? mTetD : mTetA;}
-                case PosTet.A: {return mTetB==aTetFrom ? mTetD : mTetB;}
-                case PosTet.D: {return mTetB==aTetFrom ? mTetA : mTetB;}
-                default: throw new RuntimeException();
+            
+            /** 尝试插入节点，失败时会释放所有锁，并且不会有任何修改 */
+            private byte tryInsert_(int aVertex) {
+                final int tIdx = aVertex*3;
+                final double tX = mVertexXYZ[tIdx], tY = mVertexXYZ[tIdx+1], tZ = mVertexXYZ[tIdx+2];
+                final int tTet = locate_(tX, tY, tZ);
+                if (tTet==NULL_ID || !findCavity_(tTet, tX, tY, tZ)) {unlockAll_(); return CONFLICT;}
+                // 先获取所有新的四面体位置，此时还没有进行任何修改，失败可以直接放弃
+                if (mNew.length < mBoundaryNum) mNew = new int[mBoundaryNum*2];
+                for (int i = 0; i < mBoundaryNum; ++i) {
+                    final int tNew = newTet_();
+                    if (tNew == NULL_ID) {unlockAll_(); return FULL;}
+                    mNew[i] = tNew;
                 }
+                fillCavity_(aVertex);
+                unlockAll_();
+                return INSERTED;
             }
-            case PosTet.D: {
-                switch(ordinalOf(aVertex2)) {
-                case PosTet.B: {return mTetC==aTetFrom ? mTetA : mTetC;}
-                case PosTet.C: {return mTetB==aTetFrom ? mTetA : mTetB;}
-                case PosTet.A: {return mTetB==aTetFrom ? mTetC : mTetB;}
-                default: throw new RuntimeException();
+            
+            private boolean lock_(int aTet) {
+                final int tOld = mLock.get(aTet);
+                if ((tOld|1) == (mLockValue|1)) return true;
+                if (tOld!=0 || !mLock.compareAndSet(aTet, 0, mLockValue)) return false;
+                if (mLockedNum == mLocked.length) mLocked = Arrays.copyOf(mLocked, mLockedNum*2);
+                mLocked[mLockedNum++] = aTet;
+                return true;
+            }
+            private void unlockAll_() {
+                for (int i = 0; i < mLockedNum; ++i) mLock.set(mLocked[i], 0);
+                mLockedNum = 0;
+            }
+            private boolean inCavity_(int aTet) {return mLock.get(aTet) == (mLockValue|1);}
+            /** 对作为寻路起点的四面体加锁，如果已经被其他线程删除则释放并返回 false */
+            private boolean lockStart_(int aTet) {
+                if (aTet<0 || aTet>=mCapacity || !lock_(aTet)) return false;
+                if (mLivePos[aTet] >= 0) return true;
+                unlockAll_();
+                return false;
+            }
+            
+            /** 和 {@link VoronoiBuilder#locate_} 一致，只是会对经过的四面体依次加锁，最后只保留包含此位置的四面体的锁 */
+            private int locate_(double aX, double aY, double aZ) {
+                // 依次尝试上一个新建的四面体，上一个插入的节点以及任意一个串行插入的节点
+                int tCurrent = mLast;
+                if (!lockStart_(tCurrent)) {
+                    tCurrent = mLastVertex==NULL_ID ? NULL_ID : mVertexAdj[mLastVertex];
+                    if (!lockStart_(tCurrent)) {
+                        tCurrent = mVertexAdj[mOrder[mRNG.nextInt(mSerialNum)]];
+                        if (!lockStart_(tCurrent)) return NULL_ID;
+                    }
+                }
+                ++mLocateNum;
+                byte nFace = PosTet.NULL;
+                for (byte tFace : PosTet.FACES) {
+                    if (tetOrient(tCurrent, aX, aY, aZ, tFace) < 0) {nFace = tFace; break;}
+                }
+                while (nFace != PosTet.NULL) {
+                    final int tNext = tetNeighbor(tCurrent, nFace);
+                    if (!lock_(tNext)) return NULL_ID;
+                    // 手递手的加锁方式，总是只持有当前的四面体
+                    mLock.set(tCurrent, 0);
+                    mLocked[0] = tNext; mLockedNum = 1;
+                    nFace = PosTet.NULL;
+                    for (byte tFace : PosTet.ORDER[tetOrdinalOfNeighbor(tNext, tCurrent)][mRNG.nextInt(6)]) {
+                        if (tetOrient(tNext, aX, aY, aZ, tFace) < 0) {nFace = tFace; break;}
+                    }
+                    tCurrent = tNext;
+                    ++mWalkNum;
                 }
+                return tCurrent;
             }
-            default: throw new RuntimeException();
+            
+            /** 广度优先搜索外接球包含此位置的所有四面体，同时对空腔外侧的四面体加锁，因为之后需要修改其近邻 */
+            private boolean findCavity_(int aTet, double aX, double aY, double aZ) {
+                mCavityNum = 0; mBoundaryNum = 0;
+                addCavity_(aTet);
+                for (int i = 0; i < mCavityNum; ++i) {
+                    final int tTet = mCavity[i];
+                    for (byte tFace : PosTet.FACES) {
+                        final int tNeighbor = tetNeighbor(tTet, tFace);
+                        if (tNeighbor != NULL_ID) {
+                            if (inCavity_(tNeighbor)) continue;
+                            if (!lock_(tNeighbor)) return false;
+                            if (tetInSphere(tNeighbor, aX, aY, aZ) > 0) {addCavity_(tNeighbor); continue;}
+                        }
+                        if (mBoundaryNum == mBoundary.length) mBoundary = Arrays.copyOf(mBoundary, mBoundaryNum*2);
+                        mBoundary[mBoundaryNum++] = (tTet<<2) | tFace;
+                    }
+                }
+                return true;
+            }
+            private void addCavity_(int aTet) {
+                mLock.set(aTet, mLockValue|1);
+                if (mCavityNum == mCavity.length) mCavity = Arrays.copyOf(mCavity, mCavityNum*2);
+                mCavity[mCavityNum++] = aTet;
+            }
+            
+            /** 优先重复使用此线程删除的位置，注意其他线程可能正持有旧的 id 并短暂的锁住了此位置 */
+            private int newTet_() {
+                for (int i = mFreeNum-1; i >= 0; --i) {
+                    final int tTet = mFree[i];
+                    if (lock_(tTet)) {mFree[i] = mFree[--mFreeNum]; return tTet;}
+                }
+                if (mChunkNext == mChunkEnd) {
+                    if (mFull) return NULL_ID;
+                    final int tStart = mNextSlot.getAndAdd(TET_CHUNK);
+                    if (tStart >= mCapacity) {mFull = true; return NULL_ID;}
+                    mChunkNext = tStart; mChunkEnd = Math.min(tStart+TET_CHUNK, mCapacity);
+                }
+                final int rTet = mChunkNext++;
+                lock_(rTet);
+                return rTet;
+            }
+            
+            /** 将每个边界面和新的节点连接成新的四面体，并删除空腔中的四面体 */
+            private void fillCavity_(int aVertex) {
+                final int tEdgeSize = Integer.highestOneBit(mBoundaryNum*4)*2;
+                if (mEdgeKey.length < tEdgeSize) {
+                    mEdgeKey = new long[tEdgeSize]; mEdgeFace = new int[tEdgeSize];
+                    Arrays.fill(mEdgeKey, -1L);
+                }
+                for (int i = 0; i < mBoundaryNum; ++i) {
+                    final int tTet = mBoundary[i]>>2;
+                    final byte tFace = (byte)(mBoundary[i]&3);
+                    final int tBase = tTet<<2;
+                    final byte[] tOrder = PosTet.FACE_VERTEX[tFace];
+                    // 和 flip1to4_ 一致，保证新的四面体和原本的四面体定向相同
+                    final int tA = mTetVertex[tBase+tOrder[0]], tB = mTetVertex[tBase+tOrder[1]], tC = mTetVertex[tBase+tOrder[2]];
+                    final int tNew = mNew[i], tNewBase = tNew<<2;
+                    mTetVertex[tNewBase+PosTet.A] = tA;
+                    mTetVertex[tNewBase+PosTet.B] = tB;
+                    mTetVertex[tNewBase+PosTet.C] = tC;
+                    mTetVertex[tNewBase+PosTet.D] = aVertex;
+                    dropCenter_(tNew);
+                    mLivePos[tNew] = 0;
+                    mVertexAdj[tA] = tNew; mVertexAdj[tB] = tNew; mVertexAdj[tC] = tNew; mVertexAdj[aVertex] = tNew;
+                    final int tNeighbor = mTetNeighbor[tBase+tFace];
+                    mTetNeighbor[tNewBase+PosTet.D] = tNeighbor;
+                    if (tNeighbor != NULL_ID) setTetNeighbor(tNeighbor, tetOrdinalOfNeighbor(tNeighbor, tTet), tNew);
+                    pairEdge_(tB, tC, tNew, PosTet.A, tEdgeSize);
+                    pairEdge_(tA, tC, tNew, PosTet.B, tEdgeSize);
+                    pairEdge_(tA, tB, tNew, PosTet.C, tEdgeSize);
+                }
+                for (int i = 0; i < mCavityNum; ++i) {
+                    final int tTet = mCavity[i], tBase = tTet<<2;
+                    mTetNeighbor[tBase+PosTet.A] = NULL_ID;
+                    mTetNeighbor[tBase+PosTet.B] = NULL_ID;
+                    mTetNeighbor[tBase+PosTet.C] = NULL_ID;
+                    mTetNeighbor[tBase+PosTet.D] = NULL_ID;
+                    dropCenter_(tTet);
+                    ++mTetGen[tTet];
+                    mLivePos[tTet] = -1;
+                    if (mFreeNum == mFree.length) mFree = Arrays.copyOf(mFree, mFreeNum*2);
+                    mFree[mFreeNum++] = tTet;
+                }
+                mLast = mNew[0];
+            }
+            /** 边界上的每条棱恰好被两个新的四面体共享，第二次遇到时完成配对并从哈希表中移除 */
+            private void pairEdge_(int aV1, int aV2, int aTet, byte aFace, int aSize) {
+                final long tKey = aV1<aV2 ? (((long)aV1<<32) | aV2) : (((long)aV2<<32) | aV1);
+                final int tMask = aSize-1;
+                int tPos = edgeHash_(tKey) & tMask;
+                while (true) {
+                    final long tOld = mEdgeKey[tPos];
+                    if (tOld == -1L) {mEdgeKey[tPos] = tKey; mEdgeFace[tPos] = (aTet<<2) | aFace; return;}
+                    if (tOld == tKey) {
+                        final int tOther = mEdgeFace[tPos];
+                        setTetNeighbor(aTet, aFace, tOther>>2);
+                        setTetNeighbor(tOther>>2, (byte)(tOther&3), aTet);
+                        // 使用墓碑会让探测链变长，这里直接将之后的元素前移
+                        removeEdge_(tPos, tMask);
+                        return;
+                    }
+                    tPos = (tPos+1) & tMask;
+                }
+            }
+            private int edgeHash_(long aKey) {return (int)(aKey ^ (aKey>>>29)) * 0x9E3779B1;}
+            private void removeEdge_(int aPos, int aMask) {
+                int tHole = aPos;
+                int tPos = (aPos+1) & aMask;
+                while (mEdgeKey[tPos] != -1L) {
+                    final long tKey = mEdgeKey[tPos];
+                    final int tHome = edgeHash_(tKey) & aMask;
+                    // 只有当理想位置不在 (tHole, tPos] 之间时才可以移动到空位
+                    if (((tPos-tHome)&aMask) >= ((tPos-tHole)&aMask)) {
+                        mEdgeKey[tHole] = tKey; mEdgeFace[tHole] = mEdgeFace[tPos];
+                        tHole = tPos;
+                    }
+                    tPos = (tPos+1) & aMask;
+                }
+                mEdgeKey[tHole] = -1L;
             }
         }
+    }
+    
+    /**
+     * 周期性边界条件，支持正交以及三斜的模拟盒：
+     * 插入的节点会先折叠到模拟盒内，需要统计时（{@link #ensure()}）再补充 voronoi 多面体实际需要的镜像节点，
+     * 镜像节点排列在所有真实节点之后，不会出现在 {@link #getVertex} 以及 {@link IVertex#neighborVertex()} 中（会替换成对应的真实节点）
+     * <p>
+     * 补充的方式和 {@link ParallelVoronoiBuilder} 类似：先补充一层很薄的镜像层，
+     * 然后对于所有包含真实节点的四面体，如果外接球超出了镜像层，则精确检测球内缺失的镜像节点并补充（外接球过大时改为在附近局部加厚镜像层），直到没有缺失；
+     * 此时真实节点的近邻四面体都是整个周期性点集的 delaunay 四面体，统计结果和在 3-torus 上的三角剖分一致，
+     * 而镜像节点只有模拟盒表面很薄的一层
+     */
+    class Periodic {
+        /** 初始镜像层的宽度，以平均的节点间距为单位 */
+        final static double INIT_IMAGE_WIDTH = 0.5;
+        /** 精确检测时使用的格子尺寸，同样以平均的节点间距为单位 */
+        final static double BIN_SIZE = 2.0;
+        /** 镜像对应的平移在键中每个方向占用的位数 */
+        final static int SHIFT_BITS = 10, SHIFT_OFFSET = 1<<(SHIFT_BITS-1);
+        
+        /** 按行存储的三个基矢，按行存储的倒易矢量（直接点乘得到分数坐标），以及三组晶面的间距 */
+        final double[] mBox, mInv, mPlane;
+        final double mVolume;
+        /** 镜像节点对应的真实节点（直接使用节点 id 作为索引，只有镜像的位置有效），以及所有已经存在的镜像的键（真实节点以及平移） */
+        int[] mImageOf = new int[INIT_CAPACITY];
+        int mImageNum = 0;
+        final LongSet mImageKey = new LongSet();
+        /** 每个真实节点的所有镜像组成的双向链表，链表头按照真实节点 id 索引，前后的镜像按照镜像节点 id 索引 */
+        private int[] mImageHead = new int[INIT_CAPACITY], mImageNext = new int[INIT_CAPACITY], mImagePrev = new int[INIT_CAPACITY];
+        /** 镜像节点是否已经补充完毕，以及当前完整镜像层的宽度 */
+        boolean mReady = false;
+        double mWidth = 0.0;
+        /** 格子以及镜像层是否可以继续使用，此时 {@link #ensure()} 只需要检测上次之后修改过的部分；以及划分格子时的真实节点数目 */
+        boolean mIndexed = false;
+        private int mBinReal = 0;
+        /** 等待插入的镜像节点 */
+        private double[] mPendXYZ = new double[INIT_CAPACITY*3];
+        private int[] mPendOf = new int[INIT_CAPACITY];
+        private int mPendNum = 0;
+        /** 按照分数坐标划分的格子，只包含真实节点；每个格子中的节点组成双向链表，从而在删除和移动节点时可以局部更新 */
+        private int mNA, mNB, mNC;
+        private int[] mBinHead;
+        private int[] mBinOf = new int[INIT_CAPACITY], mBinNext = new int[INIT_CAPACITY], mBinPrev = new int[INIT_CAPACITY];
+        /** 上次补充镜像之后新建或者恢复的四面体以及其代数，只在 mIndexed 时记录；过多时改为检测所有四面体 */
+        private int[] mDirtyTet = new int[INIT_CAPACITY], mDirtyGen = new int[INIT_CAPACITY];
+        private int[] mScanTet = new int[INIT_CAPACITY], mScanGen = new int[INIT_CAPACITY];
+        private int mDirtyNum = 0;
+        private boolean mDirtyAll = false;
+        /**
+         * 外接球超出了镜像层并且已经精确检测过的四面体以及其代数，移动节点后需要对这些四面体重新检测；
+         * 按照外接球（折叠到盒内后）覆盖的格子记录为单向链表，从而只需要检测移动的节点所在格子中的记录，失效的记录在遍历时移除
+         */
+        private int[] mPokeHead;
+        private int[] mPokeTet = new int[INIT_CAPACITY], mPokeGen = new int[INIT_CAPACITY], mPokeNext = new int[INIT_CAPACITY];
+        private int mPokeNum = 0, mPokeFree = NULL_ID;
+        /** 上次补充镜像之后移动过的真实节点 */
+        private int[] mMoved = new int[INIT_CAPACITY];
+        private int mMovedNum = 0;
+        
+        Periodic(double[] aBox) {
+            mBox = aBox;
+            final double tAX = aBox[0], tAY = aBox[1], tAZ = aBox[2];
+            final double tBX = aBox[3], tBY = aBox[4], tBZ = aBox[5];
+            final double tCX = aBox[6], tCY = aBox[7], tCZ = aBox[8];
+            // b x c, c x a, a x b
+            final double[] tCross = {
+                  tBY*tCZ-tBZ*tCY, tBZ*tCX-tBX*tCZ, tBX*tCY-tBY*tCX
+                , tCY*tAZ-tCZ*tAY, tCZ*tAX-tCX*tAZ, tCX*tAY-tCY*tAX
+                , tAY*tBZ-tAZ*tBY, tAZ*tBX-tAX*tBZ, tAX*tBY-tAY*tBX
+            };
+            final double tVolume = tAX*tCross[0] + tAY*tCross[1] + tAZ*tCross[2];
+            if (!(Math.abs(tVolume) > 0.0) || Double.isInfinite(tVolume)) throw new IllegalArgumentException("Box vectors must be linearly independent");
+            mVolume = Math.abs(tVolume);
+            mInv = new double[9];
+            mPlane = new double[3];
+            for (int i = 0; i < 9; ++i) mInv[i] = tCross[i]/tVolume;
+            for (int i = 0; i < 3; ++i) mPlane[i] = 1.0/Math.sqrt(mInv[i*3]*mInv[i*3] + mInv[i*3+1]*mInv[i*3+1] + mInv[i*3+2]*mInv[i*3+2]);
+        }
+        double volume() {return mVolume;}
+        double frac(double aX, double aY, double aZ, int aAxis) {return aX*mInv[aAxis*3] + aY*mInv[aAxis*3+1] + aZ*mInv[aAxis*3+2];}
         
-        /** 获取对应面对应的节点 */
-        @NotNull Vertex getVertex(byte aFace) {
-            switch (aFace) {
-            case PosTet.A: {return mA;}
-            case PosTet.B: {return mB;}
-            case PosTet.C: {return mC;}
-            case PosTet.D: {return mD;}
-            default: throw new RuntimeException();
+        /** 将 aXYZ 中 aIdx 位置的坐标折叠到模拟盒内，已经在盒内的坐标保持不变，避免引入舍入误差 */
+        void wrap(double[] rXYZ, int aIdx) {
+            final double tX = rXYZ[aIdx], tY = rXYZ[aIdx+1], tZ = rXYZ[aIdx+2];
+            final double tA = Math.floor(frac(tX, tY, tZ, 0)), tB = Math.floor(frac(tX, tY, tZ, 1)), tC = Math.floor(frac(tX, tY, tZ, 2));
+            if (tA==0.0 && tB==0.0 && tC==0.0) return;
+            rXYZ[aIdx  ] = tX - tA*mBox[0] - tB*mBox[3] - tC*mBox[6];
+            rXYZ[aIdx+1] = tY - tA*mBox[1] - tB*mBox[4] - tC*mBox[7];
+            rXYZ[aIdx+2] = tZ - tA*mBox[2] - tB*mBox[5] - tC*mBox[8];
+        }
+        double[] wrapAll(double[] aXYZ) {
+            double[] rXYZ = aXYZ.clone();
+            for (int j = 0; j < rXYZ.length; j+=3) wrap(rXYZ, j);
+            return rXYZ;
+        }
+        /** 镜像节点对应的真实节点，真实节点直接返回自身 */
+        int realOf(int aVertex) {return aVertex<mVertexNum-mImageNum ? aVertex : mImageOf[aVertex];}
+        void reset() {mImageNum = 0; mImageKey.clear(); mReady = false; mWidth = 0.0; mMovedNum = 0; mIndexed = false; mDirtyNum = 0; mDirtyAll = false;}
+        
+        /**
+         * 补充镜像节点直到所有真实节点的近邻四面体都和周期性的点集一致；
+         * 第一次调用时会检测所有的四面体，之后只对移动过的真实节点补充镜像层，并且只检测期间新建的四面体，耗时只和修改的范围有关
+         */
+        void ensure() {
+            if (mReady) return;
+            mReady = true;
+            final int tRealNum = sizeVertex();
+            if (tRealNum == 0) return;
+            final double tSpacing = Math.cbrt(volume()/tRealNum);
+            // 节点数目变化很大时格子的尺寸已经不合适，重新完整检测
+            if (mIndexed && (tRealNum>mBinReal*2 || tRealNum*2<mBinReal)) mIndexed = false;
+            boolean tFull = !mIndexed;
+            if (!tFull) {
+                for (int m = 0; m < mMovedNum; ++m) {
+                    final int tVertex = mMoved[m];
+                    if (tVertex == NULL_ID) continue;
+                    rebin_(tVertex);
+                    addShellOf_(tVertex, mWidth);
+                }
+                checkMoved_();
+            } else {
+                // 重新划分格子后之前的记录不再可用，第一轮会检测所有的四面体
+                buildBin_(tRealNum);
+                mIndexed = true;
+                mDirtyAll = true;
+                mMovedNum = 0;
+                addShell_(tRealNum, INIT_IMAGE_WIDTH*tSpacing);
+            }
+            // 局部加厚的半径，每一轮加倍
+            double tLocal = INIT_IMAGE_WIDTH*tSpacing;
+            boolean tThin = true;
+            while (mPendNum>0 || tThin) {
+                flush_();
+                tThin = false;
+                tLocal *= 2.0;
+                if (mDirtyAll) {
+                    mDirtyAll = false; mDirtyNum = 0;
+                    for (int k = 0; k < mTetNum; ++k) tThin |= checkTet_(mLiveTet[k], tRealNum, tLocal, tFull);
+                    tFull = false;
+                    continue;
+                }
+                // 交换两组记录，检测期间重新记录的四面体留到下一轮
+                final int[] tTet = mDirtyTet, tGen = mDirtyGen;
+                mDirtyTet = mScanTet; mDirtyGen = mScanGen;
+                mScanTet = tTet; mScanGen = tGen;
+                final int tNum = mDirtyNum;
+                mDirtyNum = 0;
+                for (int k = 0; k < tNum; ++k) if (tetValid(tTet[k], tGen[k])) tThin |= checkTet_(tTet[k], tRealNum, tLocal, false);
             }
         }
-        /** 获取对应面的近邻四面体 */
-        @Nullable Tetrahedron getNeighbor(byte aFace) {
-            switch (aFace) {
-            case PosTet.A: {return mTetA;}
-            case PosTet.B: {return mTetB;}
-            case PosTet.C: {return mTetC;}
-            case PosTet.D: {return mTetD;}
-            default: throw new RuntimeException();
+        /**
+         * 检测包含真实节点的四面体的外接球，超出镜像层时精确检测并补充球内缺失的镜像；
+         * aAll 表示重新划分格子后的完整检测，此时外接球已经计算过的四面体也需要检测
+         * @return 是否是因为镜像层太薄而需要在下一轮重新检测的四面体
+         */
+        private boolean checkTet_(int aTet, int aRealNum, double aLocal, boolean aAll) {
+            // 外接球已经计算过的四面体在上一轮已经检测过，并且没有被之后的插入修改
+            if (!aAll && hasCenter_(aTet)) return false;
+            final int tReal = realVertexOf_(aTet, aRealNum);
+            if (tReal == NULL_ID) return false;
+            final int tIdx = tReal*3;
+            final double tX = mVertexXYZ[tIdx], tY = mVertexXYZ[tIdx+1], tZ = mVertexXYZ[tIdx+2];
+            // 真实节点在凸包上，说明此处镜像层太薄，在附近局部加厚
+            if (isUniverseTet(aTet)) {markTet(aTet); collectInSphere_(NULL_ID, tX, tY, tZ, aLocal); return true;}
+            final int tCenter = centerSphere_(aTet);
+            final double tCX = mTetCenter[tCenter], tCY = mTetCenter[tCenter+1], tCZ = mTetCenter[tCenter+2];
+            final double tR = Math.sqrt(mTetCenter[tCenter+3]) * (1.0+SECURE_EPS);
+            final double tOut = outShell_(tCX, tCY, tCZ, tR);
+            if (tOut <= 0.0) return false;
+            // 超出镜像层很多的外接球同样是因为镜像层太薄，这些很扁的四面体直接检测会添加过多的镜像；
+            // 清除外接球从而在下一轮重新检测
+            if (tOut > aLocal) {dropCenter_(aTet); markTet(aTet); collectInSphere_(NULL_ID, tX, tY, tZ, aLocal); return true;}
+            collectInSphere_(aTet, tCX, tCY, tCZ, tR);
+            addPoke_(aTet, tCX, tCY, tCZ, tR);
+            return false;
+        }
+        /** 记录新建或者恢复的四面体，下次 {@link #ensure()} 时只需要检测这些四面体 */
+        void markTet(int aTet) {
+            if (!mIndexed || mDirtyAll) return;
+            if (mDirtyNum == mDirtyTet.length) {
+                if (mDirtyNum > mTetNum) {mDirtyAll = true; mDirtyNum = 0; return;}
+                mDirtyTet = Arrays.copyOf(mDirtyTet, mDirtyNum*2);
+                mDirtyGen = Arrays.copyOf(mDirtyGen, mDirtyNum*2);
+                mScanTet = new int[mDirtyNum*2];
+                mScanGen = new int[mDirtyNum*2];
             }
+            mDirtyTet[mDirtyNum] = aTet;
+            mDirtyGen[mDirtyNum] = mTetGen[aTet];
+            ++mDirtyNum;
         }
-        Tetrahedron getNeighbor(Vertex vertex) {return getNeighbor(ordinalOf(vertex));}
-        /** 设置对应面的近邻四面体 */
-        void setNeighbor(byte aFace, @Nullable Tetrahedron aNeighbor) {
-            switch (aFace) {
-            case PosTet.A: {mTetA = aNeighbor; break;}
-            case PosTet.B: {mTetB = aNeighbor; break;}
-            case PosTet.C: {mTetC = aNeighbor; break;}
-            case PosTet.D: {mTetD = aNeighbor; break;}
-            default: throw new RuntimeException();
+        /** 返回四面体中任意一个真实节点，没有则返回 {@link #NULL_ID} */
+        private int realVertexOf_(int aTet, int aRealNum) {
+            final int tBase = aTet<<2;
+            for (int i = 0; i < 4; ++i) {
+                final int tVertex = mTetVertex[tBase+i];
+                if (tVertex>=INIT_VERTEX_NUM && tVertex<INIT_VERTEX_NUM+aRealNum) return tVertex;
             }
+            return NULL_ID;
         }
-        /** 获取指定近邻对应的方向 */
-        byte ordinalOf(Tetrahedron aNeighbor) {
-            if (aNeighbor == null) return PosTet.NULL;
-            if (mTetA == aNeighbor) return PosTet.A;
-            if (mTetB == aNeighbor) return PosTet.B;
-            if (mTetC == aNeighbor) return PosTet.C;
-            if (mTetD == aNeighbor) return PosTet.D;
-            return PosTet.NULL;
-        }
-        /** 获取指定节点对应的方向 */
-        byte ordinalOf(Vertex aVertex) {
-            if (aVertex == null) return PosTet.NULL;
-            if (mA == aVertex) return PosTet.A;
-            if (mB == aVertex) return PosTet.B;
-            if (mC == aVertex) return PosTet.C;
-            if (mD == aVertex) return PosTet.D;
-            return PosTet.NULL;
+        /** 球超出当前完整镜像层的距离，不大于 0 表示完全在内部 */
+        private double outShell_(double aX, double aY, double aZ, double aR) {
+            double rOut = Double.NEGATIVE_INFINITY;
+            for (int i = 0; i < 3; ++i) {
+                final double tS = frac(aX, aY, aZ, i)*mPlane[i];
+                rOut = Math.max(rOut, Math.max(aR-tS, aR-mPlane[i]+tS) - mWidth);
+            }
+            return rOut;
         }
         
-        int orient(IXYZ aXYZ, byte aFace) {
-            switch (aFace) {
-            case PosTet.A: {return VoronoiBuilder.orient(aXYZ, mC.mXYZ, mB.mXYZ, mD.mXYZ);}
-            case PosTet.B: {return VoronoiBuilder.orient(aXYZ, mD.mXYZ, mA.mXYZ, mC.mXYZ);}
-            case PosTet.C: {return VoronoiBuilder.orient(aXYZ, mA.mXYZ, mD.mXYZ, mB.mXYZ);}
-            case PosTet.D: {return VoronoiBuilder.orient(aXYZ, mB.mXYZ, mC.mXYZ, mA.mXYZ);}
-            default: throw new RuntimeException();
+        /** 将完整镜像层的宽度增加到 aWidth，只添加之前没有的镜像 */
+        private void addShell_(int aRealNum, double aWidth) {
+            for (int tVertex = INIT_VERTEX_NUM; tVertex < INIT_VERTEX_NUM+aRealNum; ++tVertex) addShellOf_(tVertex, aWidth);
+            mWidth = aWidth;
+        }
+        /** 添加真实节点 aVertex 位于宽度为 aWidth 的镜像层内的所有镜像 */
+        private void addShellOf_(int aVertex, double aWidth) {
+            final double tWA = aWidth/mPlane[0], tWB = aWidth/mPlane[1], tWC = aWidth/mPlane[2];
+            final int tKA = (int)Math.ceil(tWA), tKB = (int)Math.ceil(tWB), tKC = (int)Math.ceil(tWC);
+            final int tIdx = aVertex*3;
+            final double tX = mVertexXYZ[tIdx], tY = mVertexXYZ[tIdx+1], tZ = mVertexXYZ[tIdx+2];
+            final double tSA = frac(tX, tY, tZ, 0), tSB = frac(tX, tY, tZ, 1), tSC = frac(tX, tY, tZ, 2);
+            for (int i = -tKA; i <= tKA; ++i) {
+                final double tA = tSA+i; if (tA<-tWA || tA>1.0+tWA) continue;
+                for (int j = -tKB; j <= tKB; ++j) {
+                    final double tB = tSB+j; if (tB<-tWB || tB>1.0+tWB) continue;
+                    for (int k = -tKC; k <= tKC; ++k) {
+                        final double tC = tSC+k; if (tC<-tWC || tC>1.0+tWC) continue;
+                        addImage_(aVertex, i, j, k);
+                    }
+                }
             }
         }
-        int inSphere(IXYZ aXYZ) {return VoronoiBuilder.inSphere(aXYZ, mA.mXYZ, mB.mXYZ, mC.mXYZ, mD.mXYZ);}
-        
-        /** 获取指定界面 */
-        OrientedFace getFace(byte aFace) {return new OrientedFace((Tetrahedron)this, aFace);}
-        OrientedFace getFace(Vertex aVertex) {return getFace(ordinalOf(aVertex));}
+        /** 添加还不存在的镜像节点到等待插入的列表中 */
+        private void addImage_(int aVertex, int aI, int aJ, int aK) {
+            if (aI==0 && aJ==0 && aK==0) return;
+            if (Math.abs(aI)>=SHIFT_OFFSET || Math.abs(aJ)>=SHIFT_OFFSET || Math.abs(aK)>=SHIFT_OFFSET) throw new IllegalStateException("Too many periodic images, box may be too small");
+            if (!mImageKey.add(imageKey_(aVertex, aI, aJ, aK))) return;
+            if (mPendNum == mPendOf.length) {
+                mPendOf = Arrays.copyOf(mPendOf, mPendNum*2);
+                mPendXYZ = Arrays.copyOf(mPendXYZ, mPendNum*6);
+            }
+            final int tIdx = aVertex*3, tPend = mPendNum*3;
+            mPendXYZ[tPend  ] = mVertexXYZ[tIdx  ] + aI*mBox[0] + aJ*mBox[3] + aK*mBox[6];
+            mPendXYZ[tPend+1] = mVertexXYZ[tIdx+1] + aI*mBox[1] + aJ*mBox[4] + aK*mBox[7];
+            mPendXYZ[tPend+2] = mVertexXYZ[tIdx+2] + aI*mBox[2] + aJ*mBox[5] + aK*mBox[8];
+            mPendOf[mPendNum++] = aVertex;
+        }
+        private long imageKey_(int aVertex, int aI, int aJ, int aK) {
+            return ((long)aVertex<<(SHIFT_BITS*3)) | ((long)(aI+SHIFT_OFFSET)<<(SHIFT_BITS*2)) | ((long)(aJ+SHIFT_OFFSET)<<SHIFT_BITS) | (aK+SHIFT_OFFSET);
+        }
+        /** 通过坐标差得到镜像节点对应的键，aReal 为其对应的真实节点 */
+        private long imageKeyOf_(int aImage, int aReal) {
+            return imageKey_(aReal, shiftOf_(aImage, aReal, 0), shiftOf_(aImage, aReal, 1), shiftOf_(aImage, aReal, 2));
+        }
+        /** 镜像节点相对真实节点在 aAxis 方向的平移 */
+        private int shiftOf_(int aImage, int aReal, int aAxis) {
+            final int tI = aImage*3, tR = aReal*3;
+            return (int)Math.round(frac(mVertexXYZ[tI]-mVertexXYZ[tR], mVertexXYZ[tI+1]-mVertexXYZ[tR+1], mVertexXYZ[tI+2]-mVertexXYZ[tR+2], aAxis));
+        }
         
         /**
-         * 通过在中间插入一个节点点的方式，将一个四面体拆分成四个，
-         * 会自动修改所有的 adj 信息使其合法化
-         * @param aVertex 插入的节点
-         * @param rEars 缓存此操作需要优化的四个面
-         * @return 新得到的四个四面体的其中一个
+         * 局部删除真实节点的所有镜像，并将最后的镜像移动到空出的位置；
+         * 删除节点只会让外接球变大，新的四面体都没有缓存的外接球，因此下次 {@link #ensure()} 时只会检测这些四面体
+         * @return 局部删除失败时返回 false，此时需要重新构建
          */
-        Tetrahedron flip1to4(Vertex aVertex, Deque<OrientedFace> rEars) {
-            // 这个顺序应该是有讲究的，不过我不确定具体要求
-            Tetrahedron rTet0 = new Tetrahedron(mA, mB, mC, aVertex);
-            Tetrahedron rTet1 = new Tetrahedron(mA, mD, mB, aVertex);
-            Tetrahedron rTet2 = new Tetrahedron(mA, mC, mD, aVertex);
-            Tetrahedron rTet3 = new Tetrahedron(mB, mD, mC, aVertex);
-            
-            // 设置近邻
-            rTet0.mTetA = rTet3;
-            rTet0.mTetB = rTet2;
-            rTet0.mTetC = rTet1;
-            
-            rTet1.mTetA = rTet3;
-            rTet1.mTetB = rTet0;
-            rTet1.mTetC = rTet2;
-            
-            rTet2.mTetA = rTet3;
-            rTet2.mTetB = rTet1;
-            rTet2.mTetC = rTet0;
-            
-            rTet3.mTetA = rTet2;
-            rTet3.mTetB = rTet0;
-            rTet3.mTetC = rTet1;
-            
-            // 将自身近邻对应的近邻合法化
-            patch(PosTet.D, rTet0, PosTet.D);
-            patch(PosTet.C, rTet1, PosTet.D);
-            patch(PosTet.B, rTet2, PosTet.D);
-            patch(PosTet.A, rTet3, PosTet.D);
-            
-            // 移除自身
-            delete();
-            
-            // 设置需要考虑翻转的界面
-            OrientedFace
-            tFace = rTet0.getFace(PosTet.D);
-            if (tFace.hasAdjacent()) rEars.addLast(tFace);
-            tFace = rTet1.getFace(PosTet.D);
-            if (tFace.hasAdjacent()) rEars.addLast(tFace);
-            tFace = rTet2.getFace(PosTet.D);
-            if (tFace.hasAdjacent()) rEars.addLast(tFace);
-            tFace = rTet3.getFace(PosTet.D);
-            if (tFace.hasAdjacent()) rEars.addLast(tFace);
-            
-            // 返回任意的四面体，这里保持一致
-            return rTet1;
+        boolean removeImageOf(int aVertex) {
+            mReady = false;
+            if (mImageNum == 0) return true;
+            for (int tImage = mImageHead[aVertex]; tImage != NULL_ID; tImage = mImageHead[aVertex]) {
+                mImageKey.remove(imageKeyOf_(tImage, aVertex));
+                if (!removeVertex_(tImage)) return false;
+                unlinkImage_(tImage);
+                final int tLast = mVertexNum-1;
+                moveVertex_(tLast, tImage);
+                if (tLast != tImage) relabelImage_(tLast, tImage);
+                --mImageNum;
+                --mVertexNum;
+            }
+            return true;
+        }
+        /**
+         * 删除真实节点后最后一个真实节点 aLast 移动到了 aVertex，这里更新其镜像的记录，
+         * 并将最后一个镜像移动到空出的 aLast，保持镜像排列在真实节点之后；调用后节点数目会再减少一个
+         */
+        void moveReal(int aLast, int aVertex) {
+            if (mIndexed) {
+                unlinkBin_(aVertex);
+                if (aLast != aVertex) relabelBin_(aLast, aVertex);
+            }
+            // 同步更新还没有处理的移动记录
+            for (int m = 0; m < mMovedNum; ++m) {
+                if (mMoved[m] == aVertex) mMoved[m] = NULL_ID;
+                else if (mMoved[m] == aLast) mMoved[m] = aVertex;
+            }
+            if (mImageNum == 0) return;
+            if (aLast != aVertex) {
+                mImageHead[aVertex] = mImageHead[aLast];
+                for (int tImage = mImageHead[aVertex]; tImage != NULL_ID; tImage = mImageNext[tImage]) {
+                    // 键的低位为平移，高位为真实节点
+                    final long tShift = imageKeyOf_(tImage, aVertex) & ((1L<<(SHIFT_BITS*3))-1);
+                    mImageKey.remove(((long)aLast<<(SHIFT_BITS*3)) | tShift);
+                    mImageKey.add(((long)aVertex<<(SHIFT_BITS*3)) | tShift);
+                    mImageOf[tImage] = aVertex;
+                }
+            }
+            final int tEnd = mVertexNum-1;
+            moveVertex_(tEnd, aLast);
+            relabelImage_(tEnd, aLast);
         }
         
-        void delete() {
-            mTetA = mTetB = mTetC = mTetD = null;
-            mAllTet.remove((Tetrahedron)this);
+        /**
+         * 创建新的真实节点（折叠到盒内），为了保持镜像排列在真实节点之后，最前面的镜像会移动到最后（只交换这一个镜像）；
+         * 新节点的镜像和移动的节点一样在下次 {@link #ensure()} 时补充，因此不需要重新构建
+         */
+        int newReal(double aX, double aY, double aZ) {
+            final double[] tXYZ = {aX, aY, aZ};
+            wrap(tXYZ, 0);
+            final int tEnd = newVertex_(tXYZ[0], tXYZ[1], tXYZ[2]);
+            final int rVertex = tEnd-mImageNum;
+            ensureImageCapacity_();
+            if (mImageNum > 0) {
+                if (mLocalRemove == null) mLocalRemove = new LocalRemove();
+                moveVertex_(rVertex, tEnd);
+                System.arraycopy(tXYZ, 0, mVertexXYZ, rVertex*3, 3);
+                relabelImage_(rVertex, tEnd);
+            }
+            // 新节点还没有镜像，也不在任何格子中，格子会在下次 ensure 时更新
+            mImageHead[rVertex] = NULL_ID;
+            mBinOf[rVertex] = NULL_ID;
+            markMoved(rVertex);
+            return rVertex;
         }
-        void patch(byte aOld, Tetrahedron aNewTet, byte aNew) {
-            Tetrahedron tNeighbor = getNeighbor(aOld);
-            if (tNeighbor != null) {
-                tNeighbor.setNeighbor(tNeighbor.ordinalOf((Tetrahedron)this), aNewTet);
-                aNewTet.setNeighbor(aNew, tNeighbor);
+        /**
+         * 真实节点 aVertex 需要移动到 aXYZ，将折叠到盒内的新坐标以及其所有镜像的新坐标（整体平移）记录到 rJournal；
+         * 折叠时镜像相对真实节点的平移也会改变，这里同时更新镜像的键，和新的真实节点重合的镜像改为放在折叠前的位置
+         */
+        void planMove(int aVertex, double aX, double aY, double aZ, MoveJournal rJournal) {
+            markMoved(aVertex);
+            final int tWA = (int)Math.floor(frac(aX, aY, aZ, 0)), tWB = (int)Math.floor(frac(aX, aY, aZ, 1)), tWC = (int)Math.floor(frac(aX, aY, aZ, 2));
+            final double[] tXYZ = {aX, aY, aZ};
+            wrap(tXYZ, 0);
+            rJournal.addMoved(aVertex, tXYZ[0], tXYZ[1], tXYZ[2]);
+            final boolean tWrap = tWA!=0 || tWB!=0 || tWC!=0;
+            if (mImageNum > 0) for (int tImage = mImageHead[aVertex]; tImage != NULL_ID; tImage = mImageNext[tImage]) {
+                final int tSA = shiftOf_(tImage, aVertex, 0), tSB = shiftOf_(tImage, aVertex, 1), tSC = shiftOf_(tImage, aVertex, 2);
+                int tI = tSA+tWA, tJ = tSB+tWB, tK = tSC+tWC;
+                if (tI==0 && tJ==0 && tK==0) {tI = tWA; tJ = tWB; tK = tWC;}
+                rJournal.addMoved(tImage
+                    , tXYZ[0] + tI*mBox[0] + tJ*mBox[3] + tK*mBox[6]
+                    , tXYZ[1] + tI*mBox[1] + tJ*mBox[4] + tK*mBox[7]
+                    , tXYZ[2] + tI*mBox[2] + tJ*mBox[5] + tK*mBox[8]);
+                if (tWrap) rJournal.addKey(imageKey_(aVertex, tSA, tSB, tSC), imageKey_(aVertex, tI, tJ, tK));
             }
+            // 新旧的键可能重复，因此先全部移除再添加
+            for (int k = 0; k < rJournal.mKeyNum; ++k) mImageKey.remove(rJournal.mOldKey[k]);
+            for (int k = 0; k < rJournal.mKeyNum; ++k) mImageKey.add(rJournal.mNewKey[k]);
         }
-        void patch(Vertex aOld, Tetrahedron aNewTet, byte aNew) {patch(ordinalOf(aOld), aNewTet, aNew);}
-        
-        void removeAnyDegenerateTetrahedronPair() {
-            if (mTetA != null) {
-                if (mTetA == mTetB) {removeDegenerateTetrahedronPair_(PosTet.A, PosTet.B, PosTet.C, PosTet.D); return;}
-                if (mTetA == mTetC) {removeDegenerateTetrahedronPair_(PosTet.A, PosTet.C, PosTet.B, PosTet.D); return;}
-                if (mTetA == mTetD) {removeDegenerateTetrahedronPair_(PosTet.A, PosTet.D, PosTet.B, PosTet.C); return;}
+        /**
+         * 更新所有真实节点的坐标前，将 rXYZ 中的真实节点折叠到盒内，并计算镜像的新坐标（和真实节点整体平移），
+         * 规则和 {@link #planMove} 一致；坐标更新之后需要调用 {@link #rekey()}
+         */
+        void planUpdate(double[] rXYZ) {
+            final int tRealEnd = mVertexNum-mImageNum;
+            final int[] tWrap = new int[tRealEnd*3];
+            for (int tVertex = INIT_VERTEX_NUM; tVertex < tRealEnd; ++tVertex) {
+                final int tIdx = tVertex*3;
+                for (int i = 0; i < 3; ++i) tWrap[tIdx+i] = (int)Math.floor(frac(rXYZ[tIdx], rXYZ[tIdx+1], rXYZ[tIdx+2], i));
+                wrap(rXYZ, tIdx);
             }
-            if (mTetB != null) {
-                if (mTetB == mTetC) {removeDegenerateTetrahedronPair_(PosTet.B, PosTet.C, PosTet.A, PosTet.D); return;}
-                if (mTetB == mTetD) {removeDegenerateTetrahedronPair_(PosTet.B, PosTet.D, PosTet.A, PosTet.C); return;}
+            for (int tImage = tRealEnd; tImage < mVertexNum; ++tImage) {
+                final int tReal = mImageOf[tImage], tIdx = tReal*3;
+                int tI = shiftOf_(tImage, tReal, 0)+tWrap[tIdx], tJ = shiftOf_(tImage, tReal, 1)+tWrap[tIdx+1], tK = shiftOf_(tImage, tReal, 2)+tWrap[tIdx+2];
+                if (tI==0 && tJ==0 && tK==0) {tI = tWrap[tIdx]; tJ = tWrap[tIdx+1]; tK = tWrap[tIdx+2];}
+                rXYZ[tImage*3  ] = rXYZ[tIdx  ] + tI*mBox[0] + tJ*mBox[3] + tK*mBox[6];
+                rXYZ[tImage*3+1] = rXYZ[tIdx+1] + tI*mBox[1] + tJ*mBox[4] + tK*mBox[7];
+                rXYZ[tImage*3+2] = rXYZ[tIdx+2] + tI*mBox[2] + tJ*mBox[5] + tK*mBox[8];
             }
-            if (mTetC != null) {
-                if (mTetC == mTetD) {removeDegenerateTetrahedronPair_(PosTet.C, PosTet.D, PosTet.A, PosTet.B); return;}
+        }
+        /** 所有节点的坐标更新后重新计算镜像的键，并且需要重新检测所有的四面体 */
+        void rekey() {
+            mImageKey.clear();
+            for (int tImage = mVertexNum-mImageNum; tImage < mVertexNum; ++tImage) mImageKey.add(imageKeyOf_(tImage, mImageOf[tImage]));
+            mReady = false;
+            mIndexed = false;
+            mMovedNum = 0;
+        }
+        /** 撤销移动时移除期间补充的镜像以及恢复镜像的键，需要在恢复节点坐标之前调用 */
+        void undoMove(MoveJournal aJournal) {
+            for (int tImage = mVertexNum-1; tImage >= aJournal.mOldVertexNum; --tImage) {
+                mImageKey.remove(imageKeyOf_(tImage, mImageOf[tImage]));
+                unlinkImage_(tImage);
             }
+            for (int k = 0; k < aJournal.mKeyNum; ++k) mImageKey.remove(aJournal.mNewKey[k]);
+            for (int k = 0; k < aJournal.mKeyNum; ++k) mImageKey.add(aJournal.mOldKey[k]);
+            mImageNum = aJournal.mOldImageNum;
+            markMoved(aJournal.mVertex);
         }
-        private void removeDegenerateTetrahedronPair_(byte ve1, byte ve2, byte vf1, byte vf2) {
-            Tetrahedron nE = getNeighbor(ve1); assert nE != null;
-            Tetrahedron nF1_that = nE.getNeighbor(getVertex(vf1));
-            Tetrahedron nF2_that = nE.getNeighbor(getVertex(vf2));
-            
-            patch(vf1, nF1_that, nF1_that.ordinalOf(nE));
-            patch(vf2, nF2_that, nF2_that.ordinalOf(nE));
-            
-            Vertex e1 = getVertex(ve1);
-            Vertex e2 = getVertex(ve2);
-            Vertex f1 = getVertex(vf1);
-            Vertex f2 = getVertex(vf2);
-            
-            delete();
-            nE.delete();
-            
-            e1.freshenAdjacent(nF1_that);
-            f2.freshenAdjacent(nF1_that);
-            e2.freshenAdjacent(nF2_that);
-            f1.freshenAdjacent(nF2_that);
+        /** 记录移动过的真实节点，下次 {@link #ensure()} 时检测其新位置对应的镜像 */
+        void markMoved(int aVertex) {
+            mReady = false;
+            if (mMovedNum == mMoved.length) mMoved = Arrays.copyOf(mMoved, mMovedNum*2);
+            mMoved[mMovedNum++] = aVertex;
+        }
+        /** 为 {@link #freeze} 中的只读副本复制镜像的对应关系，副本中的镜像已经补充完毕并且不会再修改 */
+        Periodic frozenCopy(VoronoiBuilder aView) {
+            Periodic rPeriodic = aView.new Periodic(mBox);
+            rPeriodic.mImageOf = Arrays.copyOf(mImageOf, Math.max(mVertexNum, 1));
+            rPeriodic.mImageNum = mImageNum;
+            rPeriodic.mReady = true;
+            rPeriodic.mWidth = mWidth;
+            return rPeriodic;
+        }
+        /** 将四面体记录到外接球（包括所有平移）覆盖的格子中 */
+        private void addPoke_(int aTet, double aCX, double aCY, double aCZ, double aR) {
+            final double tSA = frac(aCX, aCY, aCZ, 0), tDA = aR/mPlane[0];
+            final double tSB = frac(aCX, aCY, aCZ, 1), tDB = aR/mPlane[1];
+            final double tSC = frac(aCX, aCY, aCZ, 2), tDC = aR/mPlane[2];
+            final int tA0 = (int)Math.floor((tSA-tDA)*mNA), tA1 = Math.min(tA0+mNA-1, (int)Math.floor((tSA+tDA)*mNA));
+            final int tB0 = (int)Math.floor((tSB-tDB)*mNB), tB1 = Math.min(tB0+mNB-1, (int)Math.floor((tSB+tDB)*mNB));
+            final int tC0 = (int)Math.floor((tSC-tDC)*mNC), tC1 = Math.min(tC0+mNC-1, (int)Math.floor((tSC+tDC)*mNC));
+            final int tGen = mTetGen[aTet];
+            for (int tC = tC0; tC <= tC1; ++tC) for (int tB = tB0; tB <= tB1; ++tB) for (int tA = tA0; tA <= tA1; ++tA) {
+                final int tBin = (Math.floorMod(tC, mNC)*mNB + Math.floorMod(tB, mNB))*mNA + Math.floorMod(tA, mNA);
+                final int tPoke = newPoke_();
+                mPokeTet[tPoke] = aTet;
+                mPokeGen[tPoke] = tGen;
+                mPokeNext[tPoke] = mPokeHead[tBin];
+                mPokeHead[tBin] = tPoke;
+            }
+        }
+        private int newPoke_() {
+            if (mPokeFree == NULL_ID && mPokeNum == mPokeTet.length) {
+                // 先移除所有已经失效的记录，空出的位置仍然不足一半时再扩容，保证均摊的开销为常数
+                int tFreeNum = 0;
+                for (int tBin = 0; tBin < mNA*mNB*mNC; ++tBin) tFreeNum += sweepPoke_(tBin, NULL_ID);
+                if (tFreeNum*2 < mPokeNum) {
+                    final int tLen = mPokeNum*2;
+                    mPokeTet = Arrays.copyOf(mPokeTet, tLen);
+                    mPokeGen = Arrays.copyOf(mPokeGen, tLen);
+                    mPokeNext = Arrays.copyOf(mPokeNext, tLen);
+                }
+            }
+            if (mPokeFree == NULL_ID) return mPokeNum++;
+            final int rPoke = mPokeFree;
+            mPokeFree = mPokeNext[rPoke];
+            return rPoke;
+        }
+        /**
+         * 遍历格子中的记录并移除已经失效的记录，aVertex 不为 {@link #NULL_ID} 时对剩下的四面体检测此真实节点的镜像
+         * @return 移除的记录数目
+         */
+        private int sweepPoke_(int aBin, int aVertex) {
+            int rFreeNum = 0;
+            int tPrev = NULL_ID;
+            for (int tPoke = mPokeHead[aBin]; tPoke != NULL_ID; ) {
+                final int tTet = mPokeTet[tPoke], tNext = mPokeNext[tPoke];
+                if (tetValid(tTet, mPokeGen[tPoke]) && hasCenter_(tTet)) {
+                    if (aVertex != NULL_ID) {
+                        final int tCenter = tTet<<2;
+                        final double tR = Math.sqrt(mTetCenter[tCenter+3]) * (1.0+SECURE_EPS);
+                        collectImageOf_(tTet, aVertex, mTetCenter[tCenter], mTetCenter[tCenter+1], mTetCenter[tCenter+2], tR);
+                    }
+                    tPrev = tPoke;
+                } else {
+                    if (tPrev == NULL_ID) mPokeHead[aBin] = tNext;
+                    else mPokeNext[tPrev] = tNext;
+                    mPokeNext[tPoke] = mPokeFree;
+                    mPokeFree = tPoke;
+                    ++rFreeNum;
+                }
+                tPoke = tNext;
+            }
+            return rFreeNum;
+        }
+        /**
+         * 外接球在镜像层内的四面体，其中的镜像一定已经由 {@link #addShell_} 补充；
+         * 而超出镜像层的已经检测过的四面体不会再被检测，移动的节点的新位置对应的镜像可能落在这些外接球内，
+         * 这里只对节点所在格子中记录的四面体重新检测
+         */
+        private void checkMoved_() {
+            for (int m = 0; m < mMovedNum; ++m) {
+                final int tVertex = mMoved[m];
+                if (tVertex == NULL_ID) continue;
+                sweepPoke_(mBinOf[tVertex], tVertex);
+            }
+            mMovedNum = 0;
+        }
+        /** 精确检测真实节点 aVertex 的镜像是否在四面体的外接球内部或者球面上，如果是并且还不存在则添加此镜像 */
+        private void collectImageOf_(int aTet, int aVertex, double aCX, double aCY, double aCZ, double aR) {
+            final int tIdx = aVertex*3;
+            final double tX = mVertexXYZ[tIdx], tY = mVertexXYZ[tIdx+1], tZ = mVertexXYZ[tIdx+2];
+            final double tDX = aCX-tX, tDY = aCY-tY, tDZ = aCZ-tZ;
+            final double tSA = frac(tDX, tDY, tDZ, 0), tDA = aR/mPlane[0];
+            final double tSB = frac(tDX, tDY, tDZ, 1), tDB = aR/mPlane[1];
+            final double tSC = frac(tDX, tDY, tDZ, 2), tDC = aR/mPlane[2];
+            final double tR2 = aR*aR;
+            for (int i = (int)Math.ceil(tSA-tDA); i <= (int)Math.floor(tSA+tDA); ++i) {
+                for (int j = (int)Math.ceil(tSB-tDB); j <= (int)Math.floor(tSB+tDB); ++j) {
+                    for (int k = (int)Math.ceil(tSC-tDC); k <= (int)Math.floor(tSC+tDC); ++k) {
+                        final double tIX = tX + i*mBox[0] + j*mBox[3] + k*mBox[6];
+                        final double tIY = tY + i*mBox[1] + j*mBox[4] + k*mBox[7];
+                        final double tIZ = tZ + i*mBox[2] + j*mBox[5] + k*mBox[8];
+                        final double tEX = tIX-aCX, tEY = tIY-aCY, tEZ = tIZ-aCZ;
+                        if (tEX*tEX + tEY*tEY + tEZ*tEZ > tR2) continue;
+                        if (tetInSphere(aTet, tIX, tIY, tIZ) >= 0) addImage_(aVertex, i, j, k);
+                    }
+                }
+            }
+        }
+        
+        /** 按照 BRIO 的顺序插入等待的镜像节点 */
+        private void flush_() {
+            if (mPendNum == 0) return;
+            ensureCapacity(sizeVertex()+mImageNum+mPendNum);
+            ensureImageCapacity_();
+            if (mImageNum == 0) Arrays.fill(mImageHead, INIT_VERTEX_NUM, mVertexNum, NULL_ID);
+            final int tStart = mVertexNum;
+            for (int i = 0, j = 0; i < mPendNum; ++i, j+=3) {
+                linkImage_(newVertex_(mPendXYZ[j], mPendXYZ[j+1], mPendXYZ[j+2]), mPendOf[i]);
+                ++mImageNum;
+            }
+            for (int tIdx : SpatialSort.brioOrder(mPendXYZ, mPendNum, mRNG)) insertVertex_(tStart+tIdx);
+            mPendNum = 0;
+        }
+        
+        /** 按照节点 id 索引的记录和节点的容量保持一致 */
+        private void ensureImageCapacity_() {
+            final int tCapacity = mVertexAdj.length;
+            if (mImageOf.length >= tCapacity) return;
+            mImageOf = Arrays.copyOf(mImageOf, tCapacity);
+            mImageHead = Arrays.copyOf(mImageHead, tCapacity);
+            mImageNext = Arrays.copyOf(mImageNext, tCapacity);
+            mImagePrev = Arrays.copyOf(mImagePrev, tCapacity);
+            mBinOf = Arrays.copyOf(mBinOf, tCapacity);
+            mBinNext = Arrays.copyOf(mBinNext, tCapacity);
+            mBinPrev = Arrays.copyOf(mBinPrev, tCapacity);
+        }
+        /** 将镜像节点添加到真实节点 aReal 的镜像链表中 */
+        private void linkImage_(int aImage, int aReal) {
+            final int tHead = mImageHead[aReal];
+            mImageOf[aImage] = aReal;
+            mImagePrev[aImage] = NULL_ID;
+            mImageNext[aImage] = tHead;
+            if (tHead != NULL_ID) mImagePrev[tHead] = aImage;
+            mImageHead[aReal] = aImage;
+        }
+        private void unlinkImage_(int aImage) {
+            final int tPrev = mImagePrev[aImage], tNext = mImageNext[aImage];
+            if (tPrev == NULL_ID) mImageHead[mImageOf[aImage]] = tNext;
+            else mImageNext[tPrev] = tNext;
+            if (tNext != NULL_ID) mImagePrev[tNext] = tPrev;
+        }
+        /** 镜像节点的 id 从 aFrom 改为 aTo，在链表中的位置保持不变 */
+        private void relabelImage_(int aFrom, int aTo) {
+            final int tPrev = mImagePrev[aFrom], tNext = mImageNext[aFrom];
+            mImageOf[aTo] = mImageOf[aFrom];
+            mImagePrev[aTo] = tPrev;
+            mImageNext[aTo] = tNext;
+            if (tPrev == NULL_ID) mImageHead[mImageOf[aTo]] = aTo;
+            else mImageNext[tPrev] = aTo;
+            if (tNext != NULL_ID) mImagePrev[tNext] = aTo;
+        }
+        
+        /** 按照分数坐标将真实节点划分到格子中，用于精确检测 */
+        private void buildBin_(int aRealNum) {
+            ensureImageCapacity_();
+            final double tBinSize = BIN_SIZE*Math.cbrt(volume()/aRealNum);
+            mNA = Math.max(1, Math.min(1<<10, (int)(mPlane[0]/tBinSize)));
+            mNB = Math.max(1, Math.min(1<<10, (int)(mPlane[1]/tBinSize)));
+            mNC = Math.max(1, Math.min(1<<10, (int)(mPlane[2]/tBinSize)));
+            final int tBinNum = mNA*mNB*mNC;
+            if (mBinHead==null || mBinHead.length<tBinNum) {mBinHead = new int[tBinNum]; mPokeHead = new int[tBinNum];}
+            Arrays.fill(mBinHead, 0, tBinNum, NULL_ID);
+            Arrays.fill(mPokeHead, 0, tBinNum, NULL_ID);
+            mPokeNum = 0; mPokeFree = NULL_ID;
+            // 倒序添加到链表头，从而遍历时按照 id 从小到大
+            for (int tVertex = INIT_VERTEX_NUM+aRealNum-1; tVertex >= INIT_VERTEX_NUM; --tVertex) {
+                final int tIdx = tVertex*3;
+                linkBin_(tVertex, bin_(mVertexXYZ[tIdx], mVertexXYZ[tIdx+1], mVertexXYZ[tIdx+2]));
+            }
+            mBinReal = aRealNum;
+        }
+        private void linkBin_(int aVertex, int aBin) {
+            final int tHead = mBinHead[aBin];
+            mBinOf[aVertex] = aBin;
+            mBinPrev[aVertex] = NULL_ID;
+            mBinNext[aVertex] = tHead;
+            if (tHead != NULL_ID) mBinPrev[tHead] = aVertex;
+            mBinHead[aBin] = aVertex;
+        }
+        private void unlinkBin_(int aVertex) {
+            final int tBin = mBinOf[aVertex];
+            if (tBin == NULL_ID) return;
+            final int tPrev = mBinPrev[aVertex], tNext = mBinNext[aVertex];
+            if (tPrev == NULL_ID) mBinHead[tBin] = tNext;
+            else mBinNext[tPrev] = tNext;
+            if (tNext != NULL_ID) mBinPrev[tNext] = tPrev;
+            mBinOf[aVertex] = NULL_ID;
+        }
+        /** 真实节点的 id 从 aFrom 改为 aTo，所在的格子保持不变 */
+        private void relabelBin_(int aFrom, int aTo) {
+            final int tBin = mBinOf[aFrom];
+            mBinOf[aTo] = tBin;
+            if (tBin == NULL_ID) return;
+            final int tPrev = mBinPrev[aFrom], tNext = mBinNext[aFrom];
+            mBinPrev[aTo] = tPrev;
+            mBinNext[aTo] = tNext;
+            if (tPrev == NULL_ID) mBinHead[tBin] = aTo;
+            else mBinNext[tPrev] = aTo;
+            if (tNext != NULL_ID) mBinPrev[tNext] = aTo;
+            mBinOf[aFrom] = NULL_ID;
+        }
+        /** 节点移动后更新其所在的格子 */
+        private void rebin_(int aVertex) {
+            final int tIdx = aVertex*3;
+            final int tBin = bin_(mVertexXYZ[tIdx], mVertexXYZ[tIdx+1], mVertexXYZ[tIdx+2]);
+            if (tBin == mBinOf[aVertex]) return;
+            unlinkBin_(aVertex);
+            linkBin_(aVertex, tBin);
+        }
+        private int bin_(double aX, double aY, double aZ) {
+            final int tA = Math.max(0, Math.min(mNA-1, (int)Math.floor(frac(aX, aY, aZ, 0)*mNA)));
+            final int tB = Math.max(0, Math.min(mNB-1, (int)Math.floor(frac(aX, aY, aZ, 1)*mNB)));
+            final int tC = Math.max(0, Math.min(mNC-1, (int)Math.floor(frac(aX, aY, aZ, 2)*mNC)));
+            return (tC*mNB + tB)*mNA + tA;
+        }
+        /**
+         * 遍历和球相交的所有平移后的格子，精确检测其中的节点的镜像是否在外接球内部或者球面上，
+         * 如果是并且还不存在则添加此镜像；aTet 为 {@link #NULL_ID} 时不进行精确检测，直接添加球内所有的镜像
+         */
+        private void collectInSphere_(int aTet, double aX, double aY, double aZ, double aR) {
+            final double tR2 = aR*aR;
+            final double tSA = frac(aX, aY, aZ, 0), tDA = aR/mPlane[0];
+            final double tSB = frac(aX, aY, aZ, 1), tDB = aR/mPlane[1];
+            final double tSC = frac(aX, aY, aZ, 2), tDC = aR/mPlane[2];
+            for (int i = (int)Math.floor(tSA-tDA); i <= (int)Math.floor(tSA+tDA); ++i) {
+                final int tA0 = Math.max(0, (int)Math.floor((tSA-tDA-i)*mNA)), tA1 = Math.min(mNA-1, (int)Math.floor((tSA+tDA-i)*mNA));
+                for (int j = (int)Math.floor(tSB-tDB); j <= (int)Math.floor(tSB+tDB); ++j) {
+                    final int tB0 = Math.max(0, (int)Math.floor((tSB-tDB-j)*mNB)), tB1 = Math.min(mNB-1, (int)Math.floor((tSB+tDB-j)*mNB));
+                    for (int k = (int)Math.floor(tSC-tDC); k <= (int)Math.floor(tSC+tDC); ++k) {
+                        // 平移为 0 时都是真实节点，一定已经插入
+                        if (i==0 && j==0 && k==0) continue;
+                        final int tC0 = Math.max(0, (int)Math.floor((tSC-tDC-k)*mNC)), tC1 = Math.min(mNC-1, (int)Math.floor((tSC+tDC-k)*mNC));
+                        final double tTX = i*mBox[0] + j*mBox[3] + k*mBox[6];
+                        final double tTY = i*mBox[1] + j*mBox[4] + k*mBox[7];
+                        final double tTZ = i*mBox[2] + j*mBox[5] + k*mBox[8];
+                        for (int tC = tC0; tC <= tC1; ++tC) for (int tB = tB0; tB <= tB1; ++tB) for (int tA = tA0; tA <= tA1; ++tA) {
+                            for (int tVertex = mBinHead[(tC*mNB + tB)*mNA + tA]; tVertex != NULL_ID; tVertex = mBinNext[tVertex]) {
+                                final int tIdx = tVertex*3;
+                                final double tX = mVertexXYZ[tIdx]+tTX, tY = mVertexXYZ[tIdx+1]+tTY, tZ = mVertexXYZ[tIdx+2]+tTZ;
+                                final double tDX = tX-aX, tDY = tY-aY, tDZ = tZ-aZ;
+                                if (tDX*tDX + tDY*tDY + tDZ*tDZ > tR2) continue;
+                                if (aTet==NULL_ID || tetInSphere(aTet, tX, tY, tZ)>=0) addImage_(tVertex, i, j, k);
+                            }
+                        }
+                    }
+                }
+            }
         }
     }
     
-    
-    /** 此项目的风格，对于几何中使用的枚举常量，并且为私有情况下，使用 byte 而不是 enum */
-    static class PosTet {
-        final static byte A = 0, B = 1, C = 2, D = 3, NULL = -1;
-        final static byte[] VERTICES = {A, B, C, D}, FACES = VERTICES;
-        /** 随机方向的预选值 */
-        static final byte[][][] ORDER = {
-              {{B, C, D}, {C, B, D}, {C, D, B}, {B, D, C}, {D, B, C}, {D, C, B}}
-            , {{A, C, D}, {C, A, D}, {C, D, A}, {A, D, C}, {D, A, C}, {D, C, A}}
-            , {{B, A, D}, {A, B, D}, {A, D, B}, {B, D, A}, {D, B, A}, {D, A, B}}
-            , {{B, C, A}, {C, B, A}, {C, A, B}, {B, A, C}, {A, B, C}, {A, C, B}}
-        };
-    }
-    private final static double SCALE = Math.pow(2.0, 30);
-    
     /**
-     * 检测点 aXYZ 是否在 aFace 指定面的正向，如果是则 > 0，否则 < 0，如果恰好在面上则 = 0
-     * 相关定义可以参考：
-     * <a href="https://ieeexplore.ieee.org/document/4276112">
-     * Computing the 3D Voronoi Diagram Robustly: An Easy Explanation </a>
+     * 删除节点时对空腔的局部重新三角剖分：节点的近邻四面体组成的空腔相对此节点是星形的，
+     * 删除后空腔内部的 delaunay 四面体就是空腔边界上的节点（link）的 delaunay 三角剖分中位于空腔内部的部分；
+     * 这里使用一个很小的辅助 builder 对 link 进行三角剖分，从和空腔边界面匹配的四面体开始洪泛得到空腔内部的四面体，
+     * 再替换掉原本的近邻四面体，因此耗时只和近邻四面体的数目有关
+     * <p>
+     * 多点共球的退化情况下，辅助的三角剖分可能不包含某些边界面（此时空腔边界穿过了共球的 delaunay 胞腔），
+     * 这里会将这些边界面外侧的四面体也加入到空腔中，空腔内部的节点同样加入 link 后重试，直到边界面都是非退化的；
+     * 由于所有新的面都满足局部的 delaunay 条件，得到的依旧是 delaunay 三角剖分；多次扩大后依旧失败则交给调用者处理
      */
-    static int orient(IXYZ aXYZ, IXYZ aA, IXYZ aB, IXYZ aC) {
-        double result = MathEX.Graph.leftOfPlane(aA, aB, aC, aXYZ);
-        if (result > 0.0) return 1;
-        else if (result < 0.0) return -1;
-        return 0;
+    class LocalRemove {
+        /** 退化情况下扩大空腔的最多次数 */
+        final static int MAX_GROW = 8;
+        /**
+         * 辅助 builder 的极大四面体相对 link 包围球半径的尺度；
+         * 太小时 link 中很扁的四面体的外接球可能包含极大四面体的顶点，太大时包含极大四面体顶点的判断很多都需要使用精确计算
+         */
+        final static double AUX_SCALE = 1024.0;
+        /** link 包含极大四面体的顶点时辅助 builder 的极大四面体相对的尺度，由于极大四面体包含中心，放大后一定包含原本的极大四面体 */
+        final static double UNIVERSE_SCALE = 4.0;
+        
+        final VoronoiBuilder mAux = new VoronoiBuilder(new Random(mRNG.nextLong())).setNoWarning();
+        /** 四面体的标记，每次使用递增的标记值，从而不需要清空 */
+        private int[] mTetMark = new int[INIT_CAPACITY];
+        private int mMark = 0;
+        /** 节点的近邻四面体，扩大空腔时也会添加到这里 */
+        int[] mStar = new int[INIT_CAPACITY];
+        int mStarNum = 0;
+        /**
+         * 空腔的边界面，外侧的四面体打包成 {@code tet*4+face} 存储（没有时为 {@link #NULL_ID}），
+         * 三个顶点使用辅助 builder 中的 id，按照从空腔内部看的方向存储，以及匹配到的辅助四面体
+         */
+        private int[] mBoundOuter = new int[INIT_CAPACITY];
+        private int[] mBoundVertex = new int[INIT_CAPACITY*3];
+        private int[] mBoundTet = new int[INIT_CAPACITY];
+        private int mBoundNum = 0;
+        /** 空腔中除了被删除节点以外的所有节点，按照辅助 builder 中的 id 顺序排列 */
+        private int[] mLink = new int[INIT_CAPACITY];
+        private int mLinkNum = 0;
+        /** 边界面的键到边界面编号的开放寻址哈希表 */
+        private long[] mHashKey = new long[INIT_CAPACITY];
+        private int[] mHashVal = new int[INIT_CAPACITY];
+        /** 空腔内部的辅助四面体，每个面对应的边界面编号（不是边界面则为 -1），以及对应的新四面体 */
+        private int[] mInner = new int[INIT_CAPACITY];
+        private int[] mInnerBound = new int[INIT_CAPACITY*4];
+        private int mInnerNum = 0;
+        private boolean[] mAuxInner = new boolean[INIT_CAPACITY];
+        private int[] mAuxToTet = new int[INIT_CAPACITY];
+        
+        /** 删除节点并局部重新三角剖分，退化情况下失败时返回 false，此时三角剖分不会有任何修改 */
+        boolean remove(int aVertex) {
+            if (!collectStar_(aVertex)) return false;
+            for (int tGrow = 0; tGrow <= MAX_GROW; ++tGrow) {
+                if (!collectBound_(aVertex)) return false;
+                buildAux_();
+                if (matchAux_()) {replace_(aVertex); return true;}
+                if (!growHole_()) return false;
+            }
+            return false;
+        }
+        /** 上次删除节点时新建的四面体 */
+        int newTetNum() {return mInnerNum;}
+        int newTet(int aIdx) {return mAuxToTet[mInner[aIdx]];}
+        /** 将节点 aFrom 在所有近邻四面体中的 id 替换成 aTo，用于删除后将最后一个节点移动到被删除的位置 */
+        void relabel(int aFrom, int aTo) {
+            if (collectStar_(aFrom)) {
+                // 近邻节点缓存的统计信息中依旧是旧的 id，因此也需要失效
+                for (int i = 0; i < mStarNum; ++i) {
+                    mTetVertex[(mStar[i]<<2) + tetOrdinalOfVertex(mStar[i], aFrom)] = aTo;
+                    touchStar_(mStar[i]);
+                }
+            } else {
+                // 近邻信息不完整时直接遍历所有四面体，并让所有统计信息失效
+                for (int i = 0; i < mTetNum*4; ++i) {
+                    final int tIdx = (mLiveTet[i>>2]<<2) + (i&3);
+                    if (mTetVertex[tIdx] == aFrom) mTetVertex[tIdx] = aTo;
+                }
+                mCheck = mRNG.nextInt();
+            }
+        }
+        
+        /** 从节点的 adj 开始遍历得到所有近邻四面体，近邻信息不完整时返回 false */
+        private boolean collectStar_(int aVertex) {
+            mStarNum = 0;
+            final int tStart = mVertexAdj[aVertex];
+            if (!tetValid(tStart) || !tetContainsVertex(tStart, aVertex)) return false;
+            if (mTetMark.length < mTetSlotNum) mTetMark = Arrays.copyOf(mTetMark, mTetGen.length);
+            if (++mMark == Integer.MAX_VALUE) {Arrays.fill(mTetMark, 0); mMark = 1;}
+            mTetMark[tStart] = mMark;
+            addStar_(tStart);
+            for (int i = 0; i < mStarNum; ++i) {
+                final int tTet = mStar[i];
+                final byte tPos = tetOrdinalOfVertex(tTet, aVertex);
+                for (byte tFace : PosTet.FACES) if (tFace != tPos) {
+                    // 包含此节点的面都在内部，一定存在近邻
+                    final int tNext = tetNeighbor(tTet, tFace);
+                    if (tNext==NULL_ID || !tetContainsVertex(tNext, aVertex)) return false;
+                    if (mTetMark[tNext] == mMark) continue;
+                    mTetMark[tNext] = mMark;
+                    addStar_(tNext);
+                }
+            }
+            return true;
+        }
+        private void addStar_(int aTet) {
+            if (mStarNum == mStar.length) mStar = Arrays.copyOf(mStar, mStar.length*2);
+            mStar[mStarNum++] = aTet;
+        }
+        /** 记录空腔的边界面以及 link，并构建边界面的哈希表 */
+        private boolean collectBound_(int aVertex) {
+            mBoundNum = 0; mLinkNum = 0;
+            if (mBoundOuter.length < mStarNum*4) {
+                mBoundOuter = new int[mStarNum*8];
+                mBoundVertex = new int[mStarNum*24];
+                mBoundTet = new int[mStarNum*8];
+            }
+            for (int i = 0; i < mStarNum; ++i) {
+                final int tTet = mStar[i];
+                final int tBase = tTet<<2;
+                for (byte tFace : PosTet.FACES) {
+                    // 空腔内部的节点同样需要加入 link
+                    final int tVertex = mTetVertex[tBase+tFace];
+                    if (tVertex != aVertex) linkID_(tVertex);
+                    final int tOuter = mTetNeighbor[tBase+tFace];
+                    if (tOuter!=NULL_ID && mTetMark[tOuter]==mMark) continue;
+                    if (tVertex != aVertex && tetContainsVertex(tTet, aVertex)) return false;
+                    if (tOuter == NULL_ID) {
+                        mBoundOuter[mBoundNum] = NULL_ID;
+                    } else {
+                        final byte tOuterFace = tetOrdinalOfNeighbor(tOuter, tTet);
+                        if (tOuterFace == PosTet.NULL) return false;
+                        mBoundOuter[mBoundNum] = (tOuter<<2) | tOuterFace;
+                    }
+                    final byte[] tFaceVertex = PosTet.FACE_VERTEX[tFace];
+                    for (int j = 0; j < 3; ++j) mBoundVertex[mBoundNum*3+j] = linkID_(mTetVertex[tBase+tFaceVertex[j]]);
+                    ++mBoundNum;
+                }
+            }
+            final int tMask = hashMask_();
+            if (mHashKey.length <= tMask) {mHashKey = new long[tMask+1]; mHashVal = new int[tMask+1];}
+            Arrays.fill(mHashKey, 0, tMask+1, -1L);
+            for (int i = 0; i < mBoundNum; ++i) {
+                final int j = i*3;
+                if (!hashPut_(faceKey_(mBoundVertex[j], mBoundVertex[j+1], mBoundVertex[j+2]), i, tMask)) return false;
+            }
+            return true;
+        }
+        /** 将没有匹配到的边界面外侧的四面体加入到空腔中，无法扩大时返回 false */
+        private boolean growHole_() {
+            boolean rGrow = false;
+            for (int i = 0; i < mBoundNum; ++i) if (mBoundTet[i] == NULL_ID) {
+                final int tOuter = mBoundOuter[i];
+                if (tOuter == NULL_ID) return false;
+                final int tTet = tOuter>>2;
+                if (mTetMark[tTet] == mMark) continue;
+                mTetMark[tTet] = mMark;
+                addStar_(tTet);
+                rGrow = true;
+            }
+            return rGrow;
+        }
+        /** 获取节点在辅助 builder 中的 id，不存在则添加到 link 中 */
+        private int linkID_(int aVertex) {
+            for (int i = 0; i < mLinkNum; ++i) if (mLink[i] == aVertex) return i+INIT_VERTEX_NUM;
+            if (mLinkNum == mLink.length) mLink = Arrays.copyOf(mLink, mLinkNum*2);
+            mLink[mLinkNum] = aVertex;
+            return (mLinkNum++)+INIT_VERTEX_NUM;
+        }
+        /** 对 link 进行三角剖分 */
+        private void buildAux_() {
+            final VoronoiBuilder tAux = mAux;
+            // link 包含此 builder 的极大四面体的顶点时，辅助 builder 的极大四面体需要放大来包含它们
+            boolean tUniverse = false;
+            double tMinX = Double.POSITIVE_INFINITY, tMinY = Double.POSITIVE_INFINITY, tMinZ = Double.POSITIVE_INFINITY;
+            double tMaxX = Double.NEGATIVE_INFINITY, tMaxY = Double.NEGATIVE_INFINITY, tMaxZ = Double.NEGATIVE_INFINITY;
+            for (int i = 0; i < mLinkNum; ++i) {
+                if (isUniverseVertex(mLink[i])) {tUniverse = true; break;}
+                final int tIdx = mLink[i]*3;
+                tMinX = Math.min(tMinX, mVertexXYZ[tIdx  ]); tMaxX = Math.max(tMaxX, mVertexXYZ[tIdx  ]);
+                tMinY = Math.min(tMinY, mVertexXYZ[tIdx+1]); tMaxY = Math.max(tMaxY, mVertexXYZ[tIdx+1]);
+                tMinZ = Math.min(tMinZ, mVertexXYZ[tIdx+2]); tMaxZ = Math.max(tMaxZ, mVertexXYZ[tIdx+2]);
+            }
+            if (tUniverse) {
+                tAux.resetUniverse_(mUniverseX, mUniverseY, mUniverseZ, mScale*UNIVERSE_SCALE);
+            } else {
+                final double tLX = tMaxX-tMinX, tLY = tMaxY-tMinY, tLZ = tMaxZ-tMinZ;
+                final double tR = 0.5*Math.sqrt(tLX*tLX + tLY*tLY + tLZ*tLZ);
+                tAux.resetUniverse_(0.5*(tMinX+tMaxX), 0.5*(tMinY+tMaxY), 0.5*(tMinZ+tMaxZ), Math.max(tR, Double.MIN_NORMAL)*AUX_SCALE);
+            }
+            tAux.ensureCapacity(mLinkNum);
+            for (int i = 0; i < mLinkNum; ++i) {
+                final int tIdx = mLink[i]*3;
+                tAux.newVertex_(mVertexXYZ[tIdx], mVertexXYZ[tIdx+1], mVertexXYZ[tIdx+2]);
+            }
+            for (int i = 0; i < mLinkNum; ++i) tAux.insertVertex_(i+INIT_VERTEX_NUM);
+        }
+        /**
+         * 匹配所有边界面，并从匹配的辅助四面体开始洪泛得到空腔内部的四面体；
+         * 每个边界面都需要匹配到，并且洪泛时不能穿过反向的边界面或者到达辅助 builder 的极大四面体
+         */
+        private boolean matchAux_() {
+            final VoronoiBuilder tAux = mAux;
+            final int tSlotNum = tAux.mTetSlotNum;
+            if (mAuxInner.length < tSlotNum) {
+                mAuxInner = new boolean[tAux.mTetGen.length];
+                mAuxToTet = new int[tAux.mTetGen.length];
+            }
+            if (mInner.length < tAux.mTetNum) {
+                mInner = new int[tAux.mTetGen.length];
+                mInnerBound = new int[tAux.mTetGen.length*4];
+            }
+            Arrays.fill(mAuxInner, 0, tSlotNum, false);
+            Arrays.fill(mBoundTet, 0, mBoundNum, NULL_ID);
+            final int tMask = hashMask_();
+            mInnerNum = 0;
+            for (int k = 0; k < tAux.mTetNum; ++k) {
+                final int tTet = tAux.mLiveTet[k];
+                for (byte tFace : PosTet.FACES) {
+                    final int tBound = hashGet_(auxFaceKey_(tTet, tFace, false), tMask);
+                    if (tBound < 0) continue;
+                    mBoundTet[tBound] = tTet;
+                    if (!mAuxInner[tTet]) {mAuxInner[tTet] = true; mInner[mInnerNum++] = tTet;}
+                }
+            }
+            // 同一个方向的面在三角剖分中只会出现一次，因此只需要检测是否都匹配到了
+            for (int i = 0; i < mBoundNum; ++i) if (mBoundTet[i] == NULL_ID) return false;
+            for (int i = 0; i < mInnerNum; ++i) {
+                final int tTet = mInner[i];
+                if (tAux.isUniverseTet(tTet)) return false;
+                for (byte tFace : PosTet.FACES) {
+                    final int tBound = hashGet_(auxFaceKey_(tTet, tFace, false), tMask);
+                    mInnerBound[(i<<2)+tFace] = tBound;
+                    if (tBound >= 0) continue;
+                    if (hashGet_(auxFaceKey_(tTet, tFace, true), tMask) >= 0) return false;
+                    final int tNext = tAux.tetNeighbor(tTet, tFace);
+                    if (tNext == NULL_ID) return false;
+                    if (mAuxInner[tNext]) continue;
+                    if (mInnerNum == mInner.length) return false;
+                    mAuxInner[tNext] = true;
+                    mInner[mInnerNum++] = tNext;
+                }
+            }
+            return true;
+        }
+        /** 使用匹配得到的辅助四面体替换近邻四面体，并连接到空腔外侧的四面体 */
+        private void replace_(int aVertex) {
+            final VoronoiBuilder tAux = mAux;
+            for (int i = 0; i < mStarNum; ++i) deleteTet_(mStar[i]);
+            for (int i = 0; i < mInnerNum; ++i) {
+                final int tBase = mInner[i]<<2;
+                final int[] tAuxVertex = tAux.mTetVertex;
+                mAuxToTet[mInner[i]] = newTet_(
+                      mLink[tAuxVertex[tBase  ]-INIT_VERTEX_NUM]
+                    , mLink[tAuxVertex[tBase+1]-INIT_VERTEX_NUM]
+                    , mLink[tAuxVertex[tBase+2]-INIT_VERTEX_NUM]
+                    , mLink[tAuxVertex[tBase+3]-INIT_VERTEX_NUM]);
+            }
+            for (int i = 0; i < mInnerNum; ++i) {
+                final int tTet = mAuxToTet[mInner[i]];
+                for (byte tFace : PosTet.FACES) {
+                    final int tBound = mInnerBound[(i<<2)+tFace];
+                    if (tBound < 0) {
+                        setTetNeighbor(tTet, tFace, mAuxToTet[tAux.tetNeighbor(mInner[i], tFace)]);
+                        continue;
+                    }
+                    final int tOuter = mBoundOuter[tBound];
+                    if (tOuter == NULL_ID) continue;
+                    setTetNeighbor(tTet, tFace, tOuter>>2);
+                    setTetNeighbor(tOuter>>2, (byte)(tOuter&3), tTet);
+                }
+            }
+            mVertexAdj[aVertex] = NULL_ID;
+            mLast = mAuxToTet[mInner[0]];
+        }
+        
+        /** 辅助四面体的面的键，aReverse 为 true 时为从另一侧看的方向 */
+        private long auxFaceKey_(int aTet, byte aFace, boolean aReverse) {
+            final int tBase = aTet<<2;
+            final byte[] tFaceVertex = PosTet.FACE_VERTEX[aFace];
+            final int[] tAuxVertex = mAux.mTetVertex;
+            final int tA = tAuxVertex[tBase+tFaceVertex[0]], tB = tAuxVertex[tBase+tFaceVertex[1]], tC = tAuxVertex[tBase+tFaceVertex[2]];
+            return aReverse ? faceKey_(tA, tC, tB) : faceKey_(tA, tB, tC);
+        }
+        /** 旋转到最小的节点在最前面，保留环绕的方向，从而同一个面的两个方向得到不同的键 */
+        private long faceKey_(int aA, int aB, int aC) {
+            if (aB<aA && aB<aC) {final int t = aA; aA = aB; aB = aC; aC = t;}
+            else if (aC<aA && aC<aB) {final int t = aA; aA = aC; aC = aB; aB = t;}
+            return ((long)aA<<42) | ((long)aB<<21) | aC;
+        }
+        private int hashMask_() {
+            int tSize = INIT_CAPACITY;
+            while (tSize < mBoundNum*2) tSize <<= 1;
+            return tSize-1;
+        }
+        private int hash_(long aKey) {return (int)(aKey ^ (aKey>>>29)) * 0x9E3779B1;}
+        /** 已经存在相同的键时返回 false */
+        private boolean hashPut_(long aKey, int aVal, int aMask) {
+            int tPos = hash_(aKey) & aMask;
+            while (mHashKey[tPos] != -1L) {
+                if (mHashKey[tPos] == aKey) return false;
+                tPos = (tPos+1) & aMask;
+            }
+            mHashKey[tPos] = aKey; mHashVal[tPos] = aVal;
+            return true;
+        }
+        private int hashGet_(long aKey, int aMask) {
+            int tPos = hash_(aKey) & aMask;
+            while (mHashKey[tPos] != -1L) {
+                if (mHashKey[tPos] == aKey) return mHashVal[tPos];
+                tPos = (tPos+1) & aMask;
+            }
+            return -1;
+        }
+    }
+    
+    /**
+     * 移动节点的撤销日志：记录移动期间每个四面体位置第一次被修改前的内容（四个顶点、四个近邻以及是否合法），
+     * 撤销时删除期间新建的四面体并恢复这些位置，因此开销和移动时的翻转数目相当；
+     * 节点的 adj 不需要记录，恢复的四面体包含了所有近邻有改变的节点，直接重新设置即可；
+     * 周期模式下移动之后补充的镜像节点都排列在最后，撤销时直接截断
+     */
+    class MoveJournal {
+        /** 是否正在记录修改，移动之后的统计（周期模式下会补充镜像）也需要记录 */
+        boolean mRecord = false;
+        /** 移动的真实节点，没有可以撤销的移动时为 {@link #NULL_ID}；以及是否因为退化而重新构建了三角剖分 */
+        int mVertex = NULL_ID;
+        boolean mRebuilt = false;
+        /** 移动前的节点数目以及镜像数目 */
+        int mOldVertexNum, mOldImageNum;
+        /** 移动的节点（周期模式下包括其镜像），以及原本的坐标和新的坐标 */
+        int[] mMoved = new int[INIT_CAPACITY];
+        double[] mOldXYZ = new double[INIT_CAPACITY*3], mNewXYZ = new double[INIT_CAPACITY*3];
+        int mMovedNum = 0;
+        /** 周期模式下折叠到盒内时镜像原本的键以及新的键 */
+        long[] mOldKey = new long[INIT_CAPACITY], mNewKey = new long[INIT_CAPACITY];
+        int mKeyNum = 0;
+        /** 修改过的四面体位置，修改前的顶点和近邻（每个位置 8 个），以及修改前是否合法 */
+        private int[] mSlot = new int[INIT_CAPACITY];
+        private int[] mSlotData = new int[INIT_CAPACITY*8];
+        private boolean[] mSlotLive = new boolean[INIT_CAPACITY];
+        private int mSlotNum = 0;
+        /** 四面体位置的标记，每次移动使用递增的标记值，从而不需要清空 */
+        private int[] mTouch = new int[INIT_CAPACITY];
+        private int mMark = 0;
+        
+        void begin(int aVertex) {
+            mRecord = true;
+            mVertex = aVertex;
+            mRebuilt = false;
+            mOldVertexNum = mVertexNum;
+            mOldImageNum = mPeriodic==null ? 0 : mPeriodic.mImageNum;
+            mMovedNum = 0;
+            mKeyNum = 0;
+            mSlotNum = 0;
+            if (++mMark == Integer.MAX_VALUE) {Arrays.fill(mTouch, 0); mMark = 1;}
+        }
+        void reset() {mRecord = false; mVertex = NULL_ID;}
+        
+        void addMoved(int aVertex, double aX, double aY, double aZ) {
+            if (mMovedNum == mMoved.length) {
+                mMoved = Arrays.copyOf(mMoved, mMovedNum*2);
+                mOldXYZ = Arrays.copyOf(mOldXYZ, mMovedNum*6);
+                mNewXYZ = Arrays.copyOf(mNewXYZ, mMovedNum*6);
+            }
+            final int tIdx = mMovedNum*3;
+            System.arraycopy(mVertexXYZ, aVertex*3, mOldXYZ, tIdx, 3);
+            mNewXYZ[tIdx  ] = aX;
+            mNewXYZ[tIdx+1] = aY;
+            mNewXYZ[tIdx+2] = aZ;
+            mMoved[mMovedNum++] = aVertex;
+        }
+        void addKey(long aOld, long aNew) {
+            if (mKeyNum == mOldKey.length) {
+                mOldKey = Arrays.copyOf(mOldKey, mKeyNum*2);
+                mNewKey = Arrays.copyOf(mNewKey, mKeyNum*2);
+            }
+            mOldKey[mKeyNum] = aOld;
+            mNewKey[mKeyNum] = aNew;
+            ++mKeyNum;
+        }
+        /** 记录四面体位置第一次被修改前的内容，aLive 表示此位置当前是否是合法的四面体 */
+        void touch(int aTet, boolean aLive) {
+            if (aTet >= mTouch.length) mTouch = Arrays.copyOf(mTouch, Math.max(aTet+1, mTouch.length*2));
+            if (mTouch[aTet] == mMark) return;
+            mTouch[aTet] = mMark;
+            if (mSlotNum == mSlot.length) {
+                mSlot = Arrays.copyOf(mSlot, mSlotNum*2);
+                mSlotData = Arrays.copyOf(mSlotData, mSlotNum*16);
+                mSlotLive = Arrays.copyOf(mSlotLive, mSlotNum*2);
+            }
+            mSlot[mSlotNum] = aTet;
+            mSlotLive[mSlotNum] = aLive;
+            if (aLive) {
+                System.arraycopy(mTetVertex, aTet<<2, mSlotData, mSlotNum*8, 4);
+                System.arraycopy(mTetNeighbor, aTet<<2, mSlotData, mSlotNum*8+4, 4);
+            }
+            ++mSlotNum;
+        }
+        
+        /** 恢复到 {@link #begin} 时的三角剖分以及节点坐标 */
+        void undo() {
+            mRecord = false;
+            if (mLocateGrid != null) {
+                for (int tVertex = mOldVertexNum; tVertex < mVertexNum; ++tVertex) mLocateGrid.remove(tVertex);
+                for (int i = 0; i < mMovedNum; ++i) mLocateGrid.remove(mMoved[i]);
+            }
+            if (mPeriodic != null) mPeriodic.undoMove(this);
+            Arrays.fill(mVertexView, mOldVertexNum, mVertexNum, null);
+            mVertexNum = mOldVertexNum;
+            for (int i = 0; i < mMovedNum; ++i) System.arraycopy(mOldXYZ, i*3, mVertexXYZ, mMoved[i]*3, 3);
+            // 先删除期间新建的四面体，再恢复被修改的四面体，使用新的代数让期间获取的视图失效
+            for (int i = 0; i < mSlotNum; ++i) if (!mSlotLive[i] && tetValid(mSlot[i])) deleteTet_(mSlot[i]);
+            for (int i = 0; i < mSlotNum; ++i) if (mSlotLive[i]) {
+                final int tTet = mSlot[i], tBase = tTet<<2;
+                System.arraycopy(mSlotData, i*8, mTetVertex, tBase, 4);
+                System.arraycopy(mSlotData, i*8+4, mTetNeighbor, tBase, 4);
+                touchStar_(tTet);
+                dropCenter_(tTet);
+                ++mTetGen[tTet];
+                if (mPeriodic != null) mPeriodic.markTet(tTet);
+                if (mLivePos[tTet] < 0) {
+                    mLiveTet[mTetNum] = tTet;
+                    mLivePos[tTet] = mTetNum;
+                    ++mTetNum;
+                }
+                mVertexAdj[mTetVertex[tBase  ]] = tTet;
+                mVertexAdj[mTetVertex[tBase+1]] = tTet;
+                mVertexAdj[mTetVertex[tBase+2]] = tTet;
+                mVertexAdj[mTetVertex[tBase+3]] = tTet;
+                mLast = tTet;
+            }
+            // 恢复的位置需要从 mTetFree 中移除
+            int tFreeNum = 0;
+            for (int i = 0; i < mTetFreeNum; ++i) if (mLivePos[mTetFree[i]] < 0) mTetFree[tFreeNum++] = mTetFree[i];
+            mTetFreeNum = tFreeNum;
+            if (mLocateGrid != null) for (int i = 0; i < mMovedNum; ++i) mLocateGrid.add(mMoved[i]);
+        }
+    }
+    
+    /**
+     * {@link #updatePositions} 使用的缓存，在相邻的帧之间重复使用从而不需要每帧都按照节点数目分配：
+     * 备用的坐标数组（和当前的坐标数组交替使用），以及每个节点的标记，高位为调用的序号，因此不需要清空
+     */
+    static class UpdateBuffer {
+        final static int MOVED = 1, HULL = 2, REMOVED = 4, FLAG_BITS = 3;
+        double[] mXYZ = new double[0];
+        int[] mMark = new int[0];
+        int mGen = 0;
+        /** 需要删除的节点，以及重新插入时的提示节点 */
+        int[] mRemove = new int[INIT_CAPACITY], mHint = new int[INIT_CAPACITY];
+        int mRemoveNum = 0;
+        
+        void begin(int aVertexNum) {
+            if (mMark.length < aVertexNum) mMark = new int[Math.max(aVertexNum, mMark.length + (mMark.length>>1))];
+            if (++mGen == 1<<(31-FLAG_BITS)) {Arrays.fill(mMark, 0); mGen = 1;}
+            mRemoveNum = 0;
+        }
+        void addRemove(int aVertex) {
+            set(aVertex, REMOVED);
+            if (mRemoveNum == mRemove.length) {
+                mRemove = Arrays.copyOf(mRemove, mRemoveNum*2);
+                mHint = Arrays.copyOf(mHint, mRemoveNum*2);
+            }
+            mRemove[mRemoveNum++] = aVertex;
+        }
+        boolean has(int aVertex, int aFlag) {
+            final int tMark = mMark[aVertex];
+            return (tMark>>>FLAG_BITS)==mGen && (tMark&aFlag)!=0;
+        }
+        void set(int aVertex, int aFlag) {
+            final int tMark = mMark[aVertex];
+            mMark[aVertex] = ((tMark>>>FLAG_BITS)==mGen ? tMark : mGen<<FLAG_BITS) | aFlag;
+        }
+    }
+    
+    private final static double SCALE = Math.pow(2.0, 30);
+    /** 不存在的节点或者四面体的 id，对应原本的 null */
+    final static int NULL_ID = -1;
+    /** 初始的极大四面体的顶点数目，固定占据最前面的节点 id */
+    final static int INIT_VERTEX_NUM = 4;
+    private final static int INIT_CAPACITY = 64;
+    /** 预分配容量时每个节点对应的四面体数目，随机分布的点大约为 6.8，这里稍微多留一些给翻转过程中的临时四面体 */
+    private final static double TET_PER_VERTEX = 7.0;
+    /**
+     * 更新坐标的开销模型，以重新构建时插入一个节点的耗时为单位：检测定向和修复所有面的固定开销（每个节点），
+     * 局部删除并重新插入一个内部节点的开销，以及凸包上节点的开销（link 包含极大四面体的顶点，需要很多精确计算）；
+     * 实测 10 万个节点时分别约为 0.2 ~ 0.3，10 ~ 12 和 100，预计的总开销超过节点数目时直接重新构建
+     */
+    private final static double UPDATE_FIXED_COST = 0.25, UPDATE_REMOVE_COST = 12.0, UPDATE_HULL_COST = 100.0;
+    /**
+     * 删除时新建的四面体同样可能在新坐标下翻转，从而需要继续删除，这个级联的比例对于随机点约为 0.3，接近晶格时约为 0.7；
+     * 删除至少 UPDATE_SAMPLE 个节点后根据实际的比例来估计总的删除数目；
+     * 开始之前每隔 UPDATE_SAMPLE_STRIDE 个四面体抽样检测定向，翻转的四面体明显过多时不再完整检测而直接重新构建，
+     * 这里保守地认为每个删除的节点平均移除 UPDATE_INVERTED_PER_REMOVE 个翻转的四面体（实测为 1.2 ~ 4.7）
+     */
+    private final static int UPDATE_SAMPLE = 32, UPDATE_SAMPLE_STRIDE = 16;
+    private final static double UPDATE_INVERTED_PER_REMOVE = 4.0;
+    /** 判断外接球是否在盒子内部时对半径的相对容差，用于覆盖球心和半径的数值误差 */
+    private final static double SECURE_EPS = 1.0e-8;
+    
+    /**
+     * 检测点 aXYZ 是否在 ABC 组成的面的正向，如果是则 > 0，否则 < 0，如果恰好在面上则 = 0
+     * 相关定义可以参考：
+     * <a href="https://ieeexplore.ieee.org/document/4276112">
+     * Computing the 3D Voronoi Diagram Robustly: An Easy Explanation </a>
+     */
+    int orient(double aX, double aY, double aZ, int aA, int aB, int aC) {
+        final double[] tXYZ = mVertexXYZ;
+        final int tA = aA*3, tB = aB*3, tC = aC*3;
+        double result = MathEX.Graph.leftOfPlane(
+              tXYZ[tA], tXYZ[tA+1], tXYZ[tA+2]
+            , tXYZ[tB], tXYZ[tB+1], tXYZ[tB+2]
+            , tXYZ[tC], tXYZ[tC+1], tXYZ[tC+2]
+            , aX, aY, aZ);
+        if (result > 0.0) return 1;
+        else if (result < 0.0) return -1;
+        return 0;
+    }
+    int orient(int aP, int aA, int aB, int aC) {
+        final int tP = aP*3;
+        return orient(mVertexXYZ[tP], mVertexXYZ[tP+1], mVertexXYZ[tP+2], aA, aB, aC);
     }
     /**
-     * 检测点 aXYZ 是否在此四面体四个顶点组成的球形的内部，如果是则 > 0，否则 < 0，如果恰好在面上则 = 0
+     * 检测节点 aP 是否在 ABCD 四个顶点组成的球形的内部，如果是则 > 0，否则 < 0，如果恰好在面上则 = 0
      * 相关定义可以参考：
      * <a href="https://ieeexplore.ieee.org/document/4276112">
      * Computing the 3D Voronoi Diagram Robustly: An Easy Explanation </a>
      */
-    static int inSphere(IXYZ aXYZ, IXYZ aA, IXYZ aB, IXYZ aC, IXYZ aD) {
-        double result = MathEX.Graph.inSphere(aA, aB, aC, aD, aXYZ);
+    int inSphere(double aX, double aY, double aZ, int aA, int aB, int aC, int aD) {
+        final double[] tXYZ = mVertexXYZ;
+        final int tA = aA*3, tB = aB*3, tC = aC*3, tD = aD*3;
+        double result = MathEX.Graph.inSphere(
+              tXYZ[tA], tXYZ[tA+1], tXYZ[tA+2]
+            , tXYZ[tB], tXYZ[tB+1], tXYZ[tB+2]
+            , tXYZ[tC], tXYZ[tC+1], tXYZ[tC+2]
+            , tXYZ[tD], tXYZ[tD+1], tXYZ[tD+2]
+            , aX, aY, aZ);
         if (result > 0.0) return 1;
         else if (result < 0.0) return -1;
         return 0;
     }
+    int inSphere(int aP, int aA, int aB, int aC, int aD) {
+        final int tP = aP*3;
+        return inSphere(mVertexXYZ[tP], mVertexXYZ[tP+1], mVertexXYZ[tP+2], aA, aB, aC, aD);
+    }
     
     
     
-    /** 初始的极大四面体，保证所有点都会在其内部 */
-    private final Vertex mInitVertexA, mInitVertexB, mInitVertexC, mInitVertexD;
     /** 上一步的四面体，用于进行加速搜索过程 */
-    private Tetrahedron mLast;
+    private int mLast;
     
     /** 独立的随机数生成器 */
     final Random mRNG;
-    /** 存储所有的插入的节点，按照插入顺序保留方便使用 */
-    final List<Vertex> mAllVertex = new ArrayList<>();
-    /** 存储所有的创建的四面体，这个是无序的 */
-    final Set<Tetrahedron> mAllTet = new HashSet<>();
-    /** 此值用于检验统计值是否有效 */
+    /** 初始的极大四面体的中心以及尺度 */
+    private double mUniverseX = 0.0, mUniverseY = 0.0, mUniverseZ = 0.0, mScale = SCALE;
+    /** 节点坐标以及一个近邻的四面体，按照 id 存储，前 {@link #INIT_VERTEX_NUM} 个为初始的极大四面体的顶点，之后按照插入顺序排列 */
+    double[] mVertexXYZ = new double[INIT_CAPACITY*3];
+    int[] mVertexAdj = new int[INIT_CAPACITY];
+    int mVertexNum = 0;
+    /** 节点星形（所有近邻四面体）的版本，近邻四面体增删时增加，从而只让星形改变了的节点的统计信息失效 */
+    int[] mVertexStar = new int[INIT_CAPACITY];
+    /** 节点的视图，只有在外部访问时才会创建，并用来缓存统计信息 */
+    Vertex[] mVertexView = new Vertex[INIT_CAPACITY];
+    /** 四面体的四个顶点以及四个面对应的近邻四面体，每个四面体占据连续的四个位置，按照 A, B, C, D 的顺序 */
+    int[] mTetVertex = new int[INIT_CAPACITY*4];
+    int[] mTetNeighbor = new int[INIT_CAPACITY*4];
+    /**
+     * 四面体外接球的球心以及半径的平方，每个四面体占据连续的四个位置，按照 x, y, z, r^2 的顺序；
+     * 只有需要时才会计算（或者通过 {@link #computeCenterSphere} 一次全部计算），没有计算时 x 为 NaN；
+     * 数组本身也只有第一次需要外接球时才会按照当前的容量分配，只插入或者只使用拓扑时为 null
+     */
+    @Nullable double[] mTetCenter = null;
+    /** 四面体位置的代数，每次删除都会增加，用于让外部的 {@link ITetrahedron} 视图检测对应位置是否已经被重复使用 */
+    int[] mTetGen = new int[INIT_CAPACITY];
+    /**
+     * 所有合法的四面体紧密排列的列表，以及每个四面体在此列表中的位置，为 -1 表示此四面体已经被删除；
+     * 删除时将最后一个四面体移动到被删除的位置，因此增删都是 O(1) 的，并且遍历时不需要跳过被删除的位置
+     */
+    int[] mLiveTet = new int[INIT_CAPACITY];
+    int[] mLivePos = new int[INIT_CAPACITY];
+    /** 已经使用过的四面体位置数目，被删除的四面体位置会存储到 mTetFree 中，并在之后创建四面体时重复使用 */
+    int mTetSlotNum = 0;
+    int[] mTetFree = new int[INIT_CAPACITY];
+    int mTetFreeNum = 0;
+    /** 合法的四面体数目，也即 mLiveTet 的有效长度 */
+    int mTetNum = 0;
+    /** 翻转时用于暂存新的四面体的缓存，避免每次翻转都创建数组 */
+    private final int[] mFlipBuffer = new int[3];
+    /** 插入时需要考虑翻转的界面，打包成 {@code tet*4+face} 按照栈的方式存储，以及用于处理这些界面的定向面 */
+    private int[] mEarBuffer = new int[INIT_CAPACITY];
+    private int mEarNum = 0;
+    private final OrientedFace mFace = new OrientedFace();
+    /** 此值用于检验统计值是否有效，只用于全局的修改，局部的插入删除只会修改对应节点的 {@link #mVertexStar} */
     int mCheck;
+    /** 截断阈值的版本，只会让统计信息重新进行过滤 */
+    int mThresholdCheck = 0;
+    /** 串行统计节点信息时使用的缓存 */
+    private final StatBuffer mStatBuffer = new StatBuffer();
     
     /** 是否需要输出警告 */
     boolean mNoWarning = false;
     public VoronoiBuilder setNoWarning(boolean aNoWarning) {mNoWarning = aNoWarning; return this;}
     public VoronoiBuilder setNoWarning() {return setNoWarning(true);}
     
-    /** 边长和面积的截断比例，用于处理退化情况 */
+    /**
+     * 是否使用 {@link LocateGrid} 来加速定位，对于乱序的逐个插入有明显加速；
+     * 对于已经排序的输入（如 {@link #insertAll}）从上一步的四面体开始寻路已经足够，则没有必要开启
+     */
+    private @Nullable LocateGrid mLocateGrid = null;
+    public VoronoiBuilder setLocateGrid(boolean aLocateGrid) {
+        if (!aLocateGrid) {mLocateGrid = null; return this;}
+        if (mLocateGrid != null) return this;
+        mLocateGrid = new LocateGrid();
+        // 已经插入的节点直接构建网格
+        for (int tVertex = INIT_VERTEX_NUM; tVertex < mVertexNum; ++tVertex) if (mVertexAdj[tVertex] != NULL_ID) ++mLocateGrid.mInsertNum;
+        if (mLocateGrid.mInsertNum >= LocateGrid.MIN_VERTEX_NUM) mLocateGrid.rebuild_();
+        return this;
+    }
+    public VoronoiBuilder setLocateGrid() {return setLocateGrid(true);}
+    
+    /** 删除节点时使用的局部重新三角剖分，只有需要时才会创建 */
+    private @Nullable LocalRemove mLocalRemove = null;
+    /** 直接获取近邻时遍历星形使用的缓存，只有需要时才会创建 */
+    private @Nullable Star mNeighborStar = null;
+    /** 更新坐标时使用的缓存，只有需要时才会创建 */
+    private @Nullable UpdateBuffer mUpdateBuffer = null;
+    /** 移动节点的撤销日志，只有需要时才会创建 */
+    private @Nullable MoveJournal mJournal = null;
+    /** 拓扑数组是否和 {@link #freeze} 得到的视图共享，共享时修改前需要先复制一份 */
+    private boolean mShared = false;
+    
+    /** 周期性边界条件，为 null 表示不使用 */
+    private @Nullable Periodic mPeriodic = null;
+    /**
+     * 设置周期性边界条件的模拟盒，只能在没有节点时设置；
+     * 之后插入的节点都会被折叠到模拟盒内，统计结果考虑所有的周期性镜像（见 {@link Periodic}）
+     * @author CHanzy
+     * @param aA 模拟盒的第一个基矢，原点位于 (0, 0, 0)
+     * @param aB 模拟盒的第二个基矢
+     * @param aC 模拟盒的第三个基矢
+     * @return 自身方便链式调用
+     */
+    public VoronoiBuilder setBox(IXYZ aA, IXYZ aB, IXYZ aC) {
+        return setBox_(new double[] {aA.x(), aA.y(), aA.z(), aB.x(), aB.y(), aB.z(), aC.x(), aC.y(), aC.z()});
+    }
+    /** 正交的模拟盒 */
+    public VoronoiBuilder setBox(double aX, double aY, double aZ) {
+        return setBox_(new double[] {aX, 0.0, 0.0, 0.0, aY, 0.0, 0.0, 0.0, aZ});
+    }
+    public VoronoiBuilder clearBox() {return setBox_(null);}
+    public boolean isPeriodic() {return mPeriodic != null;}
+    private VoronoiBuilder setBox_(@Nullable double[] aBox) {
+        if (sizeVertex() > 0) throw new IllegalStateException("Box can only be set on an empty builder, call clear() first");
+        mPeriodic = aBox==null ? null : new Periodic(aBox);
+        return this;
+    }
+    
+    /** 定位的统计信息，记录定位次数以及寻路经过的四面体数目，用于检查定位的效率 */
+    private long mLocateNum = 0, mWalkNum = 0;
+    /** @return 从上次 {@link #resetWalkStat()} 或者 {@link #clear()} 以来平均每次定位经过的四面体数目 */
+    public double averageWalkLength() {return mLocateNum==0 ? 0.0 : mWalkNum/(double)mLocateNum;}
+    public VoronoiBuilder resetWalkStat() {mLocateNum = 0; mWalkNum = 0; return this;}
+    
+    /**
+     * 边长和面积的截断比例，用于处理退化情况；
+     * 节点会缓存原始的面积和棱长，修改阈值只需要重新进行过滤，因此扫描多个阈值的开销很小（另见 {@link IVertex#index(double[], double[])}）
+     */
     private double mAreaThreshold = 0.0;
     private double mLengthThreshold = 0.0;
     private double mAreaThresholdAbs = Double.NaN; // 默认用相对值
@@ -617,28 +2210,28 @@ public final class VoronoiBuilder {
         double oAreaThreshold = mAreaThreshold;
         mAreaThreshold = Math.max(0.0, aAreaThreshold);
         mAreaThresholdAbs = Double.NaN;
-        if (oAreaThreshold != mAreaThreshold) mCheck = mRNG.nextInt();
+        if (oAreaThreshold != mAreaThreshold) ++mThresholdCheck;
         return this;
     }
     public VoronoiBuilder setLengthThreshold(double aLengthThreshold) {
         double oLengthThreshold = mLengthThreshold;
         mLengthThreshold = Math.max(0.0, aLengthThreshold);
         mLengthThresholdAbs = Double.NaN;
-        if (oLengthThreshold != mLengthThreshold) mCheck = mRNG.nextInt();
+        if (oLengthThreshold != mLengthThreshold) ++mThresholdCheck;
         return this;
     }
     public VoronoiBuilder setAreaThresholdAbs(double aAreaThresholdAbs) {
         double oAreaThresholdAbs = mAreaThresholdAbs;
         mAreaThresholdAbs = Math.max(0.0, aAreaThresholdAbs);
         mAreaThreshold = Double.NaN;
-        if (oAreaThresholdAbs != mAreaThresholdAbs) mCheck = mRNG.nextInt();
+        if (oAreaThresholdAbs != mAreaThresholdAbs) ++mThresholdCheck;
         return this;
     }
     public VoronoiBuilder setLengthThresholdAbs(double aLengthThresholdAbs) {
         double oLengthThresholdAbs = mLengthThresholdAbs;
         mLengthThresholdAbs = Math.max(0.0, aLengthThresholdAbs);
         mLengthThreshold = Double.NaN;
-        if (oLengthThresholdAbs != mLengthThresholdAbs) mCheck = mRNG.nextInt();
+        if (oLengthThresholdAbs != mLengthThresholdAbs) ++mThresholdCheck;
         return this;
     }
     boolean areaValid(double aArea, double aRefArea) {
@@ -677,385 +2270,2240 @@ public final class VoronoiBuilder {
     VoronoiBuilder(Random aRNG) {
         mRNG = aRNG;
         mCheck = mRNG.nextInt();
+        initUniverse_();
+    }
+    private void initUniverse_() {
         // 初始的极大四面体，保证所有点都会在其内部；这样降低对称性，让 2D 情况更好处理
-        Tetrahedron tInitTetrahedron = new Tetrahedron(
-              new Vertex(-SCALE*1.1, SCALE*1.6,-SCALE*2.3)
-            , new Vertex( SCALE*1.5, SCALE*1.9, SCALE*1.8)
-            , new Vertex( SCALE*2.2,-SCALE*1.4,-SCALE*1.7)
-            , new Vertex(-SCALE*1.2,-SCALE*2.1, SCALE*1.3)
+        mLast = newTet_(
+              newVertex_(mUniverseX-mScale*1.1, mUniverseY+mScale*1.6, mUniverseZ-mScale*2.3)
+            , newVertex_(mUniverseX+mScale*1.5, mUniverseY+mScale*1.9, mUniverseZ+mScale*1.8)
+            , newVertex_(mUniverseX+mScale*2.2, mUniverseY-mScale*1.4, mUniverseZ-mScale*1.7)
+            , newVertex_(mUniverseX-mScale*1.2, mUniverseY-mScale*2.1, mUniverseZ+mScale*1.3)
         );
-        mLast = tInitTetrahedron;
-        mInitVertexA = tInitTetrahedron.mA;
-        mInitVertexB = tInitTetrahedron.mB;
-        mInitVertexC = tInitTetrahedron.mC;
-        mInitVertexD = tInitTetrahedron.mD;
+    }
+    /**
+     * 修改初始的极大四面体的中心和尺度并清空，只用于 {@link LocalRemove} 中的辅助 builder；
+     * 极大四面体包含以中心为球心，半径为 {@code 0.5*aScale} 的球
+     */
+    void resetUniverse_(double aX, double aY, double aZ, double aScale) {
+        mUniverseX = aX; mUniverseY = aY; mUniverseZ = aZ; mScale = aScale;
+        clear();
+    }
+    
+    /**
+     * 预先分配足够 aVertexNum 个节点使用的容量，从而在插入过程中不再需要扩容；
+     * 对于已知原子数的轨迹处理，配合 {@link #clear()} 可以让之后的每一帧都不再分配内存
+     * @author CHanzy
+     * @param aVertexNum 预计需要插入的节点数目
+     * @return 自身方便链式调用
+     */
+    public VoronoiBuilder ensureCapacity(int aVertexNum) {
+        ensureVertexCapacity_(aVertexNum+INIT_VERTEX_NUM);
+        ensureTetCapacity_((int)Math.ceil(aVertexNum*TET_PER_VERTEX) + 1);
+        return this;
+    }
+    /**
+     * 清空所有插入的节点，恢复到刚创建时的状态，但是会保留已经分配的容量，
+     * 用于处理轨迹的下一帧；之前获取的 {@link IVertex} 以及 {@link ITetrahedron} 都会失效
+     * @author CHanzy
+     * @return 自身方便链式调用
+     */
+    public VoronoiBuilder clear() {
+        if (mShared) {
+            // 共享的数组依旧被 freeze 的结果使用，而旧的拓扑之后不再需要，因此直接分配相同容量的新数组而不是拷贝
+            mShared = false;
+            final int[] oTetGen = mTetGen;
+            mVertexXYZ = new double[mVertexXYZ.length];
+            mVertexAdj = new int[mVertexAdj.length];
+            mVertexStar = new int[mVertexStar.length];
+            mTetVertex = new int[mTetVertex.length];
+            mTetNeighbor = new int[mTetNeighbor.length];
+            mTetCenter = null;
+            mTetGen = new int[oTetGen.length];
+            mLiveTet = new int[mLiveTet.length];
+            mLivePos = new int[mLivePos.length];
+            // 依旧需要增加所有使用过的位置的代数，让旧的四面体视图失效
+            for (int i = 0; i < mTetSlotNum; ++i) mTetGen[i] = oTetGen[i]+1;
+        } else {
+            // 增加所有使用过的位置的代数，让旧的四面体视图失效
+            for (int i = 0; i < mTetSlotNum; ++i) ++mTetGen[i];
+            if (mTetCenter != null) Arrays.fill(mTetCenter, 0, mTetSlotNum*4, Double.NaN);
+        }
+        Arrays.fill(mVertexView, 0, mVertexNum, null);
+        mVertexNum = 0;
+        mTetSlotNum = 0;
+        mTetFreeNum = 0;
+        mTetNum = 0;
+        mCheck = mRNG.nextInt();
+        if (mLocateGrid != null) mLocateGrid.reset();
+        if (mPeriodic != null) mPeriodic.reset();
+        dropJournal_();
+        resetWalkStat();
+        initUniverse_();
+        return this;
     }
     
     /** 返回是否是虚构的巨大四面体的顶点 */
     @SuppressWarnings("BooleanMethodIsAlwaysInverted")
-    boolean isUniverse(Vertex aVertex) {return aVertex==mInitVertexA || aVertex==mInitVertexB || aVertex==mInitVertexC || aVertex==mInitVertexD;}
+    static boolean isUniverseVertex(int aVertex) {return aVertex < INIT_VERTEX_NUM;}
     /** 返回是否是虚构的巨大四面体 */
-    boolean isUniverse(Tetrahedron aTet) {return aTet.containsVertex(mInitVertexA) || aTet.containsVertex(mInitVertexB) || aTet.containsVertex(mInitVertexC) || aTet.containsVertex(mInitVertexD);}
+    boolean isUniverseTet(int aTet) {
+        final int tBase = aTet<<2;
+        return isUniverseVertex(mTetVertex[tBase]) || isUniverseVertex(mTetVertex[tBase+1]) || isUniverseVertex(mTetVertex[tBase+2]) || isUniverseVertex(mTetVertex[tBase+3]);
+    }
+    
     
+    /** 节点存储的相关操作 */
+    private void ensureVertexCapacity_(int aSize) {
+        if (aSize <= mVertexAdj.length) return;
+        int tCapacity = Math.max(aSize, mVertexAdj.length + (mVertexAdj.length>>1));
+        mVertexXYZ = Arrays.copyOf(mVertexXYZ, tCapacity*3);
+        mVertexAdj = Arrays.copyOf(mVertexAdj, tCapacity);
+        mVertexStar = Arrays.copyOf(mVertexStar, tCapacity);
+        mVertexView = Arrays.copyOf(mVertexView, tCapacity);
+    }
+    private int newVertex_(double aX, double aY, double aZ) {
+        int rVertex = mVertexNum;
+        ensureVertexCapacity_(rVertex+1);
+        final int tIdx = rVertex*3;
+        mVertexXYZ[tIdx  ] = aX;
+        mVertexXYZ[tIdx+1] = aY;
+        mVertexXYZ[tIdx+2] = aZ;
+        mVertexAdj[rVertex] = NULL_ID;
+        ++mVertexNum;
+        return rVertex;
+    }
+    double vertexDistance(int aA, int aB) {
+        final int tA = aA*3, tB = aB*3;
+        double tX = mVertexXYZ[tA  ] - mVertexXYZ[tB  ];
+        double tY = mVertexXYZ[tA+1] - mVertexXYZ[tB+1];
+        double tZ = mVertexXYZ[tA+2] - mVertexXYZ[tB+2];
+        return Math.sqrt(tX*tX + tY*tY + tZ*tZ);
+    }
+    void freshenAdjacent(int aVertex, int aTet) {if (!tetValid(mVertexAdj[aVertex])) mVertexAdj[aVertex] = aTet;}
     
     
+    /** 四面体存储的相关操作 */
+    private void ensureTetCapacity_(int aSize) {
+        final int oCapacity = mTetGen.length;
+        if (aSize <= oCapacity) return;
+        int tCapacity = Math.max(aSize, oCapacity + (oCapacity>>1));
+        mTetVertex = Arrays.copyOf(mTetVertex, tCapacity*4);
+        mTetNeighbor = Arrays.copyOf(mTetNeighbor, tCapacity*4);
+        if (mTetCenter != null) {
+            mTetCenter = Arrays.copyOf(mTetCenter, tCapacity*4);
+            Arrays.fill(mTetCenter, oCapacity*4, tCapacity*4, Double.NaN);
+        }
+        mTetGen = Arrays.copyOf(mTetGen, tCapacity);
+        mLiveTet = Arrays.copyOf(mLiveTet, tCapacity);
+        mLivePos = Arrays.copyOf(mLivePos, tCapacity);
+    }
+    /** 通过四个点来构造一个四面体，返回其 id，并且会设置四个点的近邻四面体 */
+    private int newTet_(int aA, int aB, int aC, int aD) {
+        int rTet;
+        if (mTetFreeNum > 0) {
+            rTet = mTetFree[--mTetFreeNum];
+        } else {
+            rTet = mTetSlotNum;
+            ensureTetCapacity_(rTet+1);
+            ++mTetSlotNum;
+        }
+        touchTet_(rTet, false);
+        final int tBase = rTet<<2;
+        mTetVertex[tBase+PosTet.A] = aA;
+        mTetVertex[tBase+PosTet.B] = aB;
+        mTetVertex[tBase+PosTet.C] = aC;
+        mTetVertex[tBase+PosTet.D] = aD;
+        mTetNeighbor[tBase+PosTet.A] = NULL_ID;
+        mTetNeighbor[tBase+PosTet.B] = NULL_ID;
+        mTetNeighbor[tBase+PosTet.C] = NULL_ID;
+        mTetNeighbor[tBase+PosTet.D] = NULL_ID;
+        dropCenter_(rTet);
+        if (mPeriodic != null) mPeriodic.markTet(rTet);
+        mVertexAdj[aA] = rTet; ++mVertexStar[aA];
+        mVertexAdj[aB] = rTet; ++mVertexStar[aB];
+        mVertexAdj[aC] = rTet; ++mVertexStar[aC];
+        mVertexAdj[aD] = rTet; ++mVertexStar[aD];
+        mLiveTet[mTetNum] = rTet;
+        mLivePos[rTet] = mTetNum;
+        ++mTetNum;
+        return rTet;
+    }
     /**
-     * 此 builder 的构造方法，插入一个 xyz 点，
-     * 按照几何的顺序来进行插入可以更快的找到对应的四面体；
-     * 为了避免位置被外部意外修改，需要统一进行一次值拷贝
+     * 移除四面体，会清空其近邻并从 mLiveTet 中移除，顶点信息会保留直到此位置被重复使用；
+     * 同时增加此位置的代数，从而让外部持有的 {@link ITetrahedron} 视图失效
      */
-    public VoronoiBuilder insert(IXYZ aXYZ) {return insert_(new XYZ(aXYZ));}
-    public VoronoiBuilder insert(double aX, double aY, double aZ) {return insert_(new XYZ(aX, aY, aZ));}
-    
-    private VoronoiBuilder insert_(XYZ aXYZ) {
-        mCheck = mRNG.nextInt();
-        // 先使用这个寻路算法找到包围输入位置的四面体
-        mLast = locate_(aXYZ, mLast);
-        // 指定此 XYZ 对应的 adj，并且创建节点
-        Vertex tVertex = new Vertex(aXYZ, mLast);
-        // 然后将其分成四份，并存储需要考虑翻转的面
-        Deque<OrientedFace> tEars = new ArrayDeque<>();
-        mLast = mLast.flip1to4(tVertex, tEars);
-        // 考虑所有翻转的情况
-        while (!tEars.isEmpty()) {
-            Tetrahedron tLast = tEars.removeLast().tryFlip(tEars);
-            if (tLast != null) mLast = tLast;
-        }
-        // 存储此节点
-        mAllVertex.add(tVertex);
-        // 返回自身方便链式调用
-        return this;
+    private void deleteTet_(int aTet) {
+        touchTet_(aTet, true);
+        final int tBase = aTet<<2;
+        touchStar_(aTet);
+        mTetNeighbor[tBase+PosTet.A] = NULL_ID;
+        mTetNeighbor[tBase+PosTet.B] = NULL_ID;
+        mTetNeighbor[tBase+PosTet.C] = NULL_ID;
+        mTetNeighbor[tBase+PosTet.D] = NULL_ID;
+        dropCenter_(aTet);
+        ++mTetGen[aTet];
+        // 将最后一个合法四面体移动到被删除的位置
+        final int tPos = mLivePos[aTet];
+        final int tLast = mLiveTet[--mTetNum];
+        mLiveTet[tPos] = tLast;
+        mLivePos[tLast] = tPos;
+        mLivePos[aTet] = -1;
+        if (mTetFreeNum == mTetFree.length) mTetFree = Arrays.copyOf(mTetFree, mTetFree.length + (mTetFree.length>>1));
+        mTetFree[mTetFreeNum++] = aTet;
+    }
+    /** 四面体的顶点改变时，其四个顶点的星形都发生了改变 */
+    private void touchStar_(int aTet) {
+        final int tBase = aTet<<2;
+        ++mVertexStar[mTetVertex[tBase  ]];
+        ++mVertexStar[mTetVertex[tBase+1]];
+        ++mVertexStar[mTetVertex[tBase+2]];
+        ++mVertexStar[mTetVertex[tBase+3]];
+    }
+    /** 移动节点期间记录四面体位置修改前的内容，见 {@link MoveJournal} */
+    private void touchTet_(int aTet, boolean aLive) {if (mJournal!=null && mJournal.mRecord) mJournal.touch(aTet, aLive);}
+    /** 直接检测 mLivePos 来判断此四面体是否已经被删除 */
+    boolean tetValid(int aTet) {return aTet>=0 && aTet<mTetSlotNum && mLivePos[aTet]>=0;}
+    /** 检测此四面体是否依旧合法，并且没有被删除后重复使用 */
+    boolean tetValid(int aTet, int aGen) {return tetValid(aTet) && mTetGen[aTet]==aGen;}
+    /** 是否含有输入的节点 */
+    boolean tetContainsVertex(int aTet, int aVertex) {
+        final int tBase = aTet<<2;
+        return mTetVertex[tBase]==aVertex || mTetVertex[tBase+1]==aVertex || mTetVertex[tBase+2]==aVertex || mTetVertex[tBase+3]==aVertex;
+    }
+    /** 获取对应面对应的节点 */
+    int tetVertex(int aTet, byte aFace) {return mTetVertex[(aTet<<2)+aFace];}
+    /** 获取对应面的近邻四面体 */
+    int tetNeighbor(int aTet, byte aFace) {return mTetNeighbor[(aTet<<2)+aFace];}
+    int tetNeighborOfVertex(int aTet, int aVertex) {
+        byte tFace = tetOrdinalOfVertex(aTet, aVertex);
+        if (tFace == PosTet.NULL) throw new RuntimeException();
+        return tetNeighbor(aTet, tFace);
+    }
+    /** 设置对应面的近邻四面体 */
+    void setTetNeighbor(int aTet, byte aFace, int aNeighbor) {touchTet_(aTet, true); mTetNeighbor[(aTet<<2)+aFace] = aNeighbor;}
+    /** 获取指定近邻对应的方向 */
+    byte tetOrdinalOfNeighbor(int aTet, int aNeighbor) {
+        if (aNeighbor == NULL_ID) return PosTet.NULL;
+        final int tBase = aTet<<2;
+        if (mTetNeighbor[tBase+PosTet.A] == aNeighbor) return PosTet.A;
+        if (mTetNeighbor[tBase+PosTet.B] == aNeighbor) return PosTet.B;
+        if (mTetNeighbor[tBase+PosTet.C] == aNeighbor) return PosTet.C;
+        if (mTetNeighbor[tBase+PosTet.D] == aNeighbor) return PosTet.D;
+        return PosTet.NULL;
+    }
+    /** 获取指定节点对应的方向 */
+    byte tetOrdinalOfVertex(int aTet, int aVertex) {
+        if (aVertex == NULL_ID) return PosTet.NULL;
+        final int tBase = aTet<<2;
+        if (mTetVertex[tBase+PosTet.A] == aVertex) return PosTet.A;
+        if (mTetVertex[tBase+PosTet.B] == aVertex) return PosTet.B;
+        if (mTetVertex[tBase+PosTet.C] == aVertex) return PosTet.C;
+        if (mTetVertex[tBase+PosTet.D] == aVertex) return PosTet.D;
+        return PosTet.NULL;
     }
     
-    /** 从起始四面体开始，定位到能够包含 aXYZ 的四面体 */
-    private Tetrahedron locate_(XYZ aXYZ, Tetrahedron aStart) {
-        byte nFace = PosTet.NULL;
-        for (byte tFace : PosTet.FACES) {
-            if (aStart.orient(aXYZ, tFace) < 0) {nFace = tFace; break;}
+    /**
+     * 获取给定两个节点组成的棱两侧的近邻四面体，并返回和指定四面体不同的那一个，
+     * 用于沿着棱绕圈
+     * @author CHanzy
+     * @param aVertex1 棱上第一个节点
+     * @param aVertex2 棱上第二个节点
+     * @param aTetFrom 绕行方向来的四面体，输入 {@link #NULL_ID} 表明可以返回任意方向的四面体
+     * @return 下一个方向的四面体，{@link #NULL_ID} 表明没有这个四面体
+     */
+    int tetNeighborAroundEdge(int aTet, int aVertex1, int aVertex2, int aTetFrom) {
+        final int tBase = aTet<<2;
+        final int tTetA = mTetNeighbor[tBase+PosTet.A], tTetB = mTetNeighbor[tBase+PosTet.B], tTetC = mTetNeighbor[tBase+PosTet.C], tTetD = mTetNeighbor[tBase+PosTet.D];
+        switch (tetOrdinalOfVertex(aTet, aVertex1)) {
+        case PosTet.A: {
+            switch(tetOrdinalOfVertex(aTet, aVertex2)) {
+            case PosTet.B: {return tTetC==aTetFrom ? tTetD : tTetC;}
+            case PosTet.C: {return tTetB==aTetFrom ? tTetD : tTetB;}
+            case PosTet.D: {return tTetB==aTetFrom ? tTetC : tTetB;}
+            default: throw new RuntimeException();
+            }
         }
-        Tetrahedron tCurrent = aStart;
-        while (true) {
-            // 如果没有下一个界面则表明 aXYZ 就在 tCurrent 四面体内部，终止
-            if (nFace == PosTet.NULL) {return tCurrent;}
-            // 获取当前四面体对应面的四面体
-            Tetrahedron tNext = tCurrent.getNeighbor(nFace);
-            assert tNext != null;
-            // 下一个界面待定
-            nFace = PosTet.NULL;
-            // 按照随机的顺序检查 tNext 四面体的三个面，确定下一个面
-            for (byte tFace : PosTet.ORDER[tNext.ordinalOf(tCurrent)][mRNG.nextInt(6)]) {
-                if (tNext.orient(aXYZ, tFace) < 0) {
-                    // 此界面方向点在外侧，选取此方向继续迭代
-                    nFace = tFace;
-                    break;
-                }
+        case PosTet.B: {
+            switch(tetOrdinalOfVertex(aTet, aVertex2)) {
+            case PosTet.A: {return tTetC==aTetFrom ? tTetD : tTetC;}
+            case PosTet.C: {return tTetA==aTetFrom ? tTetD : tTetA;}
+            case PosTet.D: {return tTetA==aTetFrom ? tTetC : tTetA;}
+            default: throw new RuntimeException();
+            }
+        }
+        case PosTet.C: {
+            switch(tetOrdinalOfVertex(aTet, aVertex2)) {
+            case PosTet.B: {return tTetA==aTetFrom ? tTetD : tTetA;}
+            case PosTet.A: {return tTetB==aTetFrom ? tTetD : tTetB;}
+            case PosTet.D: {return tTetB==aTetFrom ? tTetA : tTetB;}
+            default: throw new RuntimeException();
+            }
+        }
+        case PosTet.D: {
+            switch(tetOrdinalOfVertex(aTet, aVertex2)) {
+            case PosTet.B: {return tTetC==aTetFrom ? tTetA : tTetC;}
+            case PosTet.C: {return tTetB==aTetFrom ? tTetA : tTetB;}
+            case PosTet.A: {return tTetB==aTetFrom ? tTetC : tTetB;}
+            default: throw new RuntimeException();
             }
-            // 更新当前考虑的四面体
-            tCurrent = tNext;
-            // 所有方向都在内部，表明 aXYZ 就在 tCurrent 四面体内部，此时 nFace == PosTet.NULL
+        }
+        default: throw new RuntimeException();
         }
     }
     
-    /** 用于外部访问的包含 voronoi 参数信息的节点，用于实时进行计算分析，减少内存占用 */
-    public interface IVertex extends IXYZ {
-        int coordination();
-        double atomicVolume();
-        double cavityRadius();
-        int[] index();
-        /** 其他可能有用信息 */
-        double x();
-        double y();
-        double z();
-        @Unmodifiable Collection<IVertex> neighborVertex();
-        @Unmodifiable Collection<ITetrahedron> neighborTetrahedron();
+    int tetOrient(int aTet, double aX, double aY, double aZ, byte aFace) {
+        final int tBase = aTet<<2;
+        final int tA = mTetVertex[tBase+PosTet.A], tB = mTetVertex[tBase+PosTet.B], tC = mTetVertex[tBase+PosTet.C], tD = mTetVertex[tBase+PosTet.D];
+        switch (aFace) {
+        case PosTet.A: {return orient(aX, aY, aZ, tC, tB, tD);}
+        case PosTet.B: {return orient(aX, aY, aZ, tD, tA, tC);}
+        case PosTet.C: {return orient(aX, aY, aZ, tA, tD, tB);}
+        case PosTet.D: {return orient(aX, aY, aZ, tB, tC, tA);}
+        default: throw new RuntimeException();
+        }
     }
-    /** 用于外部访问的包含 voronoi 参数信息的四面体，用于实时进行计算分析，减少内存占用 */
-    public interface ITetrahedron {
-        IXYZ centerSphere();
-        @Unmodifiable List<IVertex> neighborVertex();
-        @Unmodifiable List<ITetrahedron> neighborTetrahedron();
-        boolean valid();
+    int tetInSphere(int aTet, int aVertex) {
+        final int tBase = aTet<<2;
+        return inSphere(aVertex, mTetVertex[tBase+PosTet.A], mTetVertex[tBase+PosTet.B], mTetVertex[tBase+PosTet.C], mTetVertex[tBase+PosTet.D]);
+    }
+    int tetInSphere(int aTet, double aX, double aY, double aZ) {
+        final int tBase = aTet<<2;
+        return inSphere(aX, aY, aZ, mTetVertex[tBase+PosTet.A], mTetVertex[tBase+PosTet.B], mTetVertex[tBase+PosTet.C], mTetVertex[tBase+PosTet.D]);
     }
     
     /**
-     * 获取位置节点，支持随机访问，节点按照添加顺序排列
-     * @author CHanzy
-     * @param aIdx 需要获取的节点索引
-     * @return 包含 voronoi 多面体参数的节点
+     * 将需要考虑翻转的界面打包成 {@code tet*4+face} 存入 mEarBuffer，没有近邻的界面直接忽略；
+     * 由于 mTetVertex 的长度限制四面体数目本身就小于 2^29，因此这里不会溢出
      */
-    public IVertex getVertex(int aIdx) {return mAllVertex.get(aIdx);}
-    public int sizeVertex() {return mAllVertex.size();}
-    public @Unmodifiable List<IVertex> allVertex() {return AbstractCollections.map(mAllVertex, v->v);}
+    private void pushEar_(int aTet, byte aFace) {
+        if (tetNeighbor(aTet, aFace) == NULL_ID) return;
+        if (mEarNum == mEarBuffer.length) mEarBuffer = Arrays.copyOf(mEarBuffer, mEarBuffer.length*2);
+        mEarBuffer[mEarNum++] = (aTet<<2) | aFace;
+    }
+    
     /**
-     * 获取一个四面体，不支持随机访问，会获取最近创建的四面体
-     * @author CHanzy
-     * @return 包含 voronoi 多面体参数的四面体
+     * 通过在中间插入一个节点点的方式，将一个四面体拆分成四个，
+     * 会自动修改所有的 adj 信息使其合法化
+     * @param aTet 需要拆分的四面体
+     * @param aVertex 插入的节点
+     * @return 新得到的四个四面体的其中一个，此操作需要优化的四个面会直接添加到 mEarBuffer
      */
-    public ITetrahedron getTetrahedron() {return mLast;}
-    public @Unmodifiable Collection<ITetrahedron> allTetrahedron() {return AbstractCollections.map(mAllTet, v->v);}
-    @VisibleForTesting public ITetrahedron getTet() {return getTetrahedron();}
-    @VisibleForTesting public @Unmodifiable Collection<ITetrahedron> allTet() {return allTetrahedron();}
-    
-    
-    /** 带有统计信息的完整四面体，会自动更新统计信息 */
-    class Tetrahedron extends AbstractTetrahedron {
-        Tetrahedron(Vertex aA, Vertex aB, Vertex aC, Vertex aD) {
-            super(aA, aB, aC, aD);
-            mA.mAdj = this;
-            mB.mAdj = this;
-            mC.mAdj = this;
-            mD.mAdj = this;
-            mAllTet.add(this);
-        }
+    private int flip1to4_(int aTet, int aVertex) {
+        final int tBase = aTet<<2;
+        final int tA = mTetVertex[tBase+PosTet.A], tB = mTetVertex[tBase+PosTet.B], tC = mTetVertex[tBase+PosTet.C], tD = mTetVertex[tBase+PosTet.D];
+        // 这个顺序应该是有讲究的，不过我不确定具体要求
+        int rTet0 = newTet_(tA, tB, tC, aVertex);
+        int rTet1 = newTet_(tA, tD, tB, aVertex);
+        int rTet2 = newTet_(tA, tC, tD, aVertex);
+        int rTet3 = newTet_(tB, tD, tC, aVertex);
         
-        /** 此值用于验证是否需要更新统计信息 */
-        private int oCheck = -1;
-        /** 近邻信息 */
-        final List<Vertex> mNeighborVertex = new ArrayList<>(4);
-        final List<Tetrahedron> mNeighborTet = new ArrayList<>(4); // 这里会保留边界四面体保证近邻都会获取到
-        private void updateStat_() {
-            if (oCheck == mCheck) return;
-            oCheck = mCheck;
-            // 清空旧的数据
-            mNeighborVertex.clear();
-            mNeighborTet.clear();
-            // 统计近邻的节点和四面体，只需要排除边界结构即可
-            if (!isUniverse(mA)) mNeighborVertex.add(mA);
-            if (!isUniverse(mB)) mNeighborVertex.add(mB);
-            if (!isUniverse(mC)) mNeighborVertex.add(mC);
-            if (!isUniverse(mD)) mNeighborVertex.add(mD);
-            if (mTetA!=null) {mNeighborTet.add(mTetA);}
-            if (mTetB!=null) {mNeighborTet.add(mTetB);}
-            if (mTetC!=null) {mNeighborTet.add(mTetC);}
-            if (mTetD!=null) {mNeighborTet.add(mTetD);}
-        }
+        // 设置近邻
+        setTetNeighbor(rTet0, PosTet.A, rTet3);
+        setTetNeighbor(rTet0, PosTet.B, rTet2);
+        setTetNeighbor(rTet0, PosTet.C, rTet1);
         
-        private XYZ mCenterSphere = null;
-        /** 返回此四面体外接球的球心，这个值是恒定的，但是不需要总是计算 */
-        XYZ centerSphere_() {
-            if (mCenterSphere == null) {
-                if (!mNoWarning && isUniverse(this)) System.err.println("WARNING: This Tetrahedron is Universe, centerSphere may be wrong.");
-                mCenterSphere = MathEX.Graph.centerSphere(mA.mXYZ, mB.mXYZ, mC.mXYZ, mD.mXYZ);
-            }
-            return mCenterSphere;
-        }
-        public IXYZ centerSphere() {
-            final XYZ tCenterSphere = centerSphere_();
-            return tCenterSphere==null ? null : new AbstractXYZ() {
-                @Override public double x() {return tCenterSphere.mX;}
-                @Override public double y() {return tCenterSphere.mY;}
-                @Override public double z() {return tCenterSphere.mZ;}
-            };
-        }
-        /** voronoi 统计信息，现在只有需要时才会进行统计 */
-        @Override public @Unmodifiable List<IVertex> neighborVertex() {
-            updateStat_();
-            return AbstractCollections.map(mNeighborVertex, v->v);
-        }
-        @Override public @Unmodifiable List<ITetrahedron> neighborTetrahedron() {
-            updateStat_();
-            return AbstractCollections.map(mNeighborTet, t->t);
-        }
+        setTetNeighbor(rTet1, PosTet.A, rTet3);
+        setTetNeighbor(rTet1, PosTet.B, rTet0);
+        setTetNeighbor(rTet1, PosTet.C, rTet2);
+        
+        setTetNeighbor(rTet2, PosTet.A, rTet3);
+        setTetNeighbor(rTet2, PosTet.B, rTet1);
+        setTetNeighbor(rTet2, PosTet.C, rTet0);
+        
+        setTetNeighbor(rTet3, PosTet.A, rTet2);
+        setTetNeighbor(rTet3, PosTet.B, rTet0);
+        setTetNeighbor(rTet3, PosTet.C, rTet1);
+        
+        // 将自身近邻对应的近邻合法化
+        patch_(aTet, PosTet.D, rTet0, PosTet.D);
+        patch_(aTet, PosTet.C, rTet1, PosTet.D);
+        patch_(aTet, PosTet.B, rTet2, PosTet.D);
+        patch_(aTet, PosTet.A, rTet3, PosTet.D);
+        
+        // 移除自身
+        deleteTet_(aTet);
+        
+        // 设置需要考虑翻转的界面
+        pushEar_(rTet0, PosTet.D);
+        pushEar_(rTet1, PosTet.D);
+        pushEar_(rTet2, PosTet.D);
+        pushEar_(rTet3, PosTet.D);
+        
+        // 返回任意的四面体，这里保持一致
+        return rTet1;
     }
     
-    /** 暂存节点信息类 */
-    static class VertexInfo {
-        int mTetNum;
-        final double mArea, mDis;
-        VertexInfo(int aTetNum, double aArea, double aDis) {mTetNum = aTetNum; mArea = aArea; mDis = aDis;}
+    private void patch_(int aTet, byte aOld, int aNewTet, byte aNew) {
+        int tNeighbor = tetNeighbor(aTet, aOld);
+        if (tNeighbor != NULL_ID) {
+            byte tFace = tetOrdinalOfNeighbor(tNeighbor, aTet);
+            if (tFace==PosTet.NULL || aNew==PosTet.NULL) throw new RuntimeException();
+            setTetNeighbor(tNeighbor, tFace, aNewTet);
+            setTetNeighbor(aNewTet, aNew, tNeighbor);
+        }
+    }
+    private void patchVertex_(int aTet, int aOld, int aNewTet, byte aNew) {
+        byte tOld = tetOrdinalOfVertex(aTet, aOld);
+        if (tOld == PosTet.NULL) throw new RuntimeException();
+        patch_(aTet, tOld, aNewTet, aNew);
     }
     
-    /** 带有统计信息的完整节点，会自动更新统计信息 */
-    class Vertex extends AbstractVertex {
-        Vertex(XYZ aXYZ, Tetrahedron aAdj) {super(aXYZ, aAdj);}
-        Vertex(double aX, double aY, double aZ) {super(new XYZ(aX, aY, aZ), null);}
+    private void removeAnyDegenerateTetrahedronPair_(int aTet) {
+        final int tBase = aTet<<2;
+        final int tTetA = mTetNeighbor[tBase+PosTet.A], tTetB = mTetNeighbor[tBase+PosTet.B], tTetC = mTetNeighbor[tBase+PosTet.C], tTetD = mTetNeighbor[tBase+PosTet.D];
+        if (tTetA != NULL_ID) {
+            if (tTetA == tTetB) {removeDegenerateTetrahedronPair_(aTet, PosTet.A, PosTet.B, PosTet.C, PosTet.D); return;}
+            if (tTetA == tTetC) {removeDegenerateTetrahedronPair_(aTet, PosTet.A, PosTet.C, PosTet.B, PosTet.D); return;}
+            if (tTetA == tTetD) {removeDegenerateTetrahedronPair_(aTet, PosTet.A, PosTet.D, PosTet.B, PosTet.C); return;}
+        }
+        if (tTetB != NULL_ID) {
+            if (tTetB == tTetC) {removeDegenerateTetrahedronPair_(aTet, PosTet.B, PosTet.C, PosTet.A, PosTet.D); return;}
+            if (tTetB == tTetD) {removeDegenerateTetrahedronPair_(aTet, PosTet.B, PosTet.D, PosTet.A, PosTet.C); return;}
+        }
+        if (tTetC != NULL_ID) {
+            if (tTetC == tTetD) {removeDegenerateTetrahedronPair_(aTet, PosTet.C, PosTet.D, PosTet.A, PosTet.B);}
+        }
+    }
+    private void removeDegenerateTetrahedronPair_(int aTet, byte ve1, byte ve2, byte vf1, byte vf2) {
+        int nE = tetNeighbor(aTet, ve1); assert nE != NULL_ID;
+        int nF1_that = tetNeighborOfVertex(nE, tetVertex(aTet, vf1));
+        int nF2_that = tetNeighborOfVertex(nE, tetVertex(aTet, vf2));
         
-        /** 此值用于验证是否需要更新统计信息 */
-        private int oCheck = -1;
-        /** 近邻信息 */
-        final Map<Vertex, @Nullable VertexInfo> mNeighborVertex = new LinkedHashMap<>(); // <节点，对应 voronoi 面的信息>
-        final Set<Tetrahedron> mNeighborTet = new LinkedHashSet<>(); // 这里会保留边界四面体保证近邻都会获取到
+        patch_(aTet, vf1, nF1_that, tetOrdinalOfNeighbor(nF1_that, nE));
+        patch_(aTet, vf2, nF2_that, tetOrdinalOfNeighbor(nF2_that, nE));
         
-        private void updateStat_() {
-            if (oCheck == mCheck) return;
-            oCheck = mCheck;
-            // 清空旧的数据
-            mNeighborVertex.clear();
-            mNeighborTet.clear();
-            double tSurfaceArea = 0.0;
-            // 缓存需要处理的四面体
-            Deque<Tetrahedron> tStack = new ArrayDeque<>();
-            tStack.addLast(mAdj);
-            while (!tStack.isEmpty()) {
-                // 获取一个近邻四面体，这样获取则为 DFS
-                Tetrahedron tTet = tStack.removeLast();
-                // 如果已经处理过则跳过
-                if (mNeighborTet.contains(tTet)) continue;
-                // 根据中心节点所在的位置来添加周围近邻以及节点
-                switch (tTet.ordinalOf(this)) {
-                case PosTet.A: {
-                    // 先添加另外三个节点
-                    if (!isUniverse(tTet.mB)) mNeighborVertex.put(tTet.mB, null);
-                    if (!isUniverse(tTet.mC)) mNeighborVertex.put(tTet.mC, null);
-                    if (!isUniverse(tTet.mD)) mNeighborVertex.put(tTet.mD, null);
-                    // 再添加三个近邻面的四面体到缓存等待下一步处理，需要判断是否处理过以及是否为 null；这里需要保留巨大西面体因为还保存着合法点
-                    if (tTet.mTetB!=null && !mNeighborTet.contains(tTet.mTetB)) tStack.addLast(tTet.mTetB);
-                    if (tTet.mTetC!=null && !mNeighborTet.contains(tTet.mTetC)) tStack.addLast(tTet.mTetC);
-                    if (tTet.mTetD!=null && !mNeighborTet.contains(tTet.mTetD)) tStack.addLast(tTet.mTetD);
-                    break;
-                }
-                case PosTet.B: {
-                    // 先添加另外三个节点
-                    if (!isUniverse(tTet.mA)) mNeighborVertex.put(tTet.mA, null);
-                    if (!isUniverse(tTet.mC)) mNeighborVertex.put(tTet.mC, null);
-                    if (!isUniverse(tTet.mD)) mNeighborVertex.put(tTet.mD, null);
-                    // 再添加三个近邻面的四面体到缓存等待下一步处理，需要判断是否处理过以及是否为 null；这里需要保留巨大西面体因为还保存着合法点
-                    if (tTet.mTetA!=null && !mNeighborTet.contains(tTet.mTetA)) tStack.addLast(tTet.mTetA);
-                    if (tTet.mTetC!=null && !mNeighborTet.contains(tTet.mTetC)) tStack.addLast(tTet.mTetC);
-                    if (tTet.mTetD!=null && !mNeighborTet.contains(tTet.mTetD)) tStack.addLast(tTet.mTetD);
-                    break;
-                }
-                case PosTet.C: {
-                    // 先添加另外三个节点
-                    if (!isUniverse(tTet.mB)) mNeighborVertex.put(tTet.mB, null);
-                    if (!isUniverse(tTet.mA)) mNeighborVertex.put(tTet.mA, null);
-                    if (!isUniverse(tTet.mD)) mNeighborVertex.put(tTet.mD, null);
-                    // 再添加三个近邻面的四面体到缓存等待下一步处理，需要判断是否处理过以及是否为 null；这里需要保留巨大西面体因为还保存着合法点
-                    if (tTet.mTetB!=null && !mNeighborTet.contains(tTet.mTetB)) tStack.addLast(tTet.mTetB);
-                    if (tTet.mTetA!=null && !mNeighborTet.contains(tTet.mTetA)) tStack.addLast(tTet.mTetA);
-                    if (tTet.mTetD!=null && !mNeighborTet.contains(tTet.mTetD)) tStack.addLast(tTet.mTetD);
-                    break;
-                }
-                case PosTet.D: {
-                    // 先添加另外三个节点
-                    if (!isUniverse(tTet.mB)) mNeighborVertex.put(tTet.mB, null);
-                    if (!isUniverse(tTet.mC)) mNeighborVertex.put(tTet.mC, null);
-                    if (!isUniverse(tTet.mA)) mNeighborVertex.put(tTet.mA, null);
-                    // 再添加三个近邻面的四面体到缓存等待下一步处理，需要判断是否处理过以及是否为 null；这里需要保留巨大西面体因为还保存着合法点
-                    if (tTet.mTetB!=null && !mNeighborTet.contains(tTet.mTetB)) tStack.addLast(tTet.mTetB);
-                    if (tTet.mTetC!=null && !mNeighborTet.contains(tTet.mTetC)) tStack.addLast(tTet.mTetC);
-                    if (tTet.mTetA!=null && !mNeighborTet.contains(tTet.mTetA)) tStack.addLast(tTet.mTetA);
+        int e1 = tetVertex(aTet, ve1);
+        int e2 = tetVertex(aTet, ve2);
+        int f1 = tetVertex(aTet, vf1);
+        int f2 = tetVertex(aTet, vf2);
+        
+        deleteTet_(aTet);
+        deleteTet_(nE);
+        
+        freshenAdjacent(e1, nF1_that);
+        freshenAdjacent(f2, nF1_that);
+        freshenAdjacent(e2, nF2_that);
+        freshenAdjacent(f1, nF2_that);
+    }
+    
+    
+    
+    /**
+     * 此 builder 的构造方法，插入一个 xyz 点，
+     * 按照几何的顺序来进行插入可以更快的找到对应的四面体；
+     * 坐标会直接拷贝到内部的数组中，因此不会被外部意外修改
+     */
+    public VoronoiBuilder insert(IXYZ aXYZ) {return insert_(aXYZ.x(), aXYZ.y(), aXYZ.z());}
+    public VoronoiBuilder insert(double aX, double aY, double aZ) {return insert_(aX, aY, aZ);}
+    /**
+     * 提供一个已经插入的近邻节点作为提示，从此节点的近邻四面体开始寻路而不是上一步的四面体，
+     * 例如轨迹处理中 cell list 里的近邻原子，这样插入的速度不再依赖全局的插入顺序
+     * @author CHanzy
+     * @param aHintIdx 提示节点的索引，和 {@link #getVertex(int)} 一致，负数表示没有提示
+     * @return 自身方便链式调用
+     */
+    public VoronoiBuilder insert(double aX, double aY, double aZ, int aHintIdx) {
+        dropJournal_();
+        unshare_();
+        final int tHint = hintVertex_(aHintIdx);
+        return insertVertex_(newRealVertex_(aX, aY, aZ), tHint);
+    }
+    public VoronoiBuilder insert(IXYZ aXYZ, int aHintIdx) {return insert(aXYZ.x(), aXYZ.y(), aXYZ.z(), aHintIdx);}
+    
+    /**
+     * 批量插入节点，会先按照 BRIO（biased randomized insertion order）将节点随机分成多轮，
+     * 每一轮内部再按照 Hilbert 曲线排序后插入，从而让 {@link #locate_} 的寻路距离保持很短，
+     * 插入速度不再依赖输入的顺序；
+     * 节点的索引依旧按照输入的顺序排列，即第 i 个输入的点对应 {@code getVertex(tSize + i)}，
+     * 其中 {@code tSize} 为调用此方法前的 {@link #sizeVertex()}
+     * @author CHanzy
+     * @param aXYZ 按照 {@code x0, y0, z0, x1, y1, z1, ...} 排列的坐标
+     * @return 自身方便链式调用
+     */
+    public VoronoiBuilder insertAll(double[] aXYZ) {
+        if (aXYZ.length%3 != 0) throw new IllegalArgumentException("Length of XYZ must be a multiple of 3: "+aXYZ.length);
+        dropJournal_();
+        unshare_();
+        if (mPeriodic != null) {dropImage_(); aXYZ = mPeriodic.wrapAll(aXYZ);}
+        return insertAll_(aXYZ);
+    }
+    private VoronoiBuilder insertAll_(double[] aXYZ) {
+        final int tNum = aXYZ.length/3;
+        if (tNum == 0) return this;
+        ensureCapacity(sizeVertex()+tNum);
+        // 先按照输入顺序创建所有节点，保证索引一致，之后再按照排序后的顺序插入
+        final int tStart = mVertexNum;
+        for (int i = 0, j = 0; i < tNum; ++i, j+=3) newVertex_(aXYZ[j], aXYZ[j+1], aXYZ[j+2]);
+        for (int tIdx : SpatialSort.brioOrder(aXYZ, tNum, mRNG)) insertVertex_(tStart+tIdx);
+        return this;
+    }
+    /**
+     * 带有提示节点的批量插入，由于已经有提示，这里不会重新排序而是按照输入的顺序依次插入；
+     * 提示节点可以是此次输入中更早插入的节点，如果提示的节点还没有插入则会退回到默认的寻路起点
+     * @author CHanzy
+     * @param aXYZ 按照 {@code x0, y0, z0, x1, y1, z1, ...} 排列的坐标
+     * @param aHintIdx 每个点对应的提示节点的索引，和 {@link #getVertex(int)} 一致，负数表示没有提示
+     * @return 自身方便链式调用
+     */
+    public VoronoiBuilder insertAll(double[] aXYZ, int[] aHintIdx) {
+        if (aXYZ.length%3 != 0) throw new IllegalArgumentException("Length of XYZ must be a multiple of 3: "+aXYZ.length);
+        final int tNum = aXYZ.length/3;
+        if (aHintIdx.length != tNum) throw new IllegalArgumentException("Length of hints mismatch: "+aHintIdx.length+" vs "+tNum);
+        if (tNum == 0) return this;
+        dropJournal_();
+        unshare_();
+        if (mPeriodic != null) {dropImage_(); aXYZ = mPeriodic.wrapAll(aXYZ);}
+        ensureCapacity(sizeVertex()+tNum);
+        final int tStart = mVertexNum;
+        for (int i = 0, j = 0; i < tNum; ++i, j+=3) newVertex_(aXYZ[j], aXYZ[j+1], aXYZ[j+2]);
+        for (int i = 0; i < tNum; ++i) insertVertex_(tStart+i, hintVertex_(aHintIdx[i]));
+        return this;
+    }
+    public VoronoiBuilder insertAll(List<? extends IXYZ> aXYZList) {
+        final int tNum = aXYZList.size();
+        double[] tXYZ = new double[tNum*3];
+        int j = 0;
+        for (IXYZ tXYZi : aXYZList) {
+            tXYZ[j  ] = tXYZi.x();
+            tXYZ[j+1] = tXYZi.y();
+            tXYZ[j+2] = tXYZi.z();
+            j += 3;
+        }
+        return insertAll(tXYZ);
+    }
+    /**
+     * 多线程并发的批量插入，所有线程共享此三角剖分，通过对四面体加锁来避免冲突（见 {@link ConcurrentInsert}）；
+     * 和 {@link ParallelVoronoiBuilder} 不同，这里不需要 ghost 节点，
+     * 因此对于真空中的纳米颗粒这种分布很不均匀的体系也可以保持负载均衡；
+     * 插入顺序同样使用 BRIO，最前面的一部分节点会串行插入；
+     * 除了退化的情况（多点共球），得到的三角剖分和串行插入一致
+     * @author CHanzy
+     * @param aXYZ 按照 {@code x0, y0, z0, x1, y1, z1, ...} 排列的坐标
+     * @param aThreadNum 使用的线程数目
+     * @return 自身方便链式调用
+     */
+    public VoronoiBuilder insertAllConcurrent(double[] aXYZ, int aThreadNum) {
+        if (aXYZ.length%3 != 0) throw new IllegalArgumentException("Length of XYZ must be a multiple of 3: "+aXYZ.length);
+        if (aThreadNum < 1) throw new IllegalArgumentException("Thread number must be positive: "+aThreadNum);
+        final int tNum = aXYZ.length/3;
+        if (tNum == 0) return this;
+        dropJournal_();
+        unshare_();
+        if (mPeriodic != null) {dropImage_(); aXYZ = mPeriodic.wrapAll(aXYZ);}
+        ensureCapacity(sizeVertex()+tNum);
+        final int tStart = mVertexNum;
+        for (int i = 0, j = 0; i < tNum; ++i, j+=3) newVertex_(aXYZ[j], aXYZ[j+1], aXYZ[j+2]);
+        final int[] tOrder = SpatialSort.brioOrder(aXYZ, tNum, mRNG);
+        for (int i = 0; i < tNum; ++i) tOrder[i] += tStart;
+        final int tSerialNum = aThreadNum==1 ? tNum : Math.min(tNum, Math.max(ConcurrentInsert.MIN_SERIAL_NUM, aThreadNum*ConcurrentInsert.VERTEX_CHUNK));
+        for (int i = 0; i < tSerialNum; ++i) insertVertex_(tOrder[i]);
+        if (tSerialNum == tNum) return this;
+        // 并发阶段不能扩容，这里多留一些给每个线程独立持有的位置
+        ensureTetCapacity_(mTetSlotNum + (int)Math.ceil((tNum-tSerialNum)*TET_PER_VERTEX) + aThreadNum*ConcurrentInsert.TET_CHUNK*2);
+        final int[] tLeft = new ConcurrentInsert(tOrder, tSerialNum, tNum).run(aThreadNum);
+        rebuildLive_();
+        mLast = mVertexAdj[tOrder[tNum-1]];
+        if (!tetValid(mLast)) mLast = mLiveTet[0];
+        if (mLocateGrid != null) mLocateGrid.addAll(tNum-tSerialNum-tLeft.length);
+        mCheck = mRNG.nextInt();
+        // 位置不够时剩下的节点直接串行插入
+        for (int tVertex : tLeft) insertVertex_(tVertex);
+        return this;
+    }
+    public VoronoiBuilder insertAllConcurrent(List<? extends IXYZ> aXYZList, int aThreadNum) {
+        final int tNum = aXYZList.size();
+        double[] tXYZ = new double[tNum*3];
+        int j = 0;
+        for (IXYZ tXYZi : aXYZList) {
+            tXYZ[j  ] = tXYZi.x();
+            tXYZ[j+1] = tXYZi.y();
+            tXYZ[j+2] = tXYZi.z();
+            j += 3;
+        }
+        return insertAllConcurrent(tXYZ, aThreadNum);
+    }
+    /** 并发插入之后根据 mLivePos 是否为负重新构建 mLiveTet 以及 mTetFree */
+    private void rebuildLive_() {
+        mTetNum = 0;
+        mTetFreeNum = 0;
+        for (int tTet = 0; tTet < mTetSlotNum; ++tTet) {
+            if (mLivePos[tTet] >= 0) {
+                mLiveTet[mTetNum] = tTet;
+                mLivePos[tTet] = mTetNum;
+                ++mTetNum;
+            } else {
+                if (mTetFreeNum == mTetFree.length) mTetFree = Arrays.copyOf(mTetFree, mTetFree.length + (mTetFree.length>>1));
+                mTetFree[mTetFreeNum++] = tTet;
+            }
+        }
+    }
+    
+    private VoronoiBuilder insert_(double aX, double aY, double aZ) {
+        dropJournal_();
+        unshare_();
+        // 创建节点，其 adj 会在拆分四面体时设置
+        return insertVertex_(newRealVertex_(aX, aY, aZ));
+    }
+    /** 创建真实的节点，周期模式下会折叠到模拟盒内并排在镜像节点之前 */
+    private int newRealVertex_(double aX, double aY, double aZ) {
+        return mPeriodic==null ? newVertex_(aX, aY, aZ) : mPeriodic.newReal(aX, aY, aZ);
+    }
+    /**
+     * 周期模式下批量插入新的节点前需要移除所有镜像节点，从而保证真实节点的索引连续；
+     * 这里直接重新构建三角剖分，并保留真实节点的视图
+     */
+    private void dropImage_() {
+        if (mPeriodic == null) return;
+        mPeriodic.mReady = false;
+        mPeriodic.mIndexed = false;
+        if (mPeriodic.mImageNum == 0) return;
+        rebuildReal_(sizeVertex());
+    }
+    /** 只使用前 aRealNum 个真实节点重新构建三角剖分，并保留这些节点的视图 */
+    private void rebuildReal_(int aRealNum) {
+        final double[] tXYZ = Arrays.copyOfRange(mVertexXYZ, INIT_VERTEX_NUM*3, (INIT_VERTEX_NUM+aRealNum)*3);
+        final Vertex[] tView = Arrays.copyOfRange(mVertexView, INIT_VERTEX_NUM, INIT_VERTEX_NUM+aRealNum);
+        clear();
+        insertAll_(tXYZ);
+        System.arraycopy(tView, 0, mVertexView, INIT_VERTEX_NUM, aRealNum);
+    }
+    
+    /**
+     * 删除节点，只会对其近邻四面体组成的空腔重新进行三角剖分（见 {@link LocalRemove}），
+     * 因此耗时只和近邻四面体的数目有关，而和体系大小无关；
+     * 为了保持索引连续，最后一个节点会移动到被删除的位置，即删除后原本的 {@code getVertex(sizeVertex()-1)} 变为 {@code getVertex(aIdx)}，
+     * 之前获取的这两个节点的 {@link IVertex} 都会失效；
+     * 多点共球的退化情况下局部重新三角剖分可能失败，此时会直接重新构建整个三角剖分
+     * @author CHanzy
+     * @param aIdx 需要删除的节点索引，和 {@link #getVertex(int)} 一致
+     * @return 自身方便链式调用
+     */
+    public VoronoiBuilder remove(int aIdx) {
+        if (aIdx<0 || aIdx>=sizeVertex()) throw new IndexOutOfBoundsException("Index: "+aIdx+", Size: "+sizeVertex());
+        dropJournal_();
+        unshare_();
+        final int tVertex = aIdx+INIT_VERTEX_NUM;
+        final int tLast = INIT_VERTEX_NUM+sizeVertex()-1;
+        if (mLocalRemove == null) mLocalRemove = new LocalRemove();
+        // 周期模式下需要先删除其所有镜像
+        boolean tLocal = mPeriodic==null || mPeriodic.removeImageOf(tVertex);
+        tLocal = tLocal && removeVertex_(tVertex);
+        if (!tLocal) {
+            if (!mNoWarning) System.err.println("WARNING: Local removal failed for degenerate vertex, rebuilding the triangulation.");
+            System.arraycopy(mVertexXYZ, tLast*3, mVertexXYZ, tVertex*3, 3);
+            mVertexView[tVertex] = null;
+            mVertexView[tLast] = null;
+            rebuildReal_(tLast-INIT_VERTEX_NUM);
+            return this;
+        }
+        moveVertex_(tLast, tVertex);
+        if (mPeriodic != null) mPeriodic.moveReal(tLast, tVertex);
+        --mVertexNum;
+        return this;
+    }
+    /** 从三角剖分中局部删除节点，退化情况下失败时返回 false，此时三角剖分不会有任何修改 */
+    private boolean removeVertex_(int aVertex) {
+        if (!mLocalRemove.remove(aVertex)) return false;
+        if (mLocateGrid != null) mLocateGrid.remove(aVertex);
+        mVertexView[aVertex] = null;
+        return true;
+    }
+    /** 将节点 aFrom 的数据以及在三角剖分中的 id 移动到空闲的 aTo，两者之前获取的视图都会失效 */
+    private void moveVertex_(int aFrom, int aTo) {
+        mVertexView[aFrom] = null;
+        mVertexView[aTo] = null;
+        if (aFrom == aTo) return;
+        mLocalRemove.relabel(aFrom, aTo);
+        System.arraycopy(mVertexXYZ, aFrom*3, mVertexXYZ, aTo*3, 3);
+        mVertexAdj[aTo] = mVertexAdj[aFrom];
+        mVertexAdj[aFrom] = NULL_ID;
+        if (mLocateGrid != null) mLocateGrid.move(aFrom, aTo);
+    }
+    
+    /**
+     * 移动节点到新的位置，用于蒙特卡洛的试探移动：局部删除此节点（见 {@link LocalRemove}）后再从附近插入并通过翻转合法化，
+     * 因此耗时只和新旧位置附近的四面体数目有关，节点的索引以及 {@link IVertex} 保持不变；
+     * 期间的修改会记录到撤销日志中（见 {@link MoveJournal}），拒绝此次移动时可以通过 {@link #rollback()} 恢复原本的三角剖分；
+     * 周期模式下会同时移动其所有镜像，新的位置会折叠到模拟盒内；
+     * 多点共球的退化情况下局部删除可能失败，此时会直接重新构建整个三角剖分
+     * @author CHanzy
+     * @param aIdx 需要移动的节点索引，和 {@link #getVertex(int)} 一致
+     * @return 自身方便链式调用
+     */
+    public VoronoiBuilder move(int aIdx, double aX, double aY, double aZ) {
+        if (aIdx<0 || aIdx>=sizeVertex()) throw new IndexOutOfBoundsException("Index: "+aIdx+", Size: "+sizeVertex());
+        unshare_();
+        final int tVertex = aIdx+INIT_VERTEX_NUM;
+        if (mLocalRemove == null) mLocalRemove = new LocalRemove();
+        if (mJournal == null) mJournal = new MoveJournal();
+        final MoveJournal tJournal = mJournal;
+        tJournal.begin(tVertex);
+        if (mPeriodic == null) tJournal.addMoved(tVertex, aX, aY, aZ);
+        else mPeriodic.planMove(tVertex, aX, aY, aZ, tJournal);
+        if (relocate_(tJournal)) return this;
+        // 局部删除失败时先恢复再重新构建，mNewXYZ 的最前面为真实节点折叠后的坐标
+        tJournal.undo();
+        if (!mNoWarning) System.err.println("WARNING: Local move failed for degenerate vertex, rebuilding the triangulation.");
+        System.arraycopy(tJournal.mNewXYZ, 0, mVertexXYZ, tVertex*3, 3);
+        rebuildReal_(sizeVertex());
+        tJournal.mVertex = tVertex;
+        tJournal.mRebuilt = true;
+        return this;
+    }
+    public VoronoiBuilder move(int aIdx, IXYZ aXYZ) {return move(aIdx, aXYZ.x(), aXYZ.y(), aXYZ.z());}
+    /**
+     * 撤销上一次 {@link #move} 的修改，恢复原本的三角剖分以及节点坐标，耗时和移动时的翻转数目相当；
+     * 只能撤销最近的一次移动，并且之后不能有其他修改三角剖分的操作（插入，删除等），之后获取的 {@link ITetrahedron} 会失效
+     * @author CHanzy
+     * @return 自身方便链式调用
+     */
+    public VoronoiBuilder rollback() {
+        if (mJournal==null || mJournal.mVertex==NULL_ID) throw new IllegalStateException("No move to rollback");
+        unshare_();
+        final MoveJournal tJournal = mJournal;
+        if (tJournal.mRebuilt) {
+            System.arraycopy(tJournal.mOldXYZ, 0, mVertexXYZ, tJournal.mVertex*3, 3);
+            rebuildReal_(sizeVertex());
+        } else {
+            tJournal.undo();
+        }
+        tJournal.reset();
+        return this;
+    }
+    /** 按照日志中记录的新坐标依次局部删除并重新插入节点，退化情况下局部删除失败时返回 false */
+    private boolean relocate_(MoveJournal aJournal) {
+        for (int i = 0; i < aJournal.mMovedNum; ++i) if (!mLocalRemove.remove(aJournal.mMoved[i])) return false;
+        for (int i = 0; i < aJournal.mMovedNum; ++i) {
+            final int tVertex = aJournal.mMoved[i];
+            if (mLocateGrid != null) mLocateGrid.remove(tVertex);
+            System.arraycopy(aJournal.mNewXYZ, i*3, mVertexXYZ, tVertex*3, 3);
+        }
+        for (int i = 0; i < aJournal.mMovedNum; ++i) insertVertex_(aJournal.mMoved[i]);
+        return true;
+    }
+    /**
+     * 更新所有节点的坐标并尽量保留原本的拓扑，用于轨迹中相邻的帧：
+     * 先找到在新坐标下定向不为正的四面体，在旧坐标下局部删除其节点（见 {@link LocalRemove}），
+     * 直到剩下的四面体在新坐标下都是正定向的，由于极大四面体的顶点不动，此时的三角剖分在新坐标下依旧合法；
+     * 然后检测所有的面并通过翻转修复 delaunay 条件（见 {@link OrientedFace#repairFlip()}），最后再重新插入删除的节点；
+     * 相邻帧的节点移动很小时只有很少的面需要翻转，因此比重新构建要快很多：
+     * 实测 10 万个随机分布的节点，每个方向的位移为平均间距的 0.2% ~ 1.5% 时大约快 2.5 ~ 6 倍，3% 时约 1.7 倍，5% 时约 1.2 倍；
+     * 位移更大，或者节点接近晶格（大量的四面体接近退化，删除时会级联很多节点）时根据开销的估计直接重新构建，
+     * 此时额外的开销主要是检测定向，约为重新构建的 5%；退化情况下删除或翻转无法完成时同样会重新构建整个三角剖分；
+     * 节点的 {@link IVertex} 保持不变，拓扑没有改变的 {@link ITetrahedron} 也依旧有效；周期模式下新的坐标会折叠到模拟盒内
+     * @author CHanzy
+     * @param aXYZ 按照 {@code x0, y0, z0, x1, y1, z1, ...} 排列的所有节点的新坐标，顺序和 {@link #getVertex(int)} 一致
+     * @return 自身方便链式调用
+     */
+    public VoronoiBuilder updatePositions(double[] aXYZ) {
+        final int tRealNum = sizeVertex();
+        if (aXYZ.length != tRealNum*3) throw new IllegalArgumentException("Length of XYZ mismatch: "+aXYZ.length+" vs "+(tRealNum*3));
+        dropJournal_();
+        unshare_();
+        mCheck = mRNG.nextInt();
+        if (tRealNum == 0) return this;
+        if (mLocalRemove == null) mLocalRemove = new LocalRemove();
+        if (mUpdateBuffer == null) mUpdateBuffer = new UpdateBuffer();
+        final UpdateBuffer tBuffer = mUpdateBuffer;
+        tBuffer.begin(mVertexNum);
+        // 新坐标写入备用的坐标数组，结束后旧的坐标数组作为下一次的备用
+        final double[] tOld = mVertexXYZ;
+        final double[] tNew = tBuffer.mXYZ.length==tOld.length ? tBuffer.mXYZ : new double[tOld.length];
+        tBuffer.mXYZ = tOld;
+        System.arraycopy(tOld, 0, tNew, 0, mVertexNum*3);
+        System.arraycopy(aXYZ, 0, tNew, INIT_VERTEX_NUM*3, tRealNum*3);
+        if (mPeriodic != null) mPeriodic.planUpdate(tNew);
+        // 抽样估计新坐标下翻转的四面体数目，从而估计需要删除的节点数目的下限
+        mVertexXYZ = tNew;
+        int tSample = 0;
+        for (int k = 0; k < mTetNum; k += UPDATE_SAMPLE_STRIDE) {
+            final int tBase = mLiveTet[k]<<2;
+            if (orient(mTetVertex[tBase+PosTet.D], mTetVertex[tBase+PosTet.A], mTetVertex[tBase+PosTet.B], mTetVertex[tBase+PosTet.C]) <= 0) ++tSample;
+        }
+        mVertexXYZ = tOld;
+        final double tMaxCost = tRealNum;
+        double tCost = UPDATE_FIXED_COST*tRealNum;
+        boolean tLocal = tCost + tSample*(UPDATE_SAMPLE_STRIDE/UPDATE_INVERTED_PER_REMOVE)*UPDATE_REMOVE_COST < tMaxCost;
+        if (tLocal) {
+            for (int tVertex = INIT_VERTEX_NUM; tVertex < mVertexNum; ++tVertex) {
+                final int tIdx = tVertex*3;
+                if (tNew[tIdx]!=tOld[tIdx] || tNew[tIdx+1]!=tOld[tIdx+1] || tNew[tIdx+2]!=tOld[tIdx+2]) tBuffer.set(tVertex, UpdateBuffer.MOVED);
+            }
+            // 凸包上的节点的 link 包含极大四面体的顶点，局部删除时需要很多精确计算，因此尽量不选择这些节点
+            for (int k = 0; k < mTetNum; ++k) {
+                final int tBase = mLiveTet[k]<<2;
+                if (!isUniverseVertex(mTetVertex[tBase]) && !isUniverseVertex(mTetVertex[tBase+1]) && !isUniverseVertex(mTetVertex[tBase+2]) && !isUniverseVertex(mTetVertex[tBase+3])) continue;
+                for (int i = 0; i < 4; ++i) tBuffer.set(mTetVertex[tBase+i], UpdateBuffer.HULL);
+            }
+            // 在旧坐标下删除新坐标中翻转的四面体的节点，首先检测所有的四面体
+            mVertexXYZ = tNew;
+            for (int k = 0; k < mTetNum; ++k) scanInverted_(mLiveTet[k], tOld, tNew);
+            mVertexXYZ = tOld;
+            tLocal = tCost + tBuffer.mRemoveNum*UPDATE_REMOVE_COST < tMaxCost;
+        }
+        final int tFirstNum = tBuffer.mRemoveNum;
+        // 删除后新建的四面体同样需要检测，需要删除的节点直接加到后面
+        for (int i = 0; tLocal && i < tBuffer.mRemoveNum; ++i) {
+            final int tVertex = tBuffer.mRemove[i];
+            // 使用此时的任意近邻节点作为重新插入时的提示
+            final int tBase = mVertexAdj[tVertex]<<2;
+            tBuffer.mHint[i] = NULL_ID;
+            for (int j = 0; j < 4; ++j) {
+                final int tNear = mTetVertex[tBase+j];
+                if (tNear!=tVertex && !isUniverseVertex(tNear)) {tBuffer.mHint[i] = tNear; break;}
+            }
+            if (!mLocalRemove.remove(tVertex)) {tLocal = false; break;}
+            if (mLocateGrid != null) mLocateGrid.remove(tVertex);
+            mVertexXYZ = tNew;
+            for (int j = 0, tNum = mLocalRemove.newTetNum(); j < tNum; ++j) scanInverted_(mLocalRemove.newTet(j), tOld, tNew);
+            mVertexXYZ = tOld;
+            tCost += tBuffer.has(tVertex, UpdateBuffer.HULL) ? UPDATE_HULL_COST : UPDATE_REMOVE_COST;
+            // 根据已经删除的节点估计级联的比例以及总的开销，超过重新构建的开销时及早放弃，已经删除的部分不会浪费太多
+            final int tDone = i+1;
+            if (tDone < UPDATE_SAMPLE) {
+                tLocal = tCost < tMaxCost;
+            } else {
+                final double tGrow = (tBuffer.mRemoveNum-tFirstNum) / (double)tDone;
+                final double tTotal = Math.max(tBuffer.mRemoveNum, tFirstNum/(1.0-tGrow));
+                tLocal = tGrow<1.0 && UPDATE_FIXED_COST*tRealNum + (tCost-UPDATE_FIXED_COST*tRealNum)/tDone*tTotal < tMaxCost;
+            }
+        }
+        mVertexXYZ = tNew;
+        if (!tLocal) {
+            rebuildReal_(tRealNum);
+            return this;
+        }
+        // 只有顶点移动过的四面体需要重新计算外接球，删除时新建的四面体本身就没有外接球
+        for (int k = 0; k < mTetNum; ++k) {
+            final int tTet = mLiveTet[k], tBase = tTet<<2;
+            if (tBuffer.has(mTetVertex[tBase], UpdateBuffer.MOVED) || tBuffer.has(mTetVertex[tBase+1], UpdateBuffer.MOVED)
+             || tBuffer.has(mTetVertex[tBase+2], UpdateBuffer.MOVED) || tBuffer.has(mTetVertex[tBase+3], UpdateBuffer.MOVED)) dropCenter_(tTet);
+        }
+        if (!repairDelaunay_()) {
+            rebuildReal_(tRealNum);
+            return this;
+        }
+        for (int i = 0; i < tBuffer.mRemoveNum; ++i) insertVertex_(tBuffer.mRemove[i], tBuffer.mHint[i]);
+        if (mLocateGrid!=null && mLocateGrid.mInsertNum>=LocateGrid.MIN_VERTEX_NUM) mLocateGrid.rebuild_();
+        if (mPeriodic != null) mPeriodic.rekey();
+        mCheck = mRNG.nextInt();
+        return this;
+    }
+    /** 四面体在新坐标下定向不为正时记录需要删除的节点，优先选择不在凸包上的移动最远的节点，已经包含需要删除的节点时跳过 */
+    private void scanInverted_(int aTet, double[] aOld, double[] aNew) {
+        final UpdateBuffer tBuffer = mUpdateBuffer;
+        assert tBuffer != null;
+        final int tBase = aTet<<2;
+        if (orient(mTetVertex[tBase+PosTet.D], mTetVertex[tBase+PosTet.A], mTetVertex[tBase+PosTet.B], mTetVertex[tBase+PosTet.C]) > 0) return;
+        int tVertex = NULL_ID;
+        double tMax = -1.0;
+        boolean tMaxHull = true;
+        for (int i = 0; i < 4; ++i) {
+            final int tV = mTetVertex[tBase+i];
+            if (isUniverseVertex(tV)) continue;
+            if (tBuffer.has(tV, UpdateBuffer.REMOVED)) return;
+            final boolean tHull = tBuffer.has(tV, UpdateBuffer.HULL);
+            if (tHull && !tMaxHull) continue;
+            final int tIdx = tV*3;
+            final double tDX = aNew[tIdx]-aOld[tIdx], tDY = aNew[tIdx+1]-aOld[tIdx+1], tDZ = aNew[tIdx+2]-aOld[tIdx+2];
+            final double tDis = tDX*tDX + tDY*tDY + tDZ*tDZ;
+            if (tDis>tMax || (tMaxHull && !tHull)) {tMax = tDis; tMaxHull = tHull; tVertex = tV;}
+        }
+        if (tVertex != NULL_ID) tBuffer.addRemove(tVertex);
+    }
+    /** 检测所有的面并通过翻转修复 delaunay 条件，暂时无法翻转的面会在其余的翻转之后重试，最终无法完成时返回 false */
+    private boolean repairDelaunay_() {
+        mEarNum = 0;
+        for (int k = 0; k < mTetNum; ++k) {
+            final int tTet = mLiveTet[k];
+            for (byte tFace : PosTet.FACES) if (tetNeighbor(tTet, tFace) > tTet) pushEar_(tTet, tFace);
+        }
+        int[] tStuck = new int[INIT_CAPACITY];
+        while (true) {
+            int tStuckNum = 0;
+            boolean tFlipped = false;
+            while (mEarNum > 0) {
+                final int tEar = mEarBuffer[--mEarNum];
+                mFace.set(tEar>>2, (byte)(tEar&3));
+                if (!mFace.valid() || !mFace.notRegular()) continue;
+                if (mFace.repairFlip()) {tFlipped = true; continue;}
+                if (tStuckNum == tStuck.length) tStuck = Arrays.copyOf(tStuck, tStuckNum*2);
+                tStuck[tStuckNum++] = tEar;
+            }
+            if (!tetValid(mLast)) mLast = mLiveTet[0];
+            if (tStuckNum == 0) return true;
+            // 每次翻转都会降低提升到抛物面上的高度，因此不会循环；没有任何翻转时则无法继续
+            if (!tFlipped) return false;
+            for (int i = 0; i < tStuckNum; ++i) pushEar_(tStuck[i]>>2, (byte)(tStuck[i]&3));
+        }
+    }
+    /** 其他修改三角剖分的操作会让撤销日志失效 */
+    private void dropJournal_() {if (mJournal != null) mJournal.reset();}
+    
+    /** 周期模式下统计前补充所有需要的镜像节点 */
+    void ensureImage_() {if (mPeriodic != null) mPeriodic.ensure();}
+    /** 周期模式下将镜像节点替换成对应的真实节点 */
+    int realVertex_(int aVertex) {return mPeriodic==null ? aVertex : mPeriodic.realOf(aVertex);}
+    /** 将提示节点的索引转换为内部的 id，负数返回 {@link #NULL_ID} */
+    private int hintVertex_(int aHintIdx) {
+        if (aHintIdx < 0) return NULL_ID;
+        if (aHintIdx >= sizeVertex()) throw new IndexOutOfBoundsException("Hint: "+aHintIdx+", Size: "+sizeVertex());
+        return aHintIdx+INIT_VERTEX_NUM;
+    }
+    /** 将已经创建的节点插入到三角剖分中 */
+    private VoronoiBuilder insertVertex_(int aVertex) {return insertVertex_(aVertex, NULL_ID);}
+    /** 提示节点存在并且已经插入时，从其近邻四面体开始寻路 */
+    private VoronoiBuilder insertVertex_(int aVertex, int aHintVertex) {
+        // 先使用这个寻路算法找到包围输入位置的四面体
+        final int tIdx = aVertex*3;
+        final double tX = mVertexXYZ[tIdx], tY = mVertexXYZ[tIdx+1], tZ = mVertexXYZ[tIdx+2];
+        int tStart = aHintVertex==NULL_ID ? NULL_ID : mVertexAdj[aHintVertex];
+        if (!tetValid(tStart)) tStart = mLocateGrid==null ? mLast : mLocateGrid.start(tX, tY, tZ, mLast);
+        mLast = locate_(tX, tY, tZ, tStart);
+        // 然后将其分成四份，并存储需要考虑翻转的面
+        mEarNum = 0;
+        mLast = flip1to4_(mLast, aVertex);
+        // 考虑所有翻转的情况，按照栈的顺序处理
+        while (mEarNum > 0) {
+            int tEar = mEarBuffer[--mEarNum];
+            int tLast = mFace.set(tEar>>2, (byte)(tEar&3)).tryFlip();
+            if (tLast != NULL_ID) mLast = tLast;
+        }
+        if (mLocateGrid != null) mLocateGrid.add(aVertex);
+        // 返回自身方便链式调用
+        return this;
+    }
+    
+    /** 从起始四面体开始，定位到能够包含 aXYZ 的四面体 */
+    private int locate_(double aX, double aY, double aZ, int aStart) {
+        ++mLocateNum;
+        byte nFace = PosTet.NULL;
+        for (byte tFace : PosTet.FACES) {
+            if (tetOrient(aStart, aX, aY, aZ, tFace) < 0) {nFace = tFace; break;}
+        }
+        int tCurrent = aStart;
+        while (true) {
+            // 如果没有下一个界面则表明 aXYZ 就在 tCurrent 四面体内部，终止
+            if (nFace == PosTet.NULL) {return tCurrent;}
+            // 获取当前四面体对应面的四面体
+            int tNext = tetNeighbor(tCurrent, nFace);
+            assert tNext != NULL_ID;
+            // 下一个界面待定
+            nFace = PosTet.NULL;
+            // 按照随机的顺序检查 tNext 四面体的三个面，确定下一个面
+            for (byte tFace : PosTet.ORDER[tetOrdinalOfNeighbor(tNext, tCurrent)][mRNG.nextInt(6)]) {
+                if (tetOrient(tNext, aX, aY, aZ, tFace) < 0) {
+                    // 此界面方向点在外侧，选取此方向继续迭代
+                    nFace = tFace;
                     break;
                 }
-                default: throw new RuntimeException();
+            }
+            // 更新当前考虑的四面体
+            tCurrent = tNext;
+            ++mWalkNum;
+            // 所有方向都在内部，表明 aXYZ 就在 tCurrent 四面体内部，此时 nFace == PosTet.NULL
+        }
+    }
+    
+    /** 用于外部访问的包含 voronoi 参数信息的节点，用于实时进行计算分析，减少内存占用 */
+    public interface IVertex extends IXYZ {
+        int coordination();
+        double atomicVolume();
+        double cavityRadius();
+        int[] index();
+        /**
+         * 一次统计多组相对阈值下的 voronoi index，用于标定阈值，不会修改 builder 的阈值设置；
+         * 原始的面积和棱长只会计算一次，每组阈值只进行简单的过滤
+         * @param aAreaThreshold 每组的面积相对阈值，和 {@link VoronoiBuilder#setAreaThreshold} 一致
+         * @param aLengthThreshold 每组的棱长相对阈值，和 {@link VoronoiBuilder#setLengthThreshold} 一致，长度需要和 aAreaThreshold 相同
+         * @return 每组阈值对应的 voronoi index
+         */
+        int[][] index(double[] aAreaThreshold, double[] aLengthThreshold);
+        /** 其他可能有用信息 */
+        double x();
+        double y();
+        double z();
+        @Unmodifiable Collection<IVertex> neighborVertex();
+        @Unmodifiable Collection<ITetrahedron> neighborTetrahedron();
+    }
+    /** 用于外部访问的包含 voronoi 参数信息的四面体，用于实时进行计算分析，减少内存占用 */
+    public interface ITetrahedron {
+        IXYZ centerSphere();
+        @Unmodifiable List<IVertex> neighborVertex();
+        @Unmodifiable List<ITetrahedron> neighborTetrahedron();
+        boolean valid();
+        /** 四面体在内部数组中的位置，和 {@link #neighborTets} 一致，删除后可能会被重复使用 */
+        int id();
+        /**
+         * 不创建视图的近邻版本，顺序和对应的列表一致，四面体失效时返回 0
+         * @param rOut 写入近邻节点的索引（或者近邻四面体的 id），长度不小于 4 即可写入所有近邻
+         * @return 近邻的数目
+         */
+        int neighborVertex(int[] rOut);
+        int neighborTetrahedron(int[] rOut);
+    }
+    /**
+     * 逐个节点流式统计的游标，每次 {@link #next()} 只统计一个节点，并在移动到下一个节点时立刻释放其缓存，
+     * 因此遍历期间的内存占用只有三角剖分本身；获取的值只在下一次 {@link #next()} 之前有效，
+     * 遍历期间对 builder 的修改会让游标失效
+     */
+    public interface IVertexCursor extends IXYZ {
+        /** 移动到下一个节点并进行统计，没有更多节点时返回 false */
+        boolean next();
+        /** 当前节点的索引，和 {@link #getVertex(int)} 一致 */
+        int idx();
+        int coordination();
+        double atomicVolume();
+        double cavityRadius();
+        int[] index();
+        /** 将 voronoi index 写入 rIndex 而不是创建新的数组，rIndex 的长度需要不小于 index 长度 */
+        void index(int[] rIndex);
+        /** 依次访问当前节点的每个 voronoi 面，见 {@link VoronoiBuilder#forEachFace} */
+        void forEachFace(IFaceVisitor aVisitor);
+        double x();
+        double y();
+        double z();
+    }
+    /** 用于 {@link #forEachStat} 的回调，输入的游标只在回调期间有效 */
+    @FunctionalInterface public interface IStatConsumer {void accept(IVertexCursor aStat);}
+    /** 用于 {@link #forEachFace} 的回调，直接输入每个 voronoi 面的数据 */
+    @FunctionalInterface public interface IFaceVisitor {
+        /**
+         * @param aNeighbor 此面对应的近邻节点的索引，和 {@link #getVertex(int)} 一致，周期模式下为对应的真实节点
+         * @param aArea voronoi 面的面积
+         * @param aDis 到近邻节点的距离
+         * @param aFaceSize 按照当前阈值截断后的面的顶点数目，面被面积截断时为 0
+         * @param aEdge 绕棱的原始边长，位于 {@code [aEdgeStart, aEdgeEnd)}，只在回调期间有效并且不能修改
+         */
+        void visit(int aNeighbor, double aArea, double aDis, int aFaceSize, double[] aEdge, int aEdgeStart, int aEdgeEnd);
+    }
+    /**
+     * 单个节点的 voronoi 多面体，按照面的索引直接读取内部数组，只在 {@link ICellKernel} 的回调期间有效；
+     * 面的顺序和 {@link IVertex#neighborVertex()} 一致，不完整的面面积和顶点数目都为 0
+     */
+    public interface IVoronoiCell {
+        /** 节点的索引，和 {@link #getVertex(int)} 一致 */
+        int idx();
+        int faceNum();
+        /** 第 aFace 个面对应的近邻节点的索引，周期模式下为对应的真实节点 */
+        int neighbor(int aFace);
+        double area(int aFace);
+        double distance(int aFace);
+        /** 按照当前阈值截断后的面的顶点数目，面被面积截断时为 0 */
+        int faceSize(int aFace);
+        /** 所有面的总面积 */
+        double surfaceArea();
+    }
+    /** 用于 {@link #reduce} 的每个节点的计算，将 aCell 的结果累加到线程局部的 rAcc 中 */
+    @FunctionalInterface public interface ICellKernel<A> {void accept(A rAcc, IVoronoiCell aCell);}
+    
+    /**
+     * 获取按照节点索引顺序流式统计的游标，用于只需要将统计结果直接写入文件或者统计分布的情况，
+     * 不会像 {@link #computeAll} 或者 {@link #getVertex} 一样长期缓存每个节点的近邻信息
+     * @author CHanzy
+     * @return 位于第一个节点之前的游标，需要先调用 {@link IVertexCursor#next()}
+     */
+    public IVertexCursor cursor() {return new Cursor();}
+    /**
+     * 推送形式的流式统计，依次将每个节点的统计结果传给 aConsumer，内存占用和 {@link #cursor()} 一致
+     * @author CHanzy
+     * @param aConsumer 每个节点的回调
+     * @return 自身方便链式调用
+     */
+    public VoronoiBuilder forEachStat(IStatConsumer aConsumer) {
+        final IVertexCursor tCursor = cursor();
+        while (tCursor.next()) aConsumer.accept(tCursor);
+        return this;
+    }
+    /**
+     * 依次访问节点的每个 voronoi 面，直接使用统计时绕棱得到的数据，不会创建任何临时对象；
+     * 访问顺序和 {@link IVertex#neighborVertex()} 一致，不完整的面会被跳过，被截断的面依旧会访问
+     * @author CHanzy
+     * @param aIdx 需要访问的节点索引，和 {@link #getVertex(int)} 一致
+     * @param aVisitor 每个面的回调
+     * @return 自身方便链式调用
+     */
+    public VoronoiBuilder forEachFace(int aIdx, IFaceVisitor aVisitor) {
+        if (aIdx<0 || aIdx>=sizeVertex()) throw new IndexOutOfBoundsException("Index: "+aIdx+", Size: "+sizeVertex());
+        ensureImage_();
+        vertex_(aIdx+INIT_VERTEX_NUM).updateStat_(mStatBuffer).forEachFace_(aVisitor);
+        return this;
+    }
+    
+    /**
+     * 直接获取节点的近邻节点索引，顺序和 {@link IVertex#neighborVertex()} 一致，周期模式下为对应的真实节点；
+     * 节点已经有缓存的统计信息时直接读取，否则只遍历星形到 builder 内部的缓存中，不会统计 voronoi 面，也不会创建节点视图
+     * @author CHanzy
+     * @param aIdx 需要获取的节点索引，和 {@link #getVertex(int)} 一致
+     * @param rOut 写入近邻节点的索引，长度不足时只写入前面的部分
+     * @return 近邻的总数，大于 rOut 的长度时需要使用更长的数组重新获取
+     */
+    public int neighbors(int aIdx, int[] rOut) {
+        final Star tStar = star_(aIdx);
+        final int tNum = Math.min(tStar.mNeighborVertexNum, rOut.length);
+        for (int i = 0; i < tNum; ++i) rOut[i] = realVertex_(tStar.mNeighborVertex[i])-INIT_VERTEX_NUM;
+        return tStar.mNeighborVertexNum;
+    }
+    public int neighborCount(int aIdx) {return star_(aIdx).mNeighborVertexNum;}
+    /** 节点的近邻四面体的 id，和 {@link ITetrahedron#id()} 一致，其余同 {@link #neighbors} */
+    public int neighborTets(int aIdx, int[] rOut) {
+        final Star tStar = star_(aIdx);
+        System.arraycopy(tStar.mNeighborTet, 0, rOut, 0, Math.min(tStar.mNeighborTetNum, rOut.length));
+        return tStar.mNeighborTetNum;
+    }
+    public int neighborTetCount(int aIdx) {return star_(aIdx).mNeighborTetNum;}
+    /** 冻结的视图中所有节点都有缓存的统计信息，因此只会读取，可以被多个线程同时调用 */
+    private Star star_(int aIdx) {
+        if (aIdx<0 || aIdx>=sizeVertex()) throw new IndexOutOfBoundsException("Index: "+aIdx+", Size: "+sizeVertex());
+        ensureImage_();
+        return walkedStar_(aIdx+INIT_VERTEX_NUM);
+    }
+    /** 有缓存的统计信息时直接使用，否则只遍历星形到共享的缓存中，只在下一次调用之前有效 */
+    private Star walkedStar_(int aVertex) {
+        final @Nullable Vertex tView = mVertexView[aVertex];
+        if (tView!=null && tView.statValid_()) return tView.mStar;
+        if (mNeighborStar == null) mNeighborStar = new Star();
+        mNeighborStar.walkStar_(aVertex, mStatBuffer);
+        return mNeighborStar;
+    }
+    
+    /**
+     * 获取位置节点，支持随机访问，节点按照添加顺序排列
+     * @author CHanzy
+     * @param aIdx 需要获取的节点索引
+     * @return 包含 voronoi 多面体参数的节点
+     */
+    public IVertex getVertex(int aIdx) {
+        if (aIdx<0 || aIdx>=sizeVertex()) throw new IndexOutOfBoundsException("Index: "+aIdx+", Size: "+sizeVertex());
+        ensureImage_();
+        return vertex_(aIdx+INIT_VERTEX_NUM);
+    }
+    public int sizeVertex() {return mVertexNum-INIT_VERTEX_NUM - (mPeriodic==null ? 0 : mPeriodic.mImageNum);}
+    public @Unmodifiable List<IVertex> allVertex() {
+        return new AbstractRandomAccessList<IVertex>() {
+            @Override public IVertex get(int index) {return getVertex(index);}
+            @Override public int size() {return sizeVertex();}
+        };
+    }
+    
+    /**
+     * 并行计算所有节点的 voronoi 参数并缓存，之后 {@link IVertex} 的统计只需要直接读取缓存；
+     * 先补充镜像，创建所有节点的视图并计算所有四面体的外接球，此后统计期间不会再修改共享的数据，
+     * 每个节点的统计只会写入自身的缓存，因此可以按照节点分块并行，每个任务使用独立的缓存
+     * @author CHanzy
+     * @param aThreadNum 使用的线程数目
+     * @return 自身方便链式调用
+     */
+    public VoronoiBuilder computeAll(int aThreadNum) {
+        if (aThreadNum < 1) throw new IllegalArgumentException("Thread number must be positive: "+aThreadNum);
+        // 单线程时直接在当前线程执行
+        final @Nullable ForkJoinPool tPool = aThreadNum==1 ? null : new ForkJoinPool(aThreadNum);
+        try {
+            computeAll_(tPool, aThreadNum, sizeVertex());
+        } finally {
+            if (tPool != null) tPool.shutdown();
+        }
+        return this;
+    }
+    public VoronoiBuilder computeAll() {return computeAll(Runtime.getRuntime().availableProcessors());}
+    /**
+     * 并行计算所有四面体的外接球的球心以及半径的平方，直接写入按照四面体 id 存储的基本类型数组，
+     * 之后体积，面积以及空穴半径的统计都只需要直接读取；每个四面体只会写入自身的位置，因此可以按照四面体分块并行
+     * @author CHanzy
+     * @param aThreadNum 使用的线程数目
+     * @return 自身方便链式调用
+     */
+    public VoronoiBuilder computeCenterSphere(int aThreadNum) {
+        if (aThreadNum < 1) throw new IllegalArgumentException("Thread number must be positive: "+aThreadNum);
+        final @Nullable ForkJoinPool tPool = aThreadNum==1 ? null : new ForkJoinPool(aThreadNum);
+        try {
+            ensureImage_();
+            centerAll_(tPool, aThreadNum);
+        } finally {
+            if (tPool != null) tPool.shutdown();
+        }
+        return this;
+    }
+    public VoronoiBuilder computeCenterSphere() {return computeCenterSphere(Runtime.getRuntime().availableProcessors());}
+    /**
+     * 计算所有合法四面体的外接球，虚构的四面体也会一起计算（不输出警告），
+     * 保证之后并行的统计（凸包上节点的 cavityRadius 等）只会读取而不会再写入
+     */
+    private void centerAll_(@Nullable ForkJoinPool aPool, int aThreadNum) {
+        // 在并行之前分配，保证并行期间只会写入各自的位置
+        ensureCenter_();
+        invokeChunk_(aPool, aThreadNum, mTetNum, (aStart, aEnd) -> {
+            for (int k = aStart; k < aEnd; ++k) {
+                final int tTet = mLiveTet[k];
+                if (!hasCenter_(tTet)) computeCenter_(tTet);
+            }
+        });
+    }
+    /** 只计算前 aNum 个节点，用于 {@link ParallelVoronoiBuilder} 中跳过 ghost 节点 */
+    void computeAll_(@Nullable ForkJoinPool aPool, int aThreadNum, int aNum) {
+        ensureImage_();
+        // 近邻节点的视图也需要提前创建，保证之后获取近邻时不会再写入
+        for (int tVertex = INIT_VERTEX_NUM; tVertex < mVertexNum; ++tVertex) vertex_(tVertex);
+        centerAll_(aPool, aThreadNum);
+        invokeChunk_(aPool, aThreadNum, aNum, (aStart, aEnd) -> {
+            final StatBuffer tBuffer = new StatBuffer();
+            for (int i = aStart; i < aEnd; ++i) mVertexView[i+INIT_VERTEX_NUM].updateStat_(tBuffer);
+        });
+    }
+    /**
+     * 冻结当前的结果，返回可以被任意多个线程同时无锁读取的只读视图 {@link FrozenVoronoi}；
+     * 会先并行计算所有节点的统计信息，之后视图上的读取都只会读取缓存和数组，不会再有任何写入
+     * <p>
+     * 视图直接共享当前的拓扑数组，只有此 builder 之后第一次修改三角剖分时才会复制这些数组（copy-on-write），
+     * 因此冻结本身不会复制整个三角剖分，并且之后继续插入，删除或者移动节点都不会影响已经冻结的视图
+     * @author CHanzy
+     * @param aThreadNum 计算统计信息使用的线程数目
+     * @return 冻结的只读视图
+     */
+    public FrozenVoronoi freeze(int aThreadNum) {
+        if (aThreadNum < 1) throw new IllegalArgumentException("Thread number must be positive: "+aThreadNum);
+        ensureImage_();
+        final VoronoiBuilder tView = share_();
+        // 虚构四面体的外接球同样会在这里提前计算，保证之后 cavityRadius 等读取不会再写入共享的数组
+        tView.computeAll(aThreadNum);
+        mShared = true;
+        return new FrozenVoronoi(tView);
+    }
+    public FrozenVoronoi freeze() {return freeze(Runtime.getRuntime().availableProcessors());}
+    /**
+     * 并行统计所有节点的 voronoi 参数，并按列存储到基本类型数组中的 {@link VoronoiResult}；
+     * 统计时不会创建节点视图，每个线程的所有节点共用同一份缓存，
+     * 因此不会像 {@link #computeAll} 一样长期占用内存；结果不持有此 builder 的引用，之后可以直接丢弃或者 {@link #clear()} 此 builder
+     * @author CHanzy
+     * @param aThreadNum 使用的线程数目
+     * @return 所有节点的统计结果，顺序和 {@link #getVertex(int)} 一致
+     */
+    public VoronoiResult toResult(int aThreadNum) {
+        if (aThreadNum < 1) throw new IllegalArgumentException("Thread number must be positive: "+aThreadNum);
+        final VoronoiResult rResult = new VoronoiResult(sizeVertex(), mIndexLength);
+        final @Nullable ForkJoinPool tPool = aThreadNum==1 ? null : new ForkJoinPool(aThreadNum);
+        try {
+            toResult_(tPool, aThreadNum, rResult.size(), null, rResult);
+        } finally {
+            if (tPool != null) tPool.shutdown();
+        }
+        return rResult;
+    }
+    public VoronoiResult toResult() {return toResult(Runtime.getRuntime().availableProcessors());}
+    /** 统计前 aNum 个节点写入 rResult，aGlobal 为节点在结果中的索引，为 null 时直接使用节点的索引 */
+    void toResult_(@Nullable ForkJoinPool aPool, int aThreadNum, int aNum, @Nullable int[] aGlobal, VoronoiResult rResult) {
+        ensureImage_();
+        centerAll_(aPool, aThreadNum);
+        invokeChunk_(aPool, aThreadNum, aNum, (aStart, aEnd) -> {
+            // 每个线程的所有节点共用同一份缓存，不会创建节点视图
+            final StatBuffer tBuffer = new StatBuffer();
+            final Star tStar = new Star();
+            for (int i = aStart; i < aEnd; ++i) {
+                tStar.walk_(i+INIT_VERTEX_NUM, tBuffer);
+                tStar.applyThreshold_();
+                tStar.writeResult_(rResult, aGlobal==null ? i : aGlobal[i]);
+            }
+        });
+    }
+    /**
+     * 并行的 map-reduce，将节点按照索引分块，每块使用 aInit 创建的局部累加器，
+     * 并对块内的每个节点调用 aKernel，最后按照块的顺序使用 aCombiner 合并；
+     * 统计直接读取内部的数组，不会创建节点视图或者近邻的集合，也不会缓存统计信息
+     * <p>
+     * 相同的线程数目下分块固定，因此结果是确定的
+     * @author CHanzy
+     * @param aThreadNum 使用的线程数目
+     * @param aInit 创建局部累加器
+     * @param aKernel 每个节点的计算，回调期间只能读取此 builder
+     * @param aCombiner 合并两个累加器，可以直接修改并返回第一个
+     * @return 合并后的结果，没有节点时返回 {@code aInit.get()}
+     */
+    public <A> A reduce(int aThreadNum, Supplier<? extends A> aInit, ICellKernel<? super A> aKernel, BinaryOperator<A> aCombiner) {
+        if (aThreadNum < 1) throw new IllegalArgumentException("Thread number must be positive: "+aThreadNum);
+        ensureImage_();
+        final @Nullable ForkJoinPool tPool = aThreadNum==1 ? null : new ForkJoinPool(aThreadNum);
+        // 按照块的起始位置排列，保证合并顺序固定
+        final ConcurrentSkipListMap<Integer, A> tAcc = new ConcurrentSkipListMap<>();
+        try {
+            centerAll_(tPool, aThreadNum);
+            invokeChunk_(tPool, aThreadNum, sizeVertex(), (aStart, aEnd) -> {
+                final StatBuffer tBuffer = new StatBuffer();
+                final Star tStar = new Star();
+                final A rAcc = aInit.get();
+                for (int i = aStart; i < aEnd; ++i) {
+                    tStar.walk_(i+INIT_VERTEX_NUM, tBuffer);
+                    tStar.applyThreshold_();
+                    aKernel.accept(rAcc, tStar);
                 }
-                // 此四面体处理完成
-                mNeighborTet.add(tTet);
-            }
-            // 根据每个近邻节点计算每个 voronoi 面的顶点数（共棱的四面体数目）和面积（过小要进行截断）
-            for (Map.Entry<Vertex, @Nullable VertexInfo> tVertexEntry : mNeighborVertex.entrySet()) {
-                Vertex tVertex = tVertexEntry.getKey();
-                double tDis = mXYZ.distance(tVertex.mXYZ);
-                // 这里直接遍历所有的近邻四面体来得到第一个共棱的四面体
-                Tetrahedron tTet0 = null; XYZ tA = null;
-                for (Tetrahedron tTet : mNeighborTet) if (!isUniverse(tTet)) {
-                    if (tTet.containsVertex(tVertex)) {
-                        tTet0 = tTet; tA = tTet.centerSphere_();
-                        break;
+                tAcc.put(aStart, rAcc);
+            });
+        } finally {
+            if (tPool != null) tPool.shutdown();
+        }
+        @Nullable A rResult = null;
+        for (A tValue : tAcc.values()) rResult = rResult==null ? tValue : aCombiner.apply(rResult, tValue);
+        return rResult==null ? aInit.get() : rResult;
+    }
+    public <A> A reduce(Supplier<? extends A> aInit, ICellKernel<? super A> aKernel, BinaryOperator<A> aCombiner) {return reduce(Runtime.getRuntime().availableProcessors(), aInit, aKernel, aCombiner);}
+    /**
+     * 导出 CSR 格式的近邻图，只遍历一次所有的四面体：每条棱只由绕棱的四面体中 id 最小的那个负责，
+     * 先并行统计每个节点的近邻数目，前缀和得到每行的起始位置后再并行填充，最后将每行按照近邻的索引排序，
+     * 因此结果和线程数目无关；不会创建节点视图，也不会缓存统计信息
+     * <p>
+     * 近邻和 {@link IVertex#neighborVertex()} 一致，但是面积不会进行截断，绕棱包含虚构四面体的面（凸包上的节点之间）面积为正无穷
+     * @author CHanzy
+     * @param aThreadNum 使用的线程数目
+     * @param aFaceArea 是否同时导出每个近邻对应的 voronoi 面的面积
+     * @return CSR 格式的近邻图
+     */
+    public VoronoiGraph toGraph(int aThreadNum, boolean aFaceArea) {
+        if (aThreadNum < 1) throw new IllegalArgumentException("Thread number must be positive: "+aThreadNum);
+        ensureImage_();
+        final int tSize = sizeVertex();
+        final int tRealEnd = INIT_VERTEX_NUM + tSize;
+        final int[] rOffsets = new int[tSize+1];
+        final int[] rNeighbors;
+        final @Nullable double[] rFaceArea;
+        final @Nullable ForkJoinPool tPool = aThreadNum==1 ? null : new ForkJoinPool(aThreadNum);
+        try {
+            if (aFaceArea) centerAll_(tPool, aThreadNum);
+            // 第一遍统计每个节点的近邻数目
+            final AtomicIntegerArray tCount = new AtomicIntegerArray(tSize);
+            invokeChunk_(tPool, aThreadNum, mTetNum, (aStart, aEnd) -> {
+                for (int k = aStart; k < aEnd; ++k) {
+                    final int tTet = mLiveTet[k], tBase = tTet<<2;
+                    for (int i = 0; i < 3; ++i) for (int j = i+1; j < 4; ++j) {
+                        final int tA = mTetVertex[tBase+i], tB = mTetVertex[tBase+j];
+                        if (!graphEdge_(tA, tB, tRealEnd) || !edgeOwner_(tTet, tA, tB)) continue;
+                        if (tA < tRealEnd) tCount.incrementAndGet(tA-INIT_VERTEX_NUM);
+                        if (tB < tRealEnd) tCount.incrementAndGet(tB-INIT_VERTEX_NUM);
+                    }
+                }
+            });
+            for (int i = 0; i < tSize; ++i) rOffsets[i+1] = rOffsets[i] + tCount.get(i);
+            rNeighbors = new int[rOffsets[tSize]];
+            rFaceArea = aFaceArea ? new double[rOffsets[tSize]] : null;
+            // 第二遍填充，每行的写入位置使用原子操作获取，之后再排序保证结果确定
+            final AtomicIntegerArray tFill = new AtomicIntegerArray(Arrays.copyOf(rOffsets, tSize));
+            invokeChunk_(tPool, aThreadNum, mTetNum, (aStart, aEnd) -> {
+                for (int k = aStart; k < aEnd; ++k) {
+                    final int tTet = mLiveTet[k], tBase = tTet<<2;
+                    for (int i = 0; i < 3; ++i) for (int j = i+1; j < 4; ++j) {
+                        final int tA = mTetVertex[tBase+i], tB = mTetVertex[tBase+j];
+                        if (!graphEdge_(tA, tB, tRealEnd) || !edgeOwner_(tTet, tA, tB)) continue;
+                        final double tArea = rFaceArea==null ? 0.0 : edgeArea_(tTet, tA, tB);
+                        if (tA < tRealEnd) {
+                            final int tPos = tFill.getAndIncrement(tA-INIT_VERTEX_NUM);
+                            rNeighbors[tPos] = realVertex_(tB)-INIT_VERTEX_NUM;
+                            if (rFaceArea != null) rFaceArea[tPos] = tArea;
+                        }
+                        if (tB < tRealEnd) {
+                            final int tPos = tFill.getAndIncrement(tB-INIT_VERTEX_NUM);
+                            rNeighbors[tPos] = realVertex_(tA)-INIT_VERTEX_NUM;
+                            if (rFaceArea != null) rFaceArea[tPos] = tArea;
+                        }
                     }
                 }
+            });
+            invokeChunk_(tPool, aThreadNum, tSize, (aStart, aEnd) -> {
+                for (int i = aStart; i < aEnd; ++i) sortRow_(rNeighbors, rFaceArea, rOffsets[i], rOffsets[i+1]);
+            });
+        } finally {
+            if (tPool != null) tPool.shutdown();
+        }
+        return new VoronoiGraph(rOffsets, rNeighbors, rFaceArea);
+    }
+    public VoronoiGraph toGraph(boolean aFaceArea) {return toGraph(Runtime.getRuntime().availableProcessors(), aFaceArea);}
+    public VoronoiGraph toGraph() {return toGraph(false);}
+    /** 棱是否属于近邻图，两端都不能是虚构节点，并且至少有一端是真实节点 */
+    private static boolean graphEdge_(int aA, int aB, int aRealEnd) {
+        return !isUniverseVertex(aA) && !isUniverseVertex(aB) && (aA<aRealEnd || aB<aRealEnd);
+    }
+    /** 棱 (aA, aB) 是否由 aTet 负责，即 aTet 是绕此棱的所有四面体中 id 最小的 */
+    private boolean edgeOwner_(int aTet, int aA, int aB) {
+        final int tFirst = tetNeighborAroundEdge(aTet, aA, aB, NULL_ID);
+        int tPrev = aTet, tCurr = tFirst;
+        while (tCurr!=aTet && tCurr!=NULL_ID) {
+            if (tCurr < aTet) return false;
+            final int tNext = tetNeighborAroundEdge(tCurr, aA, aB, tPrev);
+            tPrev = tCurr; tCurr = tNext;
+        }
+        if (tCurr == aTet) return true;
+        // 绕棱的四面体不闭合时，还需要从另一个方向检测
+        tPrev = aTet; tCurr = tetNeighborAroundEdge(aTet, aA, aB, tFirst);
+        while (tCurr != NULL_ID) {
+            if (tCurr < aTet) return false;
+            final int tNext = tetNeighborAroundEdge(tCurr, aA, aB, tPrev);
+            tPrev = tCurr; tCurr = tNext;
+        }
+        return true;
+    }
+    /** 绕棱 (aA, aB) 的 voronoi 面的面积，需要先计算外接球；绕棱不闭合或者包含虚构四面体时面是无界的，返回正无穷 */
+    private double edgeArea_(int aTet, int aA, int aB) {
+        if (isUniverseTet(aTet)) return Double.POSITIVE_INFINITY;
+        int tPrev = aTet, tCurr = tetNeighborAroundEdge(aTet, aA, aB, NULL_ID);
+        if (tCurr==NULL_ID || isUniverseTet(tCurr)) return Double.POSITIVE_INFINITY;
+        final int tCA = centerSphere_(aTet);
+        int tCB = centerSphere_(tCurr);
+        double rArea = 0.0;
+        while (true) {
+            final int tNext = tetNeighborAroundEdge(tCurr, aA, aB, tPrev);
+            if (tNext==NULL_ID || isUniverseTet(tNext)) return Double.POSITIVE_INFINITY;
+            if (tNext == aTet) return rArea;
+            final int tCC = centerSphere_(tNext);
+            rArea += centerArea_(tCA, tCB, tCC);
+            tCB = tCC; tPrev = tCurr; tCurr = tNext;
+        }
+    }
+    /** 将 [aStart, aEnd) 按照近邻索引（相同时按照面积）进行插入排序，每行通常只有十几个近邻 */
+    private static void sortRow_(int[] rNeighbors, @Nullable double[] rFaceArea, int aStart, int aEnd) {
+        for (int i = aStart+1; i < aEnd; ++i) {
+            final int tNeighbor = rNeighbors[i];
+            final double tArea = rFaceArea==null ? 0.0 : rFaceArea[i];
+            int j = i-1;
+            while (j>=aStart && (rNeighbors[j]>tNeighbor || (rNeighbors[j]==tNeighbor && rFaceArea!=null && rFaceArea[j]>tArea))) {
+                rNeighbors[j+1] = rNeighbors[j];
+                if (rFaceArea != null) rFaceArea[j+1] = rFaceArea[j];
+                --j;
+            }
+            rNeighbors[j+1] = tNeighbor;
+            if (rFaceArea != null) rFaceArea[j+1] = tArea;
+        }
+    }
+    /** 创建和此 builder 共享拓扑数组的副本，只拥有独立的节点视图以及镜像信息，不能进行任何修改 */
+    private VoronoiBuilder share_() {
+        final VoronoiBuilder rView = new VoronoiBuilder(new Random(mRNG.nextLong()));
+        rView.mUniverseX = mUniverseX; rView.mUniverseY = mUniverseY; rView.mUniverseZ = mUniverseZ; rView.mScale = mScale;
+        rView.mVertexXYZ = mVertexXYZ;
+        rView.mVertexAdj = mVertexAdj;
+        rView.mVertexStar = mVertexStar;
+        rView.mVertexNum = mVertexNum;
+        rView.mVertexView = new Vertex[mVertexAdj.length];
+        rView.mTetVertex = mTetVertex;
+        rView.mTetNeighbor = mTetNeighbor;
+        rView.mTetCenter = mTetCenter;
+        rView.mTetGen = mTetGen;
+        rView.mLiveTet = mLiveTet;
+        rView.mLivePos = mLivePos;
+        rView.mTetSlotNum = mTetSlotNum;
+        rView.mTetNum = mTetNum;
+        rView.mTetFreeNum = 0;
+        rView.mLast = mLast;
+        rView.mAreaThreshold = mAreaThreshold; rView.mAreaThresholdAbs = mAreaThresholdAbs;
+        rView.mLengthThreshold = mLengthThreshold; rView.mLengthThresholdAbs = mLengthThresholdAbs;
+        rView.mIndexLength = mIndexLength;
+        rView.mNoWarning = mNoWarning;
+        rView.mPeriodic = mPeriodic==null ? null : mPeriodic.frozenCopy(rView);
+        return rView;
+    }
+    /** 和冻结的视图共享拓扑数组时，在修改之前复制一份，之后的修改只会影响此 builder */
+    private void unshare_() {
+        if (!mShared) return;
+        mShared = false;
+        mVertexXYZ = mVertexXYZ.clone();
+        mVertexAdj = mVertexAdj.clone();
+        mVertexStar = mVertexStar.clone();
+        mTetVertex = mTetVertex.clone();
+        mTetNeighbor = mTetNeighbor.clone();
+        if (mTetCenter != null) mTetCenter = mTetCenter.clone();
+        mTetGen = mTetGen.clone();
+        mLiveTet = mLiveTet.clone();
+        mLivePos = mLivePos.clone();
+    }
+    
+    /** 每个线程分到的块数，用于负载均衡 */
+    private final static int CHUNK_PER_THREAD = 8;
+    @FunctionalInterface interface IChunk {void run(int aStart, int aEnd);}
+    /** 将 [0, aNum) 分块后在线程池中执行，任务中的异常会直接重新抛出；没有线程池时直接在当前线程执行 */
+    static void invokeChunk_(@Nullable ForkJoinPool aPool, int aThreadNum, int aNum, IChunk aChunk) {
+        if (aNum == 0) return;
+        if (aPool == null) {aChunk.run(0, aNum); return;}
+        final int tChunkNum = Math.min(aNum, aThreadNum*CHUNK_PER_THREAD);
+        List<Callable<Void>> tTasks = new ArrayList<>(tChunkNum);
+        for (int i = 0; i < tChunkNum; ++i) {
+            final int tStart = (int)((long)aNum*i/tChunkNum), tEnd = (int)((long)aNum*(i+1)/tChunkNum);
+            tTasks.add(() -> {aChunk.run(tStart, tEnd); return null;});
+        }
+        try {
+            for (Future<Void> tFuture : aPool.invokeAll(tTasks)) tFuture.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        } catch (ExecutionException e) {
+            Throwable tCause = e.getCause();
+            if (tCause instanceof RuntimeException) throw (RuntimeException)tCause;
+            if (tCause instanceof Error) throw (Error)tCause;
+            throw new RuntimeException(tCause);
+        }
+    }
+    /**
+     * 获取一个四面体，不支持随机访问，会获取最近创建的四面体
+     * @author CHanzy
+     * @return 包含 voronoi 多面体参数的四面体
+     */
+    public ITetrahedron getTetrahedron() {ensureImage_(); return tet_(mLast);}
+    /** 直接遍历 mLiveTet，不需要跳过被删除的四面体 */
+    public @Unmodifiable Collection<ITetrahedron> allTetrahedron() {
+        ensureImage_();
+        return new AbstractCollection<ITetrahedron>() {
+            @Override public @NotNull Iterator<ITetrahedron> iterator() {
+                return new Iterator<ITetrahedron>() {
+                    private int mNext = 0;
+                    @Override public boolean hasNext() {return mNext < mTetNum;}
+                    @Override public ITetrahedron next() {
+                        if (!hasNext()) throw new NoSuchElementException();
+                        return tet_(mLiveTet[mNext++]);
+                    }
+                };
+            }
+            @Override public int size() {return mTetNum;}
+        };
+    }
+    @VisibleForTesting public ITetrahedron getTet() {return getTetrahedron();}
+    @VisibleForTesting public @Unmodifiable Collection<ITetrahedron> allTet() {return allTetrahedron();}
+    
+    /** 获取四面体的视图，会记录当前的代数 */
+    Tetrahedron tet_(int aTet) {return new Tetrahedron(aTet, mTetGen[aTet]);}
+    /** 获取节点的视图，保证同一个节点总是获取到相同的视图，从而可以缓存统计信息 */
+    Vertex vertex_(int aVertex) {
+        Vertex tVertex = mVertexView[aVertex];
+        if (tVertex == null) {
+            tVertex = new Vertex(aVertex);
+            mVertexView[aVertex] = tVertex;
+        }
+        return tVertex;
+    }
+    
+    /** 外接球的存储，未计算的位置使用 NaN 标记 */
+    private static double[] newCenter_(int aCapacity) {
+        double[] rCenter = new double[aCapacity*4];
+        Arrays.fill(rCenter, Double.NaN);
+        return rCenter;
+    }
+    /** 第一次需要外接球时按照当前的四面体容量分配，之后随 {@link #ensureTetCapacity_} 一起增长 */
+    private void ensureCenter_() {
+        if (mTetCenter == null) mTetCenter = newCenter_(mTetGen.length);
+    }
+    boolean hasCenter_(int aTet) {return mTetCenter!=null && !Double.isNaN(mTetCenter[aTet<<2]);}
+    void dropCenter_(int aTet) {if (mTetCenter != null) mTetCenter[aTet<<2] = Double.NaN;}
+    /** 返回四面体外接球在 mTetCenter 中的起始位置，这个值是恒定的，但是不需要总是计算 */
+    int centerSphere_(int aTet) {
+        ensureCenter_();
+        final int tBase = aTet<<2;
+        if (Double.isNaN(mTetCenter[tBase])) {
+            if (!mNoWarning && isUniverseTet(aTet)) System.err.println("WARNING: This Tetrahedron is Universe, centerSphere may be wrong.");
+            computeCenter_(aTet);
+        }
+        return tBase;
+    }
+    private void computeCenter_(int aTet) {
+        final int tBase = aTet<<2;
+        final double[] tXYZ = mVertexXYZ;
+        final int tA = mTetVertex[tBase+PosTet.A]*3, tB = mTetVertex[tBase+PosTet.B]*3, tC = mTetVertex[tBase+PosTet.C]*3, tD = mTetVertex[tBase+PosTet.D]*3;
+        MathEX.Graph.centerSphere(
+              tXYZ[tA], tXYZ[tA+1], tXYZ[tA+2]
+            , tXYZ[tB], tXYZ[tB+1], tXYZ[tB+2]
+            , tXYZ[tC], tXYZ[tC+1], tXYZ[tC+2]
+            , tXYZ[tD], tXYZ[tD+1], tXYZ[tD+2]
+            , mTetCenter, tBase);
+    }
+    /** 两个外接球球心的距离，输入为 {@link #centerSphere_} 返回的位置 */
+    private double centerDistance_(int aA, int aB) {
+        final double[] tCenter = mTetCenter;
+        final double tX = tCenter[aB  ] - tCenter[aA  ];
+        final double tY = tCenter[aB+1] - tCenter[aA+1];
+        final double tZ = tCenter[aB+2] - tCenter[aA+2];
+        return Math.sqrt(tX*tX + tY*tY + tZ*tZ);
+    }
+    /** 三个外接球球心组成的三角形的面积，和 {@link MathEX.Graph#area} 一致 */
+    private double centerArea_(int aA, int aB, int aC) {
+        final double[] tCenter = mTetCenter;
+        final double tABX = tCenter[aB  ] - tCenter[aA  ], tACX = tCenter[aC  ] - tCenter[aA  ];
+        final double tABY = tCenter[aB+1] - tCenter[aA+1], tACY = tCenter[aC+1] - tCenter[aA+1];
+        final double tABZ = tCenter[aB+2] - tCenter[aA+2], tACZ = tCenter[aC+2] - tCenter[aA+2];
+        final double tX = tABY*tACZ - tACY*tABZ;
+        final double tY = tABZ*tACX - tACZ*tABX;
+        final double tZ = tABX*tACY - tACX*tABY;
+        return 0.5 * Math.sqrt(tX*tX + tY*tY + tZ*tZ);
+    }
+    
+    
+    /**
+     * 检测节点的 voronoi 多面体是否只依赖于 ghost 盒子内部的节点，用于 {@link ParallelVoronoiBuilder} 判断子区域的结果是否和整体构建一致：
+     * 所有节点都在整体的包围盒中，因此只要近邻四面体的外接球都不和 {@code 包围盒 - ghost 盒子} 的区域相交，
+     * 盒子外的节点就不会影响这些四面体，也就不会影响此节点的 voronoi 多面体
+     * <p>
+     * 靠近表面的四面体外接球通常会和上述区域相交，此时再通过 aOutside 精确检测球内是否真的有 ghost 盒子外的节点
+     * <p>
+     * 凸包上的节点的 voronoi 多面体本身是无界的，对于这些节点要求对应的凸包面也是整体的凸包面，
+     * 即此面外侧的半空间中没有任何节点，同样只需要通过 aOutside 检测 ghost 盒子外的节点
+     * @param aVertex 节点的 id
+     * @param aGhost ghost 盒子，按照 {@code minX, minY, minZ, maxX, maxY, maxZ} 排列
+     * @param aBound 所有节点的包围盒，排列方式相同
+     * @param aOutside 精确检测 ghost 盒子外的节点
+     */
+    boolean starInBox_(int aVertex, double[] aGhost, double[] aBound, IOutside aOutside) {
+        // 只需要近邻四面体，因此不需要统计 voronoi 面
+        final Star tStar = walkedStar_(aVertex);
+        for (int k = 0; k < tStar.mNeighborTetNum; ++k) if (!tetInBox_(tStar.mNeighborTet[k], aGhost, aBound, aOutside)) return false;
+        return true;
+    }
+    /**
+     * 一次检测前 rPassed.length 个节点，结果和逐个调用 {@link #starInBox_} 一致，
+     * 这里直接遍历所有的四面体，从而每个四面体只需要检测一次，并且不需要遍历星形
+     * @param rPassed 写入每个节点是否通过检测，顺序和 {@link #getVertex(int)} 一致
+     */
+    void allInBox_(double[] aGhost, double[] aBound, IOutside aOutside, boolean[] rPassed) {
+        Arrays.fill(rPassed, true);
+        final int tEnd = rPassed.length + INIT_VERTEX_NUM;
+        for (int k = 0; k < mTetNum; ++k) {
+            final int tTet = mLiveTet[k], tBase = tTet<<2;
+            // 四面体中需要检测的节点都已经不满足时不再需要检测
+            boolean tNeed = false;
+            for (int i = 0; i < 4; ++i) {
+                final int tVertex = mTetVertex[tBase+i];
+                if (tVertex>=INIT_VERTEX_NUM && tVertex<tEnd && rPassed[tVertex-INIT_VERTEX_NUM]) {tNeed = true; break;}
+            }
+            if (!tNeed || tetInBox_(tTet, aGhost, aBound, aOutside)) continue;
+            for (int i = 0; i < 4; ++i) {
+                final int tVertex = mTetVertex[tBase+i];
+                if (tVertex>=INIT_VERTEX_NUM && tVertex<tEnd) rPassed[tVertex-INIT_VERTEX_NUM] = false;
+            }
+        }
+    }
+    /** 单个近邻四面体的检测，见 {@link #starInBox_} */
+    private boolean tetInBox_(int aTet, double[] aGhost, double[] aBound, IOutside aOutside) {
+        final int tBase = aTet<<2;
+        int tUniverseNum = 0;
+        byte tUniverseFace = PosTet.NULL;
+        for (byte tFace : PosTet.VERTICES) if (isUniverseVertex(mTetVertex[tBase+tFace])) {++tUniverseNum; tUniverseFace = tFace;}
+        if (tUniverseNum == 0) {
+            final int tCenter = centerSphere_(aTet);
+            final double tCX = mTetCenter[tCenter], tCY = mTetCenter[tCenter+1], tCZ = mTetCenter[tCenter+2];
+            final double tR = Math.sqrt(mTetCenter[tCenter+3]) * (1.0+SECURE_EPS);
+            return !sphereOutside_(tCX, tCY, tCZ, tR*tR, aGhost, aBound) || !aOutside.inSphere(this, aTet, tCX, tCY, tCZ, tR);
+        }
+        // 只有一个虚构顶点的四面体对应凸包上的面，更多虚构顶点的四面体只是无界部分的一部分，不需要考虑
+        return tUniverseNum!=1 || !hullFaceOutside_(aTet, tUniverseFace, aGhost, aBound, aOutside);
+    }
+    /** 用于 {@link #starInBox_} 精确检测外接球内部，或者凸包面外侧是否有 ghost 盒子外的节点 */
+    interface IOutside {
+        /**
+         * @param aTet 需要检测的四面体，使用 {@link #tetInSphere(int, double, double, double)} 进行精确检测
+         * @param aX 外接球球心的 x 坐标，用于快速排除
+         * @param aR 稍微放大的外接球半径
+         * @return 是否有 ghost 盒子外的节点在外接球内部或者球面上
+         */
+        boolean inSphere(VoronoiBuilder aBuilder, int aTet, double aX, double aY, double aZ, double aR);
+        /**
+         * @param aNX 凸包面的单位外法向的 x 分量
+         * @param aD 稍微放宽的半空间的边界，即检测 {@code aNX*x + aNY*y + aNZ*z >= aD}
+         * @return 是否有 ghost 盒子外的节点在此半空间中
+         */
+        boolean inHalfSpace(double aNX, double aNY, double aNZ, double aD);
+    }
+    /** 球是否和 {@code aBound - aGhost} 的区域相交，将此区域拆分成至多六个盒子分别检测 */
+    private static boolean sphereOutside_(double aX, double aY, double aZ, double aR2, double[] aGhost, double[] aBound) {
+        final double tX0 = Math.max(aGhost[0], aBound[0]), tX1 = Math.min(aGhost[3], aBound[3]);
+        final double tY0 = Math.max(aGhost[1], aBound[1]), tY1 = Math.min(aGhost[4], aBound[4]);
+        // x 方向两侧的完整板块
+        if (aGhost[0]>aBound[0] && sphereBox_(aX, aY, aZ, aR2, aBound[0], aBound[1], aBound[2], aGhost[0], aBound[4], aBound[5])) return true;
+        if (aGhost[3]<aBound[3] && sphereBox_(aX, aY, aZ, aR2, aGhost[3], aBound[1], aBound[2], aBound[3], aBound[4], aBound[5])) return true;
+        // y 方向两侧，x 方向限制在 ghost 盒子内
+        if (aGhost[1]>aBound[1] && sphereBox_(aX, aY, aZ, aR2, tX0, aBound[1], aBound[2], tX1, aGhost[1], aBound[5])) return true;
+        if (aGhost[4]<aBound[4] && sphereBox_(aX, aY, aZ, aR2, tX0, aGhost[4], aBound[2], tX1, aBound[4], aBound[5])) return true;
+        // z 方向两侧，xy 方向都限制在 ghost 盒子内
+        if (aGhost[2]>aBound[2] && sphereBox_(aX, aY, aZ, aR2, tX0, tY0, aBound[2], tX1, tY1, aGhost[2])) return true;
+        if (aGhost[5]<aBound[5] && sphereBox_(aX, aY, aZ, aR2, tX0, tY0, aGhost[5], tX1, tY1, aBound[5])) return true;
+        return false;
+    }
+    private static boolean sphereBox_(double aX, double aY, double aZ, double aR2, double aX0, double aY0, double aZ0, double aX1, double aY1, double aZ1) {
+        final double tDX = Math.max(0.0, Math.max(aX0-aX, aX-aX1));
+        final double tDY = Math.max(0.0, Math.max(aY0-aY, aY-aY1));
+        final double tDZ = Math.max(0.0, Math.max(aZ0-aZ, aZ-aZ1));
+        return tDX*tDX + tDY*tDY + tDZ*tDZ <= aR2;
+    }
+    /** 半空间 {@code aNX*x + aNY*y + aNZ*z >= aD} 是否和 {@code aBound - aGhost} 的区域相交，拆分方式和 {@link #sphereOutside_} 一致 */
+    private static boolean halfSpaceOutside_(double aNX, double aNY, double aNZ, double aD, double[] aGhost, double[] aBound) {
+        final double tX0 = Math.max(aGhost[0], aBound[0]), tX1 = Math.min(aGhost[3], aBound[3]);
+        final double tY0 = Math.max(aGhost[1], aBound[1]), tY1 = Math.min(aGhost[4], aBound[4]);
+        if (aGhost[0]>aBound[0] && halfSpaceBox_(aNX, aNY, aNZ, aD, aBound[0], aBound[1], aBound[2], aGhost[0], aBound[4], aBound[5])) return true;
+        if (aGhost[3]<aBound[3] && halfSpaceBox_(aNX, aNY, aNZ, aD, aGhost[3], aBound[1], aBound[2], aBound[3], aBound[4], aBound[5])) return true;
+        if (aGhost[1]>aBound[1] && halfSpaceBox_(aNX, aNY, aNZ, aD, tX0, aBound[1], aBound[2], tX1, aGhost[1], aBound[5])) return true;
+        if (aGhost[4]<aBound[4] && halfSpaceBox_(aNX, aNY, aNZ, aD, tX0, aGhost[4], aBound[2], tX1, aBound[4], aBound[5])) return true;
+        if (aGhost[2]>aBound[2] && halfSpaceBox_(aNX, aNY, aNZ, aD, tX0, tY0, aBound[2], tX1, tY1, aGhost[2])) return true;
+        if (aGhost[5]<aBound[5] && halfSpaceBox_(aNX, aNY, aNZ, aD, tX0, tY0, aGhost[5], tX1, tY1, aBound[5])) return true;
+        return false;
+    }
+    private static boolean halfSpaceBox_(double aNX, double aNY, double aNZ, double aD, double aX0, double aY0, double aZ0, double aX1, double aY1, double aZ1) {
+        return Math.max(aNX*aX0, aNX*aX1) + Math.max(aNY*aY0, aNY*aY1) + Math.max(aNZ*aZ0, aNZ*aZ1) >= aD;
+    }
+    /**
+     * 凸包面外侧（指向虚构顶点的一侧）的半空间中是否有 ghost 盒子外的节点，没有时此面也是整体的凸包面；
+     * 半空间会稍微放宽，保证和此面共面的节点也会被检测到，面退化时直接认为不满足
+     */
+    private boolean hullFaceOutside_(int aTet, byte aUniverseFace, double[] aGhost, double[] aBound, IOutside aOutside) {
+        final int tBase = aTet<<2;
+        final double[] tXYZ = mVertexXYZ;
+        final int tU = mTetVertex[tBase+aUniverseFace]*3;
+        final int tA = mTetVertex[tBase+((aUniverseFace+1)&3)]*3, tB = mTetVertex[tBase+((aUniverseFace+2)&3)]*3, tC = mTetVertex[tBase+((aUniverseFace+3)&3)]*3;
+        final double tABX = tXYZ[tB]-tXYZ[tA], tABY = tXYZ[tB+1]-tXYZ[tA+1], tABZ = tXYZ[tB+2]-tXYZ[tA+2];
+        final double tACX = tXYZ[tC]-tXYZ[tA], tACY = tXYZ[tC+1]-tXYZ[tA+1], tACZ = tXYZ[tC+2]-tXYZ[tA+2];
+        double tNX = tABY*tACZ - tABZ*tACY;
+        double tNY = tABZ*tACX - tABX*tACZ;
+        double tNZ = tABX*tACY - tABY*tACX;
+        final double tNorm = Math.sqrt(tNX*tNX + tNY*tNY + tNZ*tNZ);
+        if (!(tNorm > 0.0)) return true;
+        if (tNX*(tXYZ[tU]-tXYZ[tA]) + tNY*(tXYZ[tU+1]-tXYZ[tA+1]) + tNZ*(tXYZ[tU+2]-tXYZ[tA+2]) < 0.0) {tNX = -tNX; tNY = -tNY; tNZ = -tNZ;}
+        tNX /= tNorm; tNY /= tNorm; tNZ /= tNorm;
+        double tD = tNX*tXYZ[tA] + tNY*tXYZ[tA+1] + tNZ*tXYZ[tA+2];
+        tD -= SECURE_EPS * (Math.abs(tD) + Math.sqrt(tABX*tABX + tABY*tABY + tABZ*tABZ));
+        return halfSpaceOutside_(tNX, tNY, tNZ, tD, aGhost, aBound) && aOutside.inHalfSpace(tNX, tNY, tNZ, tD);
+    }
+    /** 节点的星形版本，近邻四面体有任何改变时都会增加，用于 {@link ParallelVoronoiBuilder} 跳过星形没有改变的节点的重复检测 */
+    int starVersion_(int aVertex) {return mVertexStar[aVertex];}
+    /** 节点的近邻四面体是否都不是虚构的四面体，即 voronoi 多面体是否有界 */
+    boolean starBounded_(int aVertex) {
+        final Star tStar = walkedStar_(aVertex);
+        for (int k = 0; k < tStar.mNeighborTetNum; ++k) if (isUniverseTet(tStar.mNeighborTet[k])) return false;
+        return true;
+    }
+    
+    
+    /** 四面体的轻量视图，只存储 id 和创建时的代数，统计信息在访问时直接从数组中获取 */
+    class Tetrahedron implements ITetrahedron {
+        final int mID, mGen;
+        Tetrahedron(int aID, int aGen) {mID = aID; mGen = aGen;}
+        
+        /** 对应位置被删除或者被重复使用都会让此视图失效 */
+        @Override public boolean valid() {return tetValid(mID, mGen);}
+        @Override public IXYZ centerSphere() {
+            if (!valid()) return null;
+            final int tCenter = centerSphere_(mID);
+            return new XYZ(mTetCenter[tCenter], mTetCenter[tCenter+1], mTetCenter[tCenter+2]);
+        }
+        /** 统计近邻的节点和四面体，只需要排除边界结构即可；这里会保留边界四面体保证近邻都会获取到 */
+        @Override public @Unmodifiable List<IVertex> neighborVertex() {
+            List<IVertex> rNeighborVertex = new ArrayList<>(4);
+            if (!valid()) return rNeighborVertex;
+            final int tBase = mID<<2;
+            for (int i = 0; i < 4; ++i) {
+                int tVertex = mTetVertex[tBase+i];
+                if (!isUniverseVertex(tVertex)) rNeighborVertex.add(vertex_(realVertex_(tVertex)));
+            }
+            return rNeighborVertex;
+        }
+        @Override public @Unmodifiable List<ITetrahedron> neighborTetrahedron() {
+            List<ITetrahedron> rNeighborTet = new ArrayList<>(4);
+            if (!valid()) return rNeighborTet;
+            final int tBase = mID<<2;
+            for (int i = 0; i < 4; ++i) {
+                int tTet = mTetNeighbor[tBase+i];
+                if (tTet != NULL_ID) rNeighborTet.add(tet_(tTet));
+            }
+            return rNeighborTet;
+        }
+        @Override public int id() {return mID;}
+        @Override public int neighborVertex(int[] rOut) {
+            if (!valid()) return 0;
+            final int tBase = mID<<2;
+            int rNum = 0;
+            for (int i = 0; i < 4; ++i) {
+                int tVertex = mTetVertex[tBase+i];
+                if (!isUniverseVertex(tVertex)) rOut[rNum++] = realVertex_(tVertex)-INIT_VERTEX_NUM;
+            }
+            return rNum;
+        }
+        @Override public int neighborTetrahedron(int[] rOut) {
+            if (!valid()) return 0;
+            final int tBase = mID<<2;
+            int rNum = 0;
+            for (int i = 0; i < 4; ++i) {
+                int tTet = mTetNeighbor[tBase+i];
+                if (tTet != NULL_ID) rOut[rNum++] = tTet;
+            }
+            return rNum;
+        }
+        
+        /** 视图只比较 id 和代数 */
+        @Override public boolean equals(Object aRHS) {
+            if (this == aRHS) return true;
+            if (!(aRHS instanceof Tetrahedron)) return false;
+            Tetrahedron tRHS = (Tetrahedron)aRHS;
+            return mID==tRHS.mID && mGen==tRHS.mGen && builder_()==tRHS.builder_();
+        }
+        @Override public int hashCode() {return 31*mID + mGen;}
+        private VoronoiBuilder builder_() {return VoronoiBuilder.this;}
+    }
+    
+    /**
+     * 统计节点信息时使用的缓存，避免每次统计都重新创建；
+     * 只包含遍历使用的栈以及基本类型的哈希表，每次统计前通过增加代数来清空，不需要按照四面体的数目分配
+     */
+    static class StatBuffer {
+        int[] mStack = new int[64];
+        /** 已经处理过的四面体 */
+        final IntTable mVisited = new IntTable();
+        /** 近邻节点 id 到其在 {@link Star} 中位置的映射 */
+        final IntTable mSlot = new IntTable();
+    }
+    /** 简单的开放寻址哈希表，键和值都为非负的 int，通过代数标记有效的位置，从而可以 O(1) 清空 */
+    static class IntTable {
+        private int[] mKey = new int[64], mValue = new int[64], mStamp = new int[64];
+        private int mGen = 1, mSize = 0, mMask = 63;
+        
+        void clear() {
+            mSize = 0;
+            if (++mGen == Integer.MAX_VALUE) {Arrays.fill(mStamp, 0); mGen = 1;}
+        }
+        private int slot_(int aKey) {
+            final int tHash = aKey * 0x9E3779B9;
+            int tSlot = (tHash ^ (tHash>>>16)) & mMask;
+            while (mStamp[tSlot]==mGen && mKey[tSlot]!=aKey) tSlot = (tSlot+1) & mMask;
+            return tSlot;
+        }
+        /** @return 对应的值，不存在时返回 -1 */
+        int get(int aKey) {
+            final int tSlot = slot_(aKey);
+            return mStamp[tSlot]==mGen ? mValue[tSlot] : -1;
+        }
+        /** 添加新的键值，需要保证键不存在 */
+        void put(int aKey, int aValue) {
+            if ((mSize+1)*2 > mKey.length) grow_();
+            final int tSlot = slot_(aKey);
+            mKey[tSlot] = aKey; mValue[tSlot] = aValue; mStamp[tSlot] = mGen;
+            ++mSize;
+        }
+        private void grow_() {
+            final int[] oKey = mKey, oValue = mValue, oStamp = mStamp;
+            final int oGen = mGen;
+            final int tLen = oKey.length*2;
+            mKey = new int[tLen]; mValue = new int[tLen]; mStamp = new int[tLen];
+            mMask = tLen-1; mGen = 1;
+            for (int i = 0; i < oKey.length; ++i) if (oStamp[i] == oGen) {
+                final int tSlot = slot_(oKey[i]);
+                mKey[tSlot] = oKey[i]; mValue[tSlot] = oValue[i]; mStamp[tSlot] = mGen;
+            }
+        }
+    }
+    /**
+     * 键为 long 的开放寻址哈希集合，避免装箱；线性探测，删除时将后续的键前移从而不需要墓碑，
+     * 同样通过代数标记有效的位置，从而可以 O(1) 清空
+     */
+    static class LongSet {
+        private long[] mKey = new long[64];
+        private int[] mStamp = new int[64];
+        private int mGen = 1, mSize = 0, mMask = 63;
+        
+        void clear() {
+            mSize = 0;
+            if (++mGen == Integer.MAX_VALUE) {Arrays.fill(mStamp, 0); mGen = 1;}
+        }
+        int size() {return mSize;}
+        private int home_(long aKey) {
+            final long tHash = aKey * 0x9E3779B97F4A7C15L;
+            return (int)(tHash ^ (tHash>>>32) ^ (tHash>>>16)) & mMask;
+        }
+        private int slot_(long aKey) {
+            int tSlot = home_(aKey);
+            while (mStamp[tSlot]==mGen && mKey[tSlot]!=aKey) tSlot = (tSlot+1) & mMask;
+            return tSlot;
+        }
+        boolean contains(long aKey) {return mStamp[slot_(aKey)] == mGen;}
+        /** @return 之前不存在此键时返回 true */
+        boolean add(long aKey) {
+            if ((mSize+1)*2 > mKey.length) grow_();
+            final int tSlot = slot_(aKey);
+            if (mStamp[tSlot] == mGen) return false;
+            mKey[tSlot] = aKey; mStamp[tSlot] = mGen;
+            ++mSize;
+            return true;
+        }
+        /** @return 之前存在此键时返回 true */
+        boolean remove(long aKey) {
+            int tSlot = slot_(aKey);
+            if (mStamp[tSlot] != mGen) return false;
+            // 后续的键如果可以放到空出的位置（探测起点不在两者之间）则前移，保证探测链不会中断
+            for (int tNext = (tSlot+1) & mMask; mStamp[tNext] == mGen; tNext = (tNext+1) & mMask) {
+                if (((tNext-home_(mKey[tNext])) & mMask) < ((tNext-tSlot) & mMask)) continue;
+                mKey[tSlot] = mKey[tNext];
+                tSlot = tNext;
+            }
+            mStamp[tSlot] = 0;
+            --mSize;
+            return true;
+        }
+        private void grow_() {
+            final long[] oKey = mKey;
+            final int[] oStamp = mStamp;
+            final int oGen = mGen;
+            final int tLen = oKey.length*2;
+            mKey = new long[tLen]; mStamp = new int[tLen];
+            mMask = tLen-1; mGen = 1;
+            for (int i = 0; i < oKey.length; ++i) if (oStamp[i] == oGen) {
+                final int tSlot = slot_(oKey[i]);
+                mKey[tSlot] = oKey[i]; mStamp[tSlot] = mGen;
+            }
+        }
+    }
+    
+    /** 星形遍历时中心节点位于每个位置时，另外三个面（同时也是另外三个顶点）的处理顺序 */
+    private static final byte[][] STAR_FACES = {
+          {PosTet.B, PosTet.C, PosTet.D}
+        , {PosTet.A, PosTet.C, PosTet.D}
+        , {PosTet.B, PosTet.A, PosTet.D}
+        , {PosTet.B, PosTet.C, PosTet.A}
+    };
+    /**
+     * 节点的星形（包含此节点的所有四面体）以及对应 voronoi 多面体的统计信息，全部存储在基本类型的数组中；
+     * 数组只会增长，因此重复统计时不会再分配内存
+     * <p>
+     * 每个近邻节点对应一个 voronoi 面，保留绕棱的原始边长，截断后的顶点数目则在阈值改变时通过 {@link #applyThreshold_} 重新统计；
+     * 绕棱的四面体不完整时此面不会有任何边长，面积为 0
+     */
+    class Star implements IVoronoiCell {
+        int mID = NULL_ID;
+        /** 近邻四面体，按照遍历的顺序排列，这里会保留边界四面体保证近邻都会获取到 */
+        int mNeighborTetNum = 0;
+        int[] mNeighborTet = new int[32];
+        /** 近邻节点，按照第一次出现的顺序排列 */
+        int mNeighborVertexNum = 0;
+        int[] mNeighborVertex = new int[16];
+        /** 每个近邻节点第一个共棱的非虚构四面体，在遍历时直接记录 */
+        int[] mFirstTet = new int[16];
+        /** 对应 voronoi 面的面积，到近邻节点的距离，以及截断后的顶点数目 */
+        double[] mArea = new double[16], mDis = new double[16];
+        int[] mFaceSize = new int[16];
+        /** 对应 voronoi 面的边长位于 mEdge 中的 {@code [mEdgeStart[i], mEdgeStart[i+1])} */
+        int[] mEdgeStart = new int[17];
+        double[] mEdge = new double[64];
+        /** 所有 voronoi 面的总面积，用于面积的相对截断 */
+        double mSurfaceArea = 0.0;
+        
+        private int addNeighborVertex_(int aVertex) {
+            final int tIdx = mNeighborVertexNum++;
+            if (tIdx == mNeighborVertex.length) {
+                final int tLen = tIdx*2;
+                mNeighborVertex = Arrays.copyOf(mNeighborVertex, tLen);
+                mFirstTet = Arrays.copyOf(mFirstTet, tLen);
+                mArea = Arrays.copyOf(mArea, tLen);
+                mDis = Arrays.copyOf(mDis, tLen);
+                mFaceSize = Arrays.copyOf(mFaceSize, tLen);
+                mEdgeStart = Arrays.copyOf(mEdgeStart, tLen+1);
+            }
+            mNeighborVertex[tIdx] = aVertex;
+            mFirstTet[tIdx] = NULL_ID;
+            return tIdx;
+        }
+        private void addNeighborTet_(int aTet) {
+            if (mNeighborTetNum == mNeighborTet.length) mNeighborTet = Arrays.copyOf(mNeighborTet, mNeighborTetNum*2);
+            mNeighborTet[mNeighborTetNum++] = aTet;
+        }
+        private void addEdge_(int aIdx, double aEdge) {
+            if (aIdx == mEdge.length) mEdge = Arrays.copyOf(mEdge, aIdx*2);
+            mEdge[aIdx] = aEdge;
+        }
+        
+        /**
+         * 遍历节点 aVertex 的星形并统计 voronoi 面，只会写入此对象以及 aBuffer，因此不同线程使用不同的对象即可并行；
+         * 遍历时直接记录每个近邻节点第一个共棱的四面体，之后每条棱只会绕行一次
+         */
+        void walk_(int aVertex, StatBuffer aBuffer) {
+            walkStar_(aVertex, aBuffer);
+            final IntTable tVisited = aBuffer.mVisited;
+            // 根据每个近邻节点计算每个 voronoi 面的边长和面积
+            double tSurfaceArea = 0.0;
+            int tEdgeNum = 0;
+            for (int i = 0; i < mNeighborVertexNum; ++i) {
+                mEdgeStart[i] = tEdgeNum;
+                mArea[i] = 0.0;
+                final int tVertex = mNeighborVertex[i];
+                mDis[i] = vertexDistance(aVertex, tVertex);
+                final int tTet0 = mFirstTet[i];
                 // 非常奇异的情况，此棱全由边界四面体构成，直接跳过即可
-                if (tTet0==null || tA==null) {
+                if (tTet0 == NULL_ID) {
                     if (!mNoWarning) System.err.println("WARNING: Voronoi of this node is Incomplete, voronoi parameters may be wrong.");
                     continue;
                 }
-                // 绕棱方向计算面积并统计四面体数目
-                int rTetNum = 1;
-                double rArea = 0.0;
-                // 绕棱获取下一个四面体
-                Tetrahedron tTet2 = tTet0.getNeighbor(this, tVertex, null);
-                XYZ tB = (tTet2!=null && !isUniverse(tTet2) && mNeighborTet.contains(tTet2)) ? tTet2.centerSphere_() : null;
-                // 如果没有获取到（没有近邻，不包含在近邻中，边界四面体），则输出警告，结束环绕
-                if (tB == null) {
+                final int tA = centerSphere_(tTet0);
+                // 绕棱获取下一个四面体，如果没有获取到（没有近邻，不包含在近邻中，边界四面体），则输出警告，结束环绕
+                int tTet2 = tetNeighborAroundEdge(tTet0, aVertex, tVertex, NULL_ID);
+                if (tTet2==NULL_ID || isUniverseTet(tTet2) || tVisited.get(tTet2)<0) {
                     if (!mNoWarning) System.err.println("WARNING: Voronoi of this node is Incomplete, voronoi parameters may be wrong.");
                     continue;
                 }
-                // 如果 AB 距离过小需要进行截断
-                if (lengthValid(tA.distance(tB), tDis)) ++rTetNum;
-                Tetrahedron tTet1 = tTet0;
+                int tB = centerSphere_(tTet2);
+                addEdge_(tEdgeNum++, centerDistance_(tA, tB));
+                double rArea = 0.0;
+                int tTet1 = tTet0;
                 while (true) {
-                    // 绕棱获取下一个四面体
-                    Tetrahedron tTet3 = tTet2.getNeighbor(this, tVertex, tTet1);
-                    XYZ tC = (tTet3!=null && !isUniverse(tTet3) && mNeighborTet.contains(tTet3)) ? tTet3.centerSphere_() : null;
-                    // 如果没有获取到（没有近邻，不包含在近邻中，边界四面体），则输出警告，结束环绕
-                    if (tC == null) {
+                    final int tTet3 = tetNeighborAroundEdge(tTet2, aVertex, tVertex, tTet1);
+                    if (tTet3==NULL_ID || isUniverseTet(tTet3) || tVisited.get(tTet3)<0) {
                         if (!mNoWarning) System.err.println("WARNING: Voronoi of this node is Incomplete, voronoi parameters may be wrong.");
                         break;
                     }
                     // 如果为初始四面体同样结束环绕
                     if (tTet3 == tTet0) break;
-                    // 成功获取到下一个四面体，更新数据；
-                    // 如果 BC 距离过小需要进行截断
-                    if (lengthValid(tB.distance(tC), tDis)) ++rTetNum;
-                    rArea += MathEX.Graph.area(tA, tB, tC);
+                    // 成功获取到下一个四面体，更新数据
+                    final int tC = centerSphere_(tTet3);
+                    addEdge_(tEdgeNum++, centerDistance_(tB, tC));
+                    rArea += centerArea_(tA, tB, tC);
                     tB = tC;
                     tTet1 = tTet2;
                     tTet2 = tTet3;
                 }
-                // 统计完成，设置此节点的信息并累加总面积
+                // 统计完成，设置此面的信息并累加总面积
+                mArea[i] = rArea;
                 tSurfaceArea += rArea;
-                tVertexEntry.setValue(new VertexInfo(rTetNum, rArea, tDis));
             }
-            // 然后再遍历一次截断过小的面积
-            if (areaCutoff()) for (@Nullable VertexInfo tInfo : mNeighborVertex.values()) if (tInfo != null) {
-                // 直接将 mTetNum 设为 0 标记为界面被截断，保留 mArea 的值保证体积计算正确
-                if (!areaValid(tInfo.mArea, tSurfaceArea)) {
-                    tInfo.mTetNum = 0;
+            mEdgeStart[mNeighborVertexNum] = tEdgeNum;
+            mSurfaceArea = tSurfaceArea;
+        }
+        /** 只遍历节点 aVertex 的星形，得到近邻四面体和近邻节点，不会统计 voronoi 面 */
+        void walkStar_(int aVertex, StatBuffer aBuffer) {
+            mID = aVertex;
+            mNeighborTetNum = 0;
+            mNeighborVertexNum = 0;
+            final IntTable tVisited = aBuffer.mVisited, tSlot = aBuffer.mSlot;
+            tVisited.clear(); tSlot.clear();
+            // 缓存需要处理的四面体，从栈顶获取则为 DFS
+            int[] tStack = aBuffer.mStack;
+            int tTop = 0;
+            tStack[tTop++] = mVertexAdj[aVertex];
+            while (tTop > 0) {
+                final int tTet = tStack[--tTop];
+                // 如果已经处理过则跳过
+                if (tVisited.get(tTet) >= 0) continue;
+                tVisited.put(tTet, 0);
+                final int tBase = tTet<<2;
+                // 根据中心节点所在的位置来添加周围近邻以及节点
+                final byte tPos = tetOrdinalOfVertex(tTet, aVertex);
+                if (tPos == PosTet.NULL) throw new RuntimeException();
+                final byte[] tFaces = STAR_FACES[tPos];
+                final boolean tReal = !isUniverseTet(tTet);
+                // 先添加另外三个节点，同时记录第一个共棱的非虚构四面体
+                for (byte tFace : tFaces) {
+                    final int tVertex = mTetVertex[tBase+tFace];
+                    if (isUniverseVertex(tVertex)) continue;
+                    int tIdx = tSlot.get(tVertex);
+                    if (tIdx < 0) {tIdx = addNeighborVertex_(tVertex); tSlot.put(tVertex, tIdx);}
+                    if (tReal && mFirstTet[tIdx]==NULL_ID) mFirstTet[tIdx] = tTet;
                 }
+                // 再添加三个近邻面的四面体到栈中等待下一步处理；这里需要保留巨大四面体因为还保存着合法点
+                if (tTop+3 > tStack.length) {tStack = Arrays.copyOf(tStack, tStack.length*2); aBuffer.mStack = tStack;}
+                for (byte tFace : tFaces) {
+                    final int tNext = mTetNeighbor[tBase+tFace];
+                    if (tNext!=NULL_ID && tVisited.get(tNext)<0) tStack[tTop++] = tNext;
+                }
+                // 此四面体处理完成
+                addNeighborTet_(tTet);
             }
         }
-        /** voronoi 统计信息，现在只有需要时才会进行统计 */
-        @Override public int coordination() {
-            updateStat_();
-            int rCoordination = 0;
-            // 在这里对面积较小的面进行截断，现在可以直接检测 mTetNum
-            for (@Nullable VertexInfo tInfo : mNeighborVertex.values()) if (tInfo!=null && tInfo.mTetNum>=3) {
-                ++rCoordination;
+        /** {@link IVoronoiCell} 的实现，直接读取数组 */
+        @Override public int idx() {return mID-INIT_VERTEX_NUM;}
+        @Override public int faceNum() {return mNeighborVertexNum;}
+        @Override public int neighbor(int aFace) {return realVertex_(mNeighborVertex[face_(aFace)])-INIT_VERTEX_NUM;}
+        @Override public double area(int aFace) {return mArea[face_(aFace)];}
+        @Override public double distance(int aFace) {return mDis[face_(aFace)];}
+        @Override public int faceSize(int aFace) {return mFaceSize[face_(aFace)];}
+        @Override public double surfaceArea() {return mSurfaceArea;}
+        private int face_(int aFace) {
+            if (aFace<0 || aFace>=mNeighborVertexNum) throw new IndexOutOfBoundsException("Face: "+aFace+", Size: "+mNeighborVertexNum);
+            return aFace;
+        }
+        
+        /** 此 voronoi 面是否完整 */
+        boolean hasFace_(int aIdx) {return mEdgeStart[aIdx+1] > mEdgeStart[aIdx];}
+        /** 根据当前的阈值统计每个 voronoi 面截断后的顶点数目（共棱的四面体数目） */
+        void applyThreshold_() {
+            final boolean tAreaCutoff = areaCutoff();
+            for (int i = 0; i < mNeighborVertexNum; ++i) {
+                if (!hasFace_(i)) {mFaceSize[i] = 0; continue;}
+                // 如果边长过小需要进行截断
+                int rFaceSize = 1;
+                final double tDis = mDis[i];
+                for (int j = mEdgeStart[i]; j < mEdgeStart[i+1]; ++j) if (lengthValid(mEdge[j], tDis)) ++rFaceSize;
+                // 直接将顶点数目设为 0 标记为界面被截断，保留 mArea 的值保证体积计算正确
+                if (tAreaCutoff && !areaValid(mArea[i], mSurfaceArea)) rFaceSize = 0;
+                mFaceSize[i] = rFaceSize;
             }
+        }
+        
+        int coordination_() {
+            int rCoordination = 0;
+            // 在这里对面积较小的面进行截断，现在可以直接检测顶点数目
+            for (int i = 0; i < mNeighborVertexNum; ++i) if (mFaceSize[i] >= 3) ++rCoordination;
             return rCoordination;
         }
-        @Override public double atomicVolume() {
-            updateStat_();
+        double atomicVolume_() {
             double rAtomicVolume = 0.0;
-            // 使用棱锥体积公式进行计算
-            for (@Nullable VertexInfo tInfo : mNeighborVertex.values()) if (tInfo != null) {
-                rAtomicVolume += tInfo.mArea * tInfo.mDis / 6.0;
-            }
+            // 使用棱锥体积公式进行计算，不完整的面面积为 0
+            for (int i = 0; i < mNeighborVertexNum; ++i) if (hasFace_(i)) rAtomicVolume += mArea[i] * mDis[i] / 6.0;
             return rAtomicVolume;
         }
-        @Override public double cavityRadius() {
-            updateStat_();
-            double rCavityRadius = 0.0;
-            for (Tetrahedron tTet : mNeighborTet) {
-                rCavityRadius = Math.max(rCavityRadius, mXYZ.distance(tTet.centerSphere_()));
+        double cavityRadius_() {
+            // 此节点是所有近邻四面体的顶点，到球心的距离即为外接球半径
+            double rCavityRadius2 = 0.0;
+            for (int i = 0; i < mNeighborTetNum; ++i) {
+                rCavityRadius2 = Math.max(rCavityRadius2, mTetCenter[centerSphere_(mNeighborTet[i])+3]);
             }
-            return rCavityRadius;
+            return Math.sqrt(rCavityRadius2);
         }
-        @Override public int[] index() {
-            updateStat_();
-            int[] rIndex = new int[mIndexLength];
-            // 如果面积过小直接跳过这个点的统计，这里不考虑表面积截断带来的边长截断效应
-            for (@Nullable VertexInfo tInfo : mNeighborVertex.values()) if (tInfo!=null && tInfo.mTetNum>=3) {
-                int tIndex = tInfo.mTetNum;
-                if (tIndex > mIndexLength) {
-                    if (!mNoWarning) System.err.println("WARNING: Voronoi index out of boundary: "+tIndex);
-                    tIndex = mIndexLength;
+        /** 将 voronoi index 累加到 rIndex 中 aShift 开始的位置，如果面积过小直接跳过这个面的统计，这里不考虑表面积截断带来的边长截断效应 */
+        void index_(int[] rIndex, int aShift) {
+            for (int i = 0; i < mNeighborVertexNum; ++i) if (mFaceSize[i] >= 3) addIndex_(rIndex, aShift, mFaceSize[i]);
+        }
+        int[][] index_(double[] aAreaThreshold, double[] aLengthThreshold) {
+            final int tNum = aAreaThreshold.length;
+            int[][] rIndex = new int[tNum][mIndexLength];
+            for (int i = 0; i < mNeighborVertexNum; ++i) if (hasFace_(i)) {
+                for (int k = 0; k < tNum; ++k) {
+                    // 和 areaValid, lengthValid 中相对阈值的判断一致
+                    final double tAreaThreshold = Math.max(0.0, aAreaThreshold[k]), tLengthThreshold = Math.max(0.0, aLengthThreshold[k]);
+                    if (tAreaThreshold>0.0 && !(mArea[i]>tAreaThreshold*mSurfaceArea)) continue;
+                    int tFaceSize = 1;
+                    for (int j = mEdgeStart[i]; j < mEdgeStart[i+1]; ++j) if (tLengthThreshold==0.0 || mEdge[j]>tLengthThreshold*mDis[i]) ++tFaceSize;
+                    if (tFaceSize >= 3) addIndex_(rIndex[k], 0, tFaceSize);
                 }
-                ++rIndex[tIndex-1];
             }
             return rIndex;
         }
+        void forEachFace_(IFaceVisitor aVisitor) {
+            for (int i = 0; i < mNeighborVertexNum; ++i) if (hasFace_(i)) {
+                aVisitor.visit(realVertex_(mNeighborVertex[i])-INIT_VERTEX_NUM, mArea[i], mDis[i], mFaceSize[i], mEdge, mEdgeStart[i], mEdgeStart[i+1]);
+            }
+        }
+        /** 将统计结果写入 rResult 的第 aIdx 个位置 */
+        void writeResult_(VoronoiResult rResult, int aIdx) {
+            rResult.mCoordination[aIdx] = coordination_();
+            rResult.mAtomicVolume[aIdx] = atomicVolume_();
+            rResult.mCavityRadius[aIdx] = cavityRadius_();
+            index_(rResult.mIndex, aIdx*mIndexLength);
+        }
+    }
+    void addIndex_(int[] rIndex, int aShift, int aFaceSize) {
+        if (aFaceSize > mIndexLength) {
+            if (!mNoWarning) System.err.println("WARNING: Voronoi index out of boundary: "+aFaceSize);
+            aFaceSize = mIndexLength;
+        }
+        ++rIndex[aShift+aFaceSize-1];
+    }
+    
+    /** 节点的视图，会缓存并自动更新统计信息 */
+    class Vertex implements IVertex {
+        final int mID;
+        Vertex(int aID) {mID = aID;}
+        
+        /** 这些值用于验证是否需要更新统计信息，分别对应全局的修改（坐标等），此节点的星形的修改，以及截断阈值的修改 */
+        private int oCheck = -1, oStar = -1, oThresholdCheck = -1;
+        /** 缓存的统计信息，没有统计或者释放后为 null */
+        @Nullable Star mStar = null;
+        
+        private Star updateStat_() {return updateStat_(mStatBuffer);}
+        /** 统计信息是否依旧有效，阈值的改变只需要重新过滤，因此不考虑 */
+        boolean statValid_() {return mStar!=null && oCheck==mCheck && oStar==mVertexStar[mID];}
+        /** 释放缓存的统计信息，下次访问时会重新统计 */
+        void dropStat_() {
+            oCheck = -1; oStar = -1; oThresholdCheck = -1;
+            mStar = null;
+        }
+        /** 统计只会写入此节点自身的缓存以及 aBuffer，因此在 {@link #computeAll} 中不同线程使用不同的 aBuffer 即可并行 */
+        Star updateStat_(StatBuffer aBuffer) {
+            ensureImage_();
+            Star tStar = mStar;
+            if (tStar!=null && statValid_()) {
+                if (oThresholdCheck != mThresholdCheck) {
+                    oThresholdCheck = mThresholdCheck;
+                    tStar.applyThreshold_();
+                }
+                return tStar;
+            }
+            oCheck = mCheck; oStar = mVertexStar[mID]; oThresholdCheck = mThresholdCheck;
+            if (tStar == null) {tStar = new Star(); mStar = tStar;}
+            tStar.walk_(mID, aBuffer);
+            tStar.applyThreshold_();
+            return tStar;
+        }
+        /** voronoi 统计信息，现在只有需要时才会进行统计 */
+        @Override public int coordination() {return updateStat_().coordination_();}
+        @Override public double atomicVolume() {return updateStat_().atomicVolume_();}
+        @Override public double cavityRadius() {return updateStat_().cavityRadius_();}
+        @Override public int[] index() {
+            int[] rIndex = new int[mIndexLength];
+            updateStat_().index_(rIndex, 0);
+            return rIndex;
+        }
+        @Override public int[][] index(double[] aAreaThreshold, double[] aLengthThreshold) {
+            if (aAreaThreshold.length != aLengthThreshold.length) throw new IllegalArgumentException("Threshold length mismatch: "+aAreaThreshold.length+" vs "+aLengthThreshold.length);
+            return updateStat_().index_(aAreaThreshold, aLengthThreshold);
+        }
         /** 其他可能有用信息 */
-        @Override public double x() {return mXYZ.mX;}
-        @Override public double y() {return mXYZ.mY;}
-        @Override public double z() {return mXYZ.mZ;}
+        @Override public double x() {return mVertexXYZ[mID*3  ];}
+        @Override public double y() {return mVertexXYZ[mID*3+1];}
+        @Override public double z() {return mVertexXYZ[mID*3+2];}
         @Override public @Unmodifiable Collection<IVertex> neighborVertex() {
-            updateStat_();
-            return AbstractCollections.map(mNeighborVertex.keySet(), v->v);
+            final Star tStar = updateStat_();
+            // 周期模式下镜像节点替换成对应的真实节点，模拟盒很小时同一个节点可能出现多次
+            return new AbstractRandomAccessList<IVertex>() {
+                @Override public IVertex get(int index) {return vertex_(realVertex_(tStar.mNeighborVertex[index]));}
+                @Override public int size() {return tStar.mNeighborVertexNum;}
+            };
         }
         @Override public @Unmodifiable Collection<ITetrahedron> neighborTetrahedron() {
-            updateStat_();
-            return AbstractCollections.map(mNeighborTet, t->t);
+            final Star tStar = updateStat_();
+            return new AbstractRandomAccessList<ITetrahedron>() {
+                @Override public ITetrahedron get(int index) {return tet_(tStar.mNeighborTet[index]);}
+                @Override public int size() {return tStar.mNeighborTetNum;}
+            };
+        }
+        /** print */
+        @Override public String toString() {return String.format("(%.4g, %.4g, %.4g)", x(), y(), z());}
+    }
+    
+    /** 流式统计的游标，所有节点共用同一份 {@link Star} 和 {@link StatBuffer}，不会创建任何节点视图 */
+    class Cursor implements IVertexCursor {
+        private final StatBuffer mBuffer = new StatBuffer();
+        private final Star mStar = new Star();
+        private final int mSize;
+        private int mNext = 0;
+        private boolean mValid = false;
+        
+        Cursor() {
+            ensureImage_();
+            mSize = sizeVertex();
+        }
+        
+        @Override public boolean next() {
+            mValid = false;
+            if (mNext >= mSize) return false;
+            mStar.walk_(INIT_VERTEX_NUM + mNext++, mBuffer);
+            mStar.applyThreshold_();
+            mValid = true;
+            return true;
+        }
+        private Star current_() {
+            if (!mValid) throw new NoSuchElementException();
+            return mStar;
+        }
+        
+        @Override public int idx() {return current_().mID - INIT_VERTEX_NUM;}
+        @Override public int coordination() {return current_().coordination_();}
+        @Override public double atomicVolume() {return current_().atomicVolume_();}
+        @Override public double cavityRadius() {return current_().cavityRadius_();}
+        @Override public int[] index() {
+            int[] rIndex = new int[mIndexLength];
+            current_().index_(rIndex, 0);
+            return rIndex;
+        }
+        @Override public void index(int[] rIndex) {
+            final Star tStar = current_();
+            Arrays.fill(rIndex, 0, mIndexLength, 0);
+            tStar.index_(rIndex, 0);
         }
+        @Override public void forEachFace(IFaceVisitor aVisitor) {current_().forEachFace_(aVisitor);}
+        @Override public double x() {return mVertexXYZ[current_().mID*3  ];}
+        @Override public double y() {return mVertexXYZ[current_().mID*3+1];}
+        @Override public double z() {return mVertexXYZ[current_().mID*3+2];}
     }
 }
@@ -0,0 +1,56 @@
+/**
+ * Copyright (C) 2023 CHanzy/CHanzyLazer. All rights reserved.
+ *
+ * This file is part of jtool
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package jtoolex.voronoi;
+
+import org.jetbrains.annotations.Nullable;
+
+
+/**
+ * {@link VoronoiBuilder#toGraph} 得到的近邻图，按照 CSR（compressed sparse row）格式存储，
+ * 第 i 个节点的近邻位于 {@code neighbors()} 中的 {@code [offsets()[i], offsets()[i+1])}，按照近邻的索引从小到大排列
+ * <p>
+ * 周期模式下近邻为对应的真实节点，模拟盒很小时同一个近邻可能出现多次，分别对应不同镜像之间的 voronoi 面
+ * <p>
+ * 构造完成后不会再修改，因此线程安全
+ * @author CHanzy
+ */
+public final class VoronoiGraph {
+    final int[] mOffsets;
+    final int[] mNeighbors;
+    final @Nullable double[] mFaceArea;
+
+    VoronoiGraph(int[] aOffsets, int[] aNeighbors, @Nullable double[] aFaceArea) {
+        mOffsets = aOffsets; mNeighbors = aNeighbors; mFaceArea = aFaceArea;
+    }
+
+    /** 节点数目，索引和对应 builder 的 {@code getVertex} 一致 */
+    public int size() {return mOffsets.length-1;}
+    /** 所有近邻的总数，每条边会在两个节点中各出现一次 */
+    public int nnz() {return mNeighbors.length;}
+    public int degree(int aIdx) {
+        if (aIdx<0 || aIdx>=size()) throw new IndexOutOfBoundsException("Index: "+aIdx+", Size: "+size());
+        return mOffsets[aIdx+1] - mOffsets[aIdx];
+    }
+
+    /** 直接获取内部的数组，用于批量处理时避免拷贝，不能进行修改 */
+    public int[] offsets() {return mOffsets;}
+    public int[] neighbors() {return mNeighbors;}
+    /** @return 每个近邻对应的 voronoi 面的面积，排列和 {@link #neighbors()} 一致，无界的面为正无穷；导出时没有要求面积则为 null */
+    public @Nullable double[] faceArea() {return mFaceArea;}
+}
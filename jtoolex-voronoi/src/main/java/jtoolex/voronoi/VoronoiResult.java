@@ -0,0 +1,73 @@
+/**
+ * Copyright (C) 2023 CHanzy/CHanzyLazer. All rights reserved.
+ *
+ * This file is part of jtool
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package jtoolex.voronoi;
+
+import java.util.Arrays;
+
+
+/**
+ * {@link VoronoiBuilder#toResult} 或者 {@link ParallelVoronoiBuilder#toResult} 得到的统计结果，
+ * 按列存储在基本类型的数组中，不持有 builder 的任何引用，因此之后可以直接丢弃或者清空 builder 来释放三角剖分
+ * <p>
+ * 每个节点占用 {@code 4 + 8 + 8 + 4*indexLength} 字节，默认的 index 长度下为 56 字节；
+ * voronoi index 按照节点展开存储在同一个数组中，第 i 个节点的 index 位于 {@code [i*indexLength, (i+1)*indexLength)}
+ * <p>
+ * 构造完成后不会再修改，因此线程安全
+ * @author CHanzy
+ */
+public final class VoronoiResult {
+    private final int mSize, mIndexLength;
+    final int[] mCoordination;
+    final double[] mAtomicVolume;
+    final double[] mCavityRadius;
+    final int[] mIndex;
+
+    VoronoiResult(int aSize, int aIndexLength) {
+        mSize = aSize; mIndexLength = aIndexLength;
+        mCoordination = new int[aSize];
+        mAtomicVolume = new double[aSize];
+        mCavityRadius = new double[aSize];
+        mIndex = new int[aSize*aIndexLength];
+    }
+
+    public int size() {return mSize;}
+    public int indexLength() {return mIndexLength;}
+
+    /** 单个节点的统计结果，索引和对应 builder 的 {@code getVertex} 一致 */
+    public int coordination(int aIdx) {return mCoordination[aIdx];}
+    public double atomicVolume(int aIdx) {return mAtomicVolume[aIdx];}
+    public double cavityRadius(int aIdx) {return mCavityRadius[aIdx];}
+    /** @return 此节点的 voronoi index 的拷贝 */
+    public int[] index(int aIdx) {
+        if (aIdx<0 || aIdx>=mSize) throw new IndexOutOfBoundsException("Index: "+aIdx+", Size: "+mSize);
+        return Arrays.copyOfRange(mIndex, aIdx*mIndexLength, (aIdx+1)*mIndexLength);
+    }
+    /** @return 此节点的 voronoi 多面体中有 aEdgeNum 条边的面的数目，超出 index 长度的面统计在最后一个位置 */
+    public int index(int aIdx, int aEdgeNum) {
+        if (aIdx<0 || aIdx>=mSize) throw new IndexOutOfBoundsException("Index: "+aIdx+", Size: "+mSize);
+        if (aEdgeNum<1 || aEdgeNum>mIndexLength) throw new IndexOutOfBoundsException("EdgeNum: "+aEdgeNum+", IndexLength: "+mIndexLength);
+        return mIndex[aIdx*mIndexLength + aEdgeNum-1];
+    }
+
+    /** 直接获取内部的数组，用于批量处理时避免拷贝，不能进行修改 */
+    public int[] coordinationData() {return mCoordination;}
+    public double[] atomicVolumeData() {return mAtomicVolume;}
+    public double[] cavityRadiusData() {return mCavityRadius;}
+    public int[] indexData() {return mIndex;}
+}
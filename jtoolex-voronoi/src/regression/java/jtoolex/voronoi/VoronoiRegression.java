@@ -0,0 +1,270 @@
+/**
+ * Copyright (C) 2023 CHanzy/CHanzyLazer. All rights reserved.
+ *
+ * This file is part of jtool
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package jtoolex.voronoi;
+
+import java.util.*;
+
+
+/**
+ * 局部修改三角剖分的回归检测，通过 {@code gradle check} 运行（见 build.gradle 中的 regressionCheck）：
+ * 将 {@link VoronoiBuilder#remove}，{@link VoronoiBuilder#move} 和 {@link VoronoiBuilder#rollback}，
+ * {@link VoronoiBuilder#updatePositions}，周期模式以及 {@link ParallelVoronoiBuilder} 的结果
+ * 和相同坐标下直接使用 {@link VoronoiBuilder#insertAll} 构建的结果比较，
+ * 内部节点的体积，表面积以及近邻集合都需要一致；
+ * <p>
+ * 使用随机分布的点，从而不会有多点共球带来的三角剖分不唯一；有任何不一致时以非零的退出码结束
+ * @author CHanzy
+ */
+public final class VoronoiRegression {
+    /** 比较体积和表面积时的相对容差，只需要覆盖求和顺序带来的舍入误差 */
+    private final static double REL_EPS = 1.0e-9;
+    /** 非周期的情况下只比较离包围盒边界超过此距离的内部节点，凸包附近的多面体无界，其参数没有意义 */
+    private final static double MARGIN = 2.0;
+    /** 每个检测最多输出的不一致的节点数目 */
+    private final static int MAX_REPORT = 5;
+    
+    /** 模拟盒的边长，以及对应的节点数目，节点间距约为 0.63 */
+    private final static double BOX = 10.0;
+    private final static int NUM = 4000;
+    
+    private static int sFailNum = 0;
+    
+    public static void main(String[] args) {
+        for (boolean tPeriodic : new boolean[] {false, true}) {
+            checkRemove_(tPeriodic);
+            checkMove_(tPeriodic);
+            checkUpdate_(tPeriodic);
+        }
+        checkReplicate_();
+        checkParallel_();
+        if (sFailNum > 0) {
+            System.err.println("FAILED: "+sFailNum+" voronoi regression check(s)");
+            System.exit(1);
+        }
+        System.out.println("All voronoi regression checks passed");
+    }
+    
+    
+    /** 随机删除节点，删除时最后一个节点会移动到被删除的位置，这里的坐标数组也同样处理 */
+    private static void checkRemove_(boolean aPeriodic) {
+        final Random tRNG = new Random(1);
+        double[] tXYZ = randomXYZ_(tRNG, NUM, BOX);
+        final VoronoiBuilder tBuilder = newBuilder_(aPeriodic, 2).insertAll(tXYZ);
+        tBuilder.getVertex(0).atomicVolume();
+        int tNum = NUM;
+        for (int k = 0; k < NUM/10; ++k) {
+            final int tIdx = tRNG.nextInt(tNum);
+            tBuilder.remove(tIdx);
+            --tNum;
+            System.arraycopy(tXYZ, tNum*3, tXYZ, tIdx*3, 3);
+            // 间隔地统计，让之后的删除也需要使缓存失效
+            if ((k&7) == 0) tBuilder.getVertex(tRNG.nextInt(tNum)).atomicVolume();
+        }
+        tXYZ = Arrays.copyOf(tXYZ, tNum*3);
+        compare_("remove"+suffix_(aPeriodic), tBuilder, tXYZ, aPeriodic);
+    }
+    
+    /** 随机移动节点，一半的移动会撤销，移动中混合了很小的位移以及任意位置的跳跃 */
+    private static void checkMove_(boolean aPeriodic) {
+        final Random tRNG = new Random(2);
+        final double[] tXYZ = randomXYZ_(tRNG, NUM, BOX);
+        final VoronoiBuilder tBuilder = newBuilder_(aPeriodic, 3).insertAll(tXYZ);
+        int tRollbackFail = 0;
+        for (int k = 0; k < NUM/10; ++k) {
+            final int tIdx = tRNG.nextInt(NUM);
+            final double tOldVolume = tBuilder.getVertex(tIdx).atomicVolume();
+            final double tX, tY, tZ;
+            if (tRNG.nextBoolean()) {
+                tX = BOX*tRNG.nextDouble(); tY = BOX*tRNG.nextDouble(); tZ = BOX*tRNG.nextDouble();
+            } else {
+                tX = tXYZ[tIdx*3  ] + 0.05*tRNG.nextGaussian();
+                tY = tXYZ[tIdx*3+1] + 0.05*tRNG.nextGaussian();
+                tZ = tXYZ[tIdx*3+2] + 0.05*tRNG.nextGaussian();
+            }
+            tBuilder.move(tIdx, tX, tY, tZ);
+            tBuilder.getVertex(tIdx).atomicVolume();
+            if (tRNG.nextBoolean()) {
+                tBuilder.rollback();
+                // 凸包上的多面体无界，其体积依赖于极大四面体，因此同样只检测内部节点
+                if ((aPeriodic || interior_(tXYZ, tIdx)) && !close_(tBuilder.getVertex(tIdx).atomicVolume(), tOldVolume)) ++tRollbackFail;
+            } else {
+                tXYZ[tIdx*3] = tX; tXYZ[tIdx*3+1] = tY; tXYZ[tIdx*3+2] = tZ;
+            }
+        }
+        if (tRollbackFail > 0) {
+            ++sFailNum;
+            fail_("move"+suffix_(aPeriodic), tRollbackFail+" cell(s) changed after rollback");
+        }
+        compare_("move"+suffix_(aPeriodic), tBuilder, tXYZ, aPeriodic);
+    }
+    
+    /** 连续的几帧更新坐标，较小的位移使用局部更新，最后较大的位移会直接重新构建 */
+    private static void checkUpdate_(boolean aPeriodic) {
+        final Random tRNG = new Random(3);
+        final double[] tXYZ = randomXYZ_(tRNG, NUM, BOX);
+        final VoronoiBuilder tBuilder = newBuilder_(aPeriodic, 4).insertAll(tXYZ);
+        tBuilder.getVertex(0).atomicVolume();
+        for (double tSigma : new double[] {0.001, 0.005, 0.02, 0.2}) {
+            for (int i = 0; i < tXYZ.length; ++i) tXYZ[i] += tSigma*tRNG.nextGaussian();
+            tBuilder.updatePositions(tXYZ);
+            compare_("updatePositions"+suffix_(aPeriodic)+" sigma="+tSigma, tBuilder, tXYZ, aPeriodic);
+        }
+    }
+    
+    /** 周期模式和手动复制 26 个周期镜像后的非周期结果比较，镜像 j 对应的真实节点为 j % NUM */
+    private static void checkReplicate_() {
+        final Random tRNG = new Random(4);
+        final double[] tXYZ = randomXYZ_(tRNG, NUM, BOX);
+        final VoronoiBuilder tBuilder = newBuilder_(true, 5).insertAll(tXYZ);
+        final double[] tImageXYZ = new double[tXYZ.length*27];
+        System.arraycopy(tXYZ, 0, tImageXYZ, 0, tXYZ.length);
+        int tImage = 1;
+        for (int i = -1; i <= 1; ++i) for (int j = -1; j <= 1; ++j) for (int k = -1; k <= 1; ++k) {
+            if (i==0 && j==0 && k==0) continue;
+            final int tShift = tImage*tXYZ.length;
+            for (int n = 0; n < NUM; ++n) {
+                tImageXYZ[tShift+n*3  ] = tXYZ[n*3  ] + i*BOX;
+                tImageXYZ[tShift+n*3+1] = tXYZ[n*3+1] + j*BOX;
+                tImageXYZ[tShift+n*3+2] = tXYZ[n*3+2] + k*BOX;
+            }
+            ++tImage;
+        }
+        final VoronoiBuilder tRef = newBuilder_(false, 5).insertAll(tImageXYZ);
+        int tBad = 0;
+        for (int i = 0; i < NUM; ++i) {
+            final int[] tNeighbor = neighbors_(tRef, i);
+            for (int j = 0; j < tNeighbor.length; ++j) tNeighbor[j] %= NUM;
+            Arrays.sort(tNeighbor);
+            if (!sameCell_(tBuilder, tRef, i, tNeighbor)) {
+                if (++tBad <= MAX_REPORT) fail_("periodic vs replicate", "cell "+i+" differs");
+            }
+        }
+        report_("periodic vs replicate", NUM, tBad);
+    }
+    
+    /** 区域分解的并行构建和串行构建比较，包括多面体是否有界 */
+    private static void checkParallel_() {
+        final Random tRNG = new Random(5);
+        final int tNum = 2*NUM;
+        final double tBox = BOX*Math.cbrt(2.0);
+        final double[] tXYZ = randomXYZ_(tRNG, tNum, tBox);
+        final VoronoiBuilder tRef = newBuilder_(false, 6).insertAll(tXYZ);
+        final ParallelVoronoiBuilder tBuilder = new ParallelVoronoiBuilder(4, 6).setNoWarning().build(tXYZ);
+        final Map<List<Double>, Integer> tIdxOf = new HashMap<>();
+        for (int i = 0; i < tNum; ++i) tIdxOf.put(Arrays.asList(tXYZ[i*3], tXYZ[i*3+1], tXYZ[i*3+2]), i);
+        int tBad = 0, tCompared = 0;
+        for (int i = 0; i < tNum; ++i) {
+            final boolean tBounded = tRef.starBounded_(i+VoronoiBuilder.INIT_VERTEX_NUM);
+            if (tBounded != tBuilder.isBounded(i)) {
+                if (++tBad <= MAX_REPORT) fail_("parallel", "boundedness of cell "+i+" differs");
+                continue;
+            }
+            if (!tBounded) continue;
+            ++tCompared;
+            final VoronoiBuilder.IVertex tVertex = tBuilder.getVertex(i), tRefVertex = tRef.getVertex(i);
+            // 并行的节点来自子区域的 builder，近邻通过坐标映射回全局的索引
+            final Collection<VoronoiBuilder.IVertex> tNeighborVertex = tVertex.neighborVertex();
+            final int[] tNeighbor = new int[tNeighborVertex.size()];
+            int j = 0;
+            for (VoronoiBuilder.IVertex tNear : tNeighborVertex) {
+                final Integer tIdx = tIdxOf.get(Arrays.asList(tNear.x(), tNear.y(), tNear.z()));
+                tNeighbor[j++] = tIdx==null ? -1 : tIdx;
+            }
+            Arrays.sort(tNeighbor);
+            if (!close_(tVertex.atomicVolume(), tRefVertex.atomicVolume()) || tVertex.coordination()!=tRefVertex.coordination()
+             || !Arrays.equals(tVertex.index(), tRefVertex.index()) || !Arrays.equals(tNeighbor, neighbors_(tRef, i))) {
+                if (++tBad <= MAX_REPORT) fail_("parallel", "cell "+i+" differs");
+            }
+        }
+        report_("parallel", tCompared, tBad);
+    }
+    
+    
+    /** 和相同坐标下重新构建的结果比较所有内部节点，周期模式下两者会以相同的方式将坐标折叠到模拟盒内 */
+    private static void compare_(String aName, VoronoiBuilder aBuilder, double[] aXYZ, boolean aPeriodic) {
+        final int tNum = aXYZ.length/3;
+        if (aBuilder.sizeVertex() != tNum) {fail_(aName, "size "+aBuilder.sizeVertex()+" vs "+tNum); return;}
+        final VoronoiBuilder tRef = newBuilder_(aPeriodic, 7).insertAll(aXYZ);
+        int tBad = 0, tCompared = 0;
+        for (int i = 0; i < tNum; ++i) {
+            if (!aPeriodic && !interior_(aXYZ, i)) continue;
+            ++tCompared;
+            final VoronoiBuilder.IVertex tVertex = aBuilder.getVertex(i), tRefVertex = tRef.getVertex(i);
+            if (tVertex.x()!=tRefVertex.x() || tVertex.y()!=tRefVertex.y() || tVertex.z()!=tRefVertex.z()) {
+                if (++tBad <= MAX_REPORT) fail_(aName, "position of vertex "+i+" differs");
+                continue;
+            }
+            if (!sameCell_(aBuilder, tRef, i, neighbors_(tRef, i))) {
+                if (++tBad <= MAX_REPORT) fail_(aName, "cell "+i+" differs");
+            }
+        }
+        report_(aName, tCompared, tBad);
+    }
+    /** 比较体积，表面积以及排序后的近邻索引 */
+    private static boolean sameCell_(VoronoiBuilder aBuilder, VoronoiBuilder aRef, int aIdx, int[] aRefNeighbor) {
+        return close_(aBuilder.getVertex(aIdx).atomicVolume(), aRef.getVertex(aIdx).atomicVolume())
+            && close_(surfaceArea_(aBuilder, aIdx), surfaceArea_(aRef, aIdx))
+            && Arrays.equals(neighbors_(aBuilder, aIdx), aRefNeighbor);
+    }
+    private static int[] neighbors_(VoronoiBuilder aBuilder, int aIdx) {
+        final int[] rNeighbor = new int[aBuilder.neighborCount(aIdx)];
+        aBuilder.neighbors(aIdx, rNeighbor);
+        Arrays.sort(rNeighbor);
+        return rNeighbor;
+    }
+    private static double surfaceArea_(VoronoiBuilder aBuilder, int aIdx) {
+        final double[] rArea = {0.0};
+        aBuilder.forEachFace(aIdx, (aNeighbor, aArea, aDis, aFaceSize, aEdge, aEdgeStart, aEdgeEnd) -> rArea[0] += aArea);
+        return rArea[0];
+    }
+    
+    private static VoronoiBuilder newBuilder_(boolean aPeriodic, long aSeed) {
+        final VoronoiBuilder rBuilder = new VoronoiBuilder(aSeed).setNoWarning();
+        if (aPeriodic) rBuilder.setBox(BOX, BOX, BOX);
+        return rBuilder;
+    }
+    private static String suffix_(boolean aPeriodic) {return aPeriodic ? " (periodic)" : "";}
+    private static double[] randomXYZ_(Random aRNG, int aNum, double aBox) {
+        final double[] rXYZ = new double[aNum*3];
+        for (int i = 0; i < rXYZ.length; ++i) rXYZ[i] = aBox*aRNG.nextDouble();
+        return rXYZ;
+    }
+    private static boolean interior_(double[] aXYZ, int aIdx) {
+        for (int i = 0; i < 3; ++i) {
+            final double tValue = aXYZ[aIdx*3+i];
+            if (tValue < MARGIN || tValue > BOX-MARGIN) return false;
+        }
+        return true;
+    }
+    private static boolean close_(double aA, double aB) {
+        return Math.abs(aA-aB) <= REL_EPS*Math.max(1.0, Math.abs(aB));
+    }
+    
+    private static void fail_(String aName, String aMessage) {
+        System.err.println("MISMATCH ["+aName+"]: "+aMessage);
+    }
+    private static void report_(String aName, int aCompared, int aBad) {
+        if (aBad > 0) {
+            ++sFailNum;
+            System.err.println("FAILED ["+aName+"]: "+aBad+" of "+aCompared+" cell(s) differ");
+        } else {
+            System.out.println("OK ["+aName+"]: "+aCompared+" cell(s)");
+        }
+    }
+}